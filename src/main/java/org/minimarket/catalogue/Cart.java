@@ -0,0 +1,147 @@
+package org.minimarket.catalogue;
+
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import org.minimarket.utility.Money;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Cart holds the lines of a customer's shopping cart as CartItems.
+ *
+ * Adding a product that is already in the cart increases the quantity of its
+ * existing line instead of adding a second one. Lines are found through a map
+ * from product name to position, and the cart total is kept as a running sum
+ * in pennies (exact, see {@link Money}), so adding or removing an item costs O(1) no matter how long the
+ * cart is (removing a whole line also shifts the lines after it).
+ *
+ * The lines are exposed as an ObservableList so they can be shown directly in
+ * a ListView or TableView.
+ */
+public class Cart {
+
+    private final ObservableList<CartItem> items = FXCollections.observableArrayList();
+    private final ObservableList<CartItem> readOnlyItems = FXCollections.unmodifiableObservableList(items);
+
+    /** Product name → position of its line in items. */
+    private final Map<String, Integer> positions = new HashMap<>();
+
+    /** Running total of every line, in pennies. */
+    private long totalPennies;
+
+    /**
+     * Adds units of a product, merging them into the product's line if there is one.
+     *
+     * @param productName     the product
+     * @param quantity        units to add
+     * @param unitPricePennies price of one unit, in pennies
+     * @return the product's line after the change
+     */
+    public CartItem add(String productName, int quantity, long unitPricePennies) {
+        long added = Money.times(unitPricePennies, quantity);
+        totalPennies += added;
+
+        Integer position = positions.get(productName);
+        if (position == null) {
+            CartItem line = CartItem.ofPennies(productName, quantity, added);
+            positions.put(productName, items.size());
+            items.add(line);
+            return line;
+        }
+
+        CartItem old = items.get(position);
+        CartItem merged = CartItem.ofPennies(productName, old.getQuantity() + quantity,
+                old.getSubtotalPennies() + added);
+        items.set(position, merged);
+        return merged;
+    }
+
+    /**
+     * Removes units of a product; the line goes when its quantity reaches zero.
+     *
+     * @param productName the product
+     * @param quantity    units to remove (capped at the line's quantity)
+     * @return the number of units actually removed
+     */
+    public int remove(String productName, int quantity) {
+        Integer position = positions.get(productName);
+        if (position == null || quantity <= 0) {
+            return 0;
+        }
+
+        CartItem old = items.get(position);
+        int removed = Math.min(quantity, old.getQuantity());
+        if (removed == old.getQuantity()) {
+            totalPennies -= old.getSubtotalPennies();
+            removeLine(position);
+            return removed;
+        }
+
+        long unitPrice = old.getSubtotalPennies() / old.getQuantity();
+        long taken = Money.times(unitPrice, removed);
+        totalPennies -= taken;
+        items.set(position, CartItem.ofPennies(productName, old.getQuantity() - removed,
+                old.getSubtotalPennies() - taken));
+        return removed;
+    }
+
+    /**
+     * Removes a whole line.
+     *
+     * @return the number of units removed
+     */
+    public int removeLine(CartItem line) {
+        return remove(line.getProductName(), line.getQuantity());
+    }
+
+    /** The cart lines, in the order products were first added. */
+    public ObservableList<CartItem> getItems() {
+        return readOnlyItems;
+    }
+
+    /** Total cost of the cart, in pounds. */
+    public double getTotal() {
+        return Money.toPounds(totalPennies);
+    }
+
+    /** Total cost of the cart, in pennies. */
+    public long getTotalPennies() {
+        return totalPennies;
+    }
+
+    public boolean isEmpty() {
+        return items.isEmpty();
+    }
+
+    /** Empties the cart. */
+    public void clear() {
+        items.clear();
+        positions.clear();
+        totalPennies = 0;
+    }
+
+    /**
+     * The cart as sale records, one per line, ready to be logged.
+     */
+    public List<SaleRecord> toSaleRecords() {
+        List<SaleRecord> records = new ArrayList<>(items.size());
+        long now = System.currentTimeMillis();
+        for (CartItem item : items) {
+            records.add(SaleRecord.ofPennies(item.getProductName(), item.getQuantity(),
+                    item.getSubtotalPennies(), now));
+        }
+        return records;
+    }
+
+    // Drops a line and moves the lines after it up one place
+    private void removeLine(int position) {
+        CartItem line = items.remove(position);
+        positions.remove(line.getProductName());
+        for (int i = position; i < items.size(); i++) {
+            positions.put(items.get(i).getProductName(), i);
+        }
+    }
+}
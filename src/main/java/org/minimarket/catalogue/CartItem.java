@@ -1,5 +1,13 @@
 package org.minimarket.catalogue;
 
+import javafx.beans.property.ReadOnlyDoubleProperty;
+import javafx.beans.property.ReadOnlyDoubleWrapper;
+import javafx.beans.property.ReadOnlyIntegerProperty;
+import javafx.beans.property.ReadOnlyIntegerWrapper;
+import javafx.beans.property.ReadOnlyStringProperty;
+import javafx.beans.property.ReadOnlyStringWrapper;
+import org.minimarket.utility.Money;
+
 /**
  * Represents a single item inside the customer's shopping cart.
  * Each CartItem stores the product name, the quantity purchased,
@@ -13,16 +21,27 @@ public class CartItem {
     /** Number of units of the product added to the cart */
     private int quantity;
 
-    /** Total price for this cart item (quantity × unit price) */
-    private double subtotal;
+    /** Total price for this cart item (quantity × unit price), in pennies */
+    private long subtotal;
 
     public CartItem(String productName, int quantity, double subtotal) {
+        this(productName, quantity, Money.ofPounds(subtotal));
+    }
+
+    private CartItem(String productName, int quantity, long subtotalPennies) {
         this.productName = productName;
         this.quantity = quantity;
-        this.subtotal = subtotal;
+        this.subtotal = subtotalPennies;
     }
 
-    //  getters for TableView
+    /**
+     * Creates a cart item whose subtotal is given in pennies.
+     */
+    public static CartItem ofPennies(String productName, int quantity, long subtotalPennies) {
+        return new CartItem(productName, quantity, subtotalPennies);
+    }
+
+    //  getters
 
     public String getProductName() {
         return productName;
@@ -33,6 +52,25 @@ public class CartItem {
     }
 
     public double getSubtotal() {
+        return Money.toPounds(subtotal);
+    }
+
+    public long getSubtotalPennies() {
         return subtotal;
     }
+
+    // Properties for table cells. The values never change, so each call
+    // returns a new read-only property and nothing extra is stored.
+
+    public ReadOnlyStringProperty productNameProperty() {
+        return new ReadOnlyStringWrapper(this, "productName", productName).getReadOnlyProperty();
+    }
+
+    public ReadOnlyIntegerProperty quantityProperty() {
+        return new ReadOnlyIntegerWrapper(this, "quantity", quantity).getReadOnlyProperty();
+    }
+
+    public ReadOnlyDoubleProperty subtotalProperty() {
+        return new ReadOnlyDoubleWrapper(this, "subtotal", getSubtotal()).getReadOnlyProperty();
+    }
 }
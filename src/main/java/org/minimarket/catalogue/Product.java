@@ -1,18 +1,64 @@
 package org.minimarket.catalogue;
 
+import javafx.application.Platform;
+import javafx.beans.property.ReadOnlyDoubleProperty;
+import javafx.beans.property.ReadOnlyDoubleWrapper;
+import javafx.beans.property.ReadOnlyIntegerProperty;
+import javafx.beans.property.ReadOnlyIntegerWrapper;
+import javafx.beans.property.ReadOnlyStringProperty;
+import javafx.beans.property.ReadOnlyStringWrapper;
+import org.minimarket.utility.Money;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A product in the catalogue.
+ *
+ * The fields are plain values, so products are cheap to hold in large
+ * numbers and safe to sell from several threads. Tables bind to the
+ * read-only JavaFX properties (nameProperty() and so on); each one is
+ * created the first time it is asked for and then follows the setters, so
+ * a change repaints only the cells showing that product. Stock may change
+ * on any thread; the quantity property catches up on the JavaFX thread, at
+ * most once per pulse. The other setters are called on the JavaFX thread.
+ */
 public class Product {
 
+    /** Reorder point used when none is given: low stock means fewer than 5 left. */
+    public static final int DEFAULT_REORDER_POINT = 5;
+
+    /** Told whenever a product's stock or reorder point changes. */
+    public interface StockListener {
+        /**
+         * @param delta the change in units; 0 when only the reorder point changed
+         */
+        void stockChanged(Product product, int delta);
+    }
+
     private String name;
-    private double price;
-    private int quantity;
+    // Price in pennies; see Money
+    private long price;
+    // Atomic so that several tills can take stock without a lock
+    private final AtomicInteger quantity = new AtomicInteger();
     private String category;
     private String imagePath;
+    // Stock below this counts as low
+    private volatile int reorderPoint = DEFAULT_REORDER_POINT;
+    // Normally the catalogue holding this product
+    private volatile StockListener stockListener;
+
+    // JavaFX views of the fields; null until a table asks for them
+    private ReadOnlyStringWrapper nameProperty;
+    private ReadOnlyDoubleWrapper priceProperty;
+    private ReadOnlyStringWrapper categoryProperty;
+    private volatile QuantityProperty quantityProperty;
 
     // Constructor with default image
     public Product(String name, double price, int quantity, String category) {
         this.name = name;
-        this.price = price;
-        this.quantity = quantity;
+        this.price = Money.ofPounds(price);
+        this.quantity.set(quantity);
         this.category = category;
         this.imagePath = "/images/default.png"; // default image
     }
@@ -20,23 +66,161 @@ public class Product {
     // Optional constructor if image path is provided
     public Product(String name, double price, int quantity, String category, String imagePath) {
         this.name = name;
-        this.price = price;
-        this.quantity = quantity;
+        this.price = Money.ofPounds(price);
+        this.quantity.set(quantity);
         this.category = category;
         this.imagePath = imagePath;
     }
 
     // Getters
     public String getName() { return name; }
-    public double getPrice() { return price; }
-    public int getQuantity() { return quantity; }
+    public double getPrice() { return Money.toPounds(price); }
+    public long getPricePennies() { return price; }
+    public int getQuantity() { return quantity.get(); }
     public String getCategory() { return category; }
     public String getImagePath() { return imagePath; }
+    public int getReorderPoint() { return reorderPoint; }
+
+    /** Stock above the reorder point; negative when the product is low. */
+    public int getStockSlack() { return getQuantity() - reorderPoint; }
+
+    // Properties for table cells
+    public ReadOnlyStringProperty nameProperty() {
+        if (nameProperty == null) {
+            nameProperty = new ReadOnlyStringWrapper(this, "name", name);
+        }
+        return nameProperty.getReadOnlyProperty();
+    }
+
+    public ReadOnlyDoubleProperty priceProperty() {
+        if (priceProperty == null) {
+            priceProperty = new ReadOnlyDoubleWrapper(this, "price", getPrice());
+        }
+        return priceProperty.getReadOnlyProperty();
+    }
+
+    public ReadOnlyIntegerProperty quantityProperty() {
+        QuantityProperty property = quantityProperty;
+        if (property == null) {
+            property = new QuantityProperty(this);
+            quantityProperty = property;
+        }
+        return property.getReadOnlyProperty();
+    }
+
+    public ReadOnlyStringProperty categoryProperty() {
+        if (categoryProperty == null) {
+            categoryProperty = new ReadOnlyStringWrapper(this, "category", category);
+        }
+        return categoryProperty.getReadOnlyProperty();
+    }
 
     // Setters
-    public void setName(String name) { this.name = name; }
-    public void setPrice(double price) { this.price = price; }
-    public void setQuantity(int quantity) { this.quantity = quantity; }
-    public void setCategory(String category) { this.category = category; }
+    public void setName(String name) {
+        this.name = name;
+        if (nameProperty != null) nameProperty.set(name);
+    }
+    public void setPrice(double price) { setPricePennies(Money.ofPounds(price)); }
+    public void setPricePennies(long price) {
+        this.price = price;
+        if (priceProperty != null) priceProperty.set(getPrice());
+    }
+    public void setQuantity(int quantity) {
+        int old = this.quantity.getAndSet(quantity);
+        stockChanged(quantity - old);
+    }
+    public void setCategory(String category) {
+        this.category = category;
+        if (categoryProperty != null) categoryProperty.set(category);
+    }
     public void setImagePath(String imagePath) { this.imagePath = imagePath; }
+
+    public void setReorderPoint(int reorderPoint) {
+        this.reorderPoint = reorderPoint;
+        stockChanged(0);
+    }
+
+    /**
+     * A copy of the fields as they are now, with no listener and no properties.
+     * Used to write a product while the original keeps changing.
+     */
+    public Product copy() {
+        Product copy = new Product(name, 0, getQuantity(), category, imagePath);
+        copy.price = price;
+        copy.reorderPoint = reorderPoint;
+        return copy;
+    }
+
+    /**
+     * Sets who is told about stock changes; replaces any previous listener.
+     */
+    public void setStockListener(StockListener stockListener) {
+        this.stockListener = stockListener;
+    }
+
+    public StockListener getStockListener() {
+        return stockListener;
+    }
+
+    /**
+     * Sets the quantity only if it is still the expected value.
+     *
+     * @return true if the quantity was updated
+     */
+    public boolean compareAndSetQuantity(int expected, int newQuantity) {
+        if (!quantity.compareAndSet(expected, newQuantity)) {
+            return false;
+        }
+        stockChanged(newQuantity - expected);
+        return true;
+    }
+
+    /**
+     * Adds to the quantity atomically (use a negative delta to subtract).
+     *
+     * @return the new quantity
+     */
+    public int addQuantity(int delta) {
+        int updated = quantity.addAndGet(delta);
+        stockChanged(delta);
+        return updated;
+    }
+
+    private void stockChanged(int delta) {
+        QuantityProperty property = quantityProperty;
+        if (property != null && delta != 0) {
+            property.update();
+        }
+        StockListener listener = stockListener;
+        if (listener != null) {
+            listener.stockChanged(this, delta);
+        }
+    }
+
+    // The quantity as a property; changes are copied in on the JavaFX thread
+    private static final class QuantityProperty extends ReadOnlyIntegerWrapper {
+        private final Product product;
+        private final AtomicBoolean updatePending = new AtomicBoolean();
+
+        QuantityProperty(Product product) {
+            super(product, "quantity", product.getQuantity());
+            this.product = product;
+        }
+
+        // Asking Platform which thread this is would start the toolkit, so always post
+        void update() {
+            if (updatePending.compareAndSet(false, true)) {
+                try {
+                    Platform.runLater(() -> {
+                        updatePending.set(false);
+                        set(product.getQuantity());
+                    });
+                } catch (IllegalStateException e) {
+                    // Toolkit not started
+                    updatePending.set(false);
+                    set(product.getQuantity());
+                }
+            }
+        }
+    }
 }
@@ -1,18 +1,57 @@
 package org.minimarket.catalogue;
+
+import javafx.beans.property.ReadOnlyDoubleProperty;
+import javafx.beans.property.ReadOnlyDoubleWrapper;
+import javafx.beans.property.ReadOnlyIntegerProperty;
+import javafx.beans.property.ReadOnlyIntegerWrapper;
+import javafx.beans.property.ReadOnlyStringProperty;
+import javafx.beans.property.ReadOnlyStringWrapper;
+import org.minimarket.utility.Money;
+
 /**
  * Represents a single completed sale entry recorded in the system.
  * A SaleRecord stores which product was sold, how many units were sold,
- * and the total revenue generated from that sale.
+ * the total revenue generated from that sale, and when it happened.
  */
 public class SaleRecord {
     private String productName;
     private int quantity;
-    private double subtotal;
+    /** Revenue from the sale, in pennies */
+    private long subtotal;
+
+    /** When the sale was made (epoch milliseconds); 0 for sales logged before timestamps existed. */
+    private long timestamp;
 
+    /**
+     * Creates a sale record stamped with the current time.
+     */
     public SaleRecord(String productName, int quantity, double subtotal) {
+        this(productName, quantity, subtotal, System.currentTimeMillis());
+    }
+
+    /**
+     * Creates a sale record with a known sale time.
+     *
+     * @param timestamp epoch milliseconds, or 0 if the time is unknown
+     */
+    public SaleRecord(String productName, int quantity, double subtotal, long timestamp) {
+        this(timestamp, productName, quantity, Money.ofPounds(subtotal));
+    }
+
+    private SaleRecord(long timestamp, String productName, int quantity, long subtotalPennies) {
         this.productName = productName;
         this.quantity = quantity;
-        this.subtotal = subtotal;
+        this.subtotal = subtotalPennies;
+        this.timestamp = timestamp;
+    }
+
+    /**
+     * Creates a sale record whose subtotal is given in pennies.
+     *
+     * @param timestamp epoch milliseconds, or 0 if the time is unknown
+     */
+    public static SaleRecord ofPennies(String productName, int quantity, long subtotalPennies, long timestamp) {
+        return new SaleRecord(timestamp, productName, quantity, subtotalPennies);
     }
 
     public String getProductName() {
@@ -24,6 +63,29 @@ public class SaleRecord {
     }
 
     public double getSubtotal() {
+        return Money.toPounds(subtotal);
+    }
+
+    public long getSubtotalPennies() {
         return subtotal;
     }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    // Properties for table cells. The values never change, so each call
+    // returns a new read-only property and nothing extra is stored.
+
+    public ReadOnlyStringProperty productNameProperty() {
+        return new ReadOnlyStringWrapper(this, "productName", productName).getReadOnlyProperty();
+    }
+
+    public ReadOnlyIntegerProperty quantityProperty() {
+        return new ReadOnlyIntegerWrapper(this, "quantity", quantity).getReadOnlyProperty();
+    }
+
+    public ReadOnlyDoubleProperty subtotalProperty() {
+        return new ReadOnlyDoubleWrapper(this, "subtotal", getSubtotal()).getReadOnlyProperty();
+    }
 }
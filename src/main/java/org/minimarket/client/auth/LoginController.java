@@ -5,7 +5,7 @@ import javafx.scene.control.Label;
 import javafx.scene.control.PasswordField;
 import javafx.scene.control.TextField;
 import org.minimarket.auth.User;
-import org.minimarket.storageAccess.UserFileManager;
+import org.minimarket.storageAccess.Repositories;
 import org.minimarket.main.Main;
 
 import java.util.List;
@@ -27,8 +27,8 @@ public class LoginController {
     // Label used to show login errors
     @FXML private Label errorLabel;
 
-    // List of all users loaded from the users.csv file
-    private List<User> users = UserFileManager.loadUsers();
+    // List of all users loaded from the user repository (users.csv by default)
+    private List<User> users = Repositories.users().loadUsers();
 
     /**
      * Called when the user presses the Login button.
@@ -1,254 +1,264 @@
 package org.minimarket.client.market;
 // JavaFX UI components and layout imports
-import javafx.collections.ListChangeListener;
+import javafx.animation.PauseTransition;
+import javafx.application.Platform;
 import javafx.fxml.FXML;
-import javafx.geometry.Insets;
-import javafx.geometry.Pos;
 import javafx.scene.control.*;
-import javafx.scene.image.Image;
-import javafx.scene.image.ImageView;
-import javafx.scene.layout.FlowPane;
-import javafx.scene.layout.VBox;
 import javafx.stage.Stage;
+import javafx.util.Duration;
 import javafx.event.ActionEvent;
 
-import java.io.File;
-import java.awt.Desktop;
 
 
+import org.minimarket.catalogue.Cart;
+import org.minimarket.catalogue.CartItem;
 import org.minimarket.catalogue.Product;
-import org.minimarket.catalogue.SaleRecord;
 import org.minimarket.main.Main;
+import org.minimarket.storageAccess.CatalogueEvent;
+import org.minimarket.storageAccess.CatalogueEventBus;
+import org.minimarket.storageAccess.CategoryFacets;
+import org.minimarket.storageAccess.ProductCatalogue;
 import org.minimarket.storageAccess.ProductFileManager;
-import org.minimarket.storageAccess.SalesFileManager;
+import org.minimarket.service.CheckoutGateway;
+import org.minimarket.service.CheckoutReply;
+import org.minimarket.utility.Money;
 import org.minimarket.utility.SoundManager;
-import org.minimarket.utility.ReceiptGenerator;
+import org.minimarket.utility.ReceiptPipeline;
 
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
 /**
  * BuyerController handles all buyer-side functionality,
  * including product display, cart management, searching,
  * checkout processing, and receipt generation.
  */
 public class BuyerController {
+
+    /** Most search results shown at once. */
+    private static final int SEARCH_RESULTS = 500;
+
+    /** Pause in typing before the search runs. */
+    private static final Duration SEARCH_DELAY = Duration.millis(150);
+
+    /** Category filter entry that shows every category. */
+    private static final String ALL_CATEGORIES = "All";
+
     // UI elements linked from the FXML file
-    @FXML private FlowPane productContainer;
-    @FXML private ListView<String> cartList;
+    @FXML private ProductGrid productGrid;
+    @FXML private ListView<CartItem> cartList;
     @FXML private Label cartTotalLabel;
     @FXML private ComboBox<String> categoryFilter;
     @FXML private TextField txtSearch;
 
-    private final SalesFileManager salesFileManager = new SalesFileManager();
+    private final CheckoutGateway checkoutGateway = CheckoutGateway.getDefault();
+    private final PauseTransition searchDelay = new PauseTransition(SEARCH_DELAY);
+
+    // Category counts shown in the filter, refreshed at most once per pulse
+    private final Map<String, CategoryFacets.Facet> facetsByCategory = new HashMap<>();
+    private final AtomicBoolean facetRefreshPending = new AtomicBoolean();
+    private final CategoryFacets.Listener facetListener = () -> {
+        if (facetRefreshPending.compareAndSet(false, true)) {
+            Platform.runLater(this::refreshCategoryFilter);
+        }
+    };
+
+    // Patches the grid with each pulse's catalogue changes
+    private final CatalogueEventBus.Listener catalogueListener = this::onCatalogueChanged;
+
+    /** The customer's cart; one line per product with a running total */
+    private final Cart cart = new Cart();
     private SoundManager soundManager;
 
     @FXML
     public void initialize() {
+        cartList.setItems(cart.getItems());
+        cartList.setCellFactory(list -> new ListCell<>() {
+            @Override
+            protected void updateItem(CartItem item, boolean empty) {
+                super.updateItem(item, empty);
+                setText(empty || item == null ? null
+                        : item.getProductName() + " x" + item.getQuantity() + " - " + Money.format(item.getSubtotalPennies()));
+            }
+        });
+
+        productGrid.setOnAddToCart(this::addToCart);
+
+        // Search as the customer types, once they pause
+        searchDelay.setOnFinished(e -> refreshProductDisplay());
+        txtSearch.textProperty().addListener((obs, oldText, newText) -> searchDelay.playFromStart());
+
         ProductFileManager.loadProducts();
         setupCategoryFilter();
         refreshProductDisplay();
-        ProductFileManager.getProducts().addListener((ListChangeListener<Product>) change -> {
-            refreshProductDisplay();
-        });
+        ProductFileManager.getCatalogue().addEventListener(catalogueListener);
     }
 
     public void setSoundManager(SoundManager soundManager) {
         this.soundManager = soundManager;
     }
 
-    //  category filter
+    //  category filter; the list shows each category's counts from the catalogue's facets
     private void setupCategoryFilter() {
-        categoryFilter.getItems().clear();
-        categoryFilter.getItems().add("All");
-
-        for (Product p : ProductFileManager.getProducts()) {
-            if (!categoryFilter.getItems().contains(p.getCategory())) {
-                categoryFilter.getItems().add(p.getCategory());
+        categoryFilter.setCellFactory(list -> new ListCell<>() {
+            @Override
+            protected void updateItem(String category, boolean empty) {
+                super.updateItem(category, empty);
+                CategoryFacets.Facet facet = empty || category == null ? null : facetsByCategory.get(category);
+                setText(facet == null ? category
+                        : category + " (" + facet.getInStockCount() + "/" + facet.getProductCount() + " in stock)");
             }
-        }
+        });
 
-        categoryFilter.setValue("All");
+        categoryFilter.setValue(ALL_CATEGORIES);
+        refreshCategoryFilter();
         categoryFilter.setOnAction(e -> refreshProductDisplay());
-    }
 
-    // refresh products
-    private void refreshProductDisplay() {
-        productContainer.getChildren().clear();
-        String selectedCategory = categoryFilter.getValue();
-
-        for (Product p : ProductFileManager.getProducts()) {
-            if (selectedCategory.equals("All") || p.getCategory().equals(selectedCategory)) {
-                addProductCard(p);
-            }
-        }
+        // New categories and count changes show up without rebuilding anything
+        ProductFileManager.getCatalogue().addFacetListener(facetListener);
     }
 
-    // product card UI
-    private void addProductCard(Product product) {
-        VBox card = new VBox(10);
-        card.setAlignment(Pos.CENTER);
-        card.setPadding(new Insets(10));
-        card.setStyle("-fx-background-color: rgba(255,255,255,0.08);"
-                + "-fx-background-radius: 15;"
-                + "-fx-effect: dropshadow(gaussian, rgba(0,0,0,0.2), 10, 0, 0, 4);"
-                + "-fx-pref-width: 180;");
-
-        ImageView imageView;
-
-        var url = getClass().getResource(product.getImagePath());
-        if (url == null) {
-            url = getClass().getResource("/images/default.png");
+    // Reloads the categories and their counts, keeping the current choice if it still exists
+    private void refreshCategoryFilter() {
+        facetRefreshPending.set(false);
+        ProductCatalogue catalogue = ProductFileManager.getCatalogue();
+
+        facetsByCategory.clear();
+        facetsByCategory.put(ALL_CATEGORIES, catalogue.getTotalFacet(ALL_CATEGORIES));
+        List<String> categories = new ArrayList<>();
+        categories.add(ALL_CATEGORIES);
+        for (CategoryFacets.Facet facet : catalogue.getCategoryFacets()) {
+            facetsByCategory.put(facet.getCategory(), facet);
+            categories.add(facet.getCategory());
         }
 
-        Image image = new Image(
-                url.toExternalForm(),
-                120,     //  width
-                120,     // height
-                true,    // ratio
-                true     // smooth
-        );
-
-        imageView = new ImageView(image);
-        imageView.setFitWidth(120);
-        imageView.setFitHeight(120);
-        imageView.setPreserveRatio(true);
-        imageView.setSmooth(true);
-        imageView.setCache(true);
+        String selected = categoryFilter.getValue();
+        boolean keepSelection = selected == null || categories.contains(selected);
+        var onAction = categoryFilter.getOnAction();
+        categoryFilter.setOnAction(null);
+        categoryFilter.getItems().setAll(categories);
+        categoryFilter.setValue(keepSelection ? selected : ALL_CATEGORIES);
+        categoryFilter.setOnAction(onAction);
 
+        if (!keepSelection) {
+            refreshProductDisplay();
+        }
+    }
 
-        Label nameLabel = new Label(product.getName());
-        nameLabel.setStyle("-fx-text-fill: white; -fx-font-size: 16px; -fx-font-weight: bold;");
-
-        Label priceLabel = new Label(String.format("£%.2f", product.getPrice()));
-        priceLabel.setStyle("-fx-text-fill: #2ecc71; -fx-font-size: 14px;");
+    // refresh products; the grid only builds the cards that are on screen
+    private void refreshProductDisplay() {
+        String keyword = txtSearch.getText() == null ? "" : txtSearch.getText().trim();
+        if (keyword.isEmpty()) {
+            productGrid.setProducts(new ArrayList<>(productsInSelectedCategory()));
+        } else {
+            productGrid.setProducts(ProductFileManager.getCatalogue()
+                    .search(keyword, selectedCategory(), SEARCH_RESULTS));
+        }
+    }
 
-        Label stockLabel = new Label("Stock: " + product.getQuantity());
-        stockLabel.setStyle("-fx-text-fill: #cccccc; -fx-font-size: 12px;");
+    // Stock and price changes redraw just those cards; products coming or going re-run the filter once
+    private void onCatalogueChanged(List<CatalogueEvent> events) {
+        boolean membershipChanged = false;
+        for (CatalogueEvent event : events) {
+            if (event instanceof CatalogueEvent.ProductAdded || event instanceof CatalogueEvent.ProductRemoved) {
+                membershipChanged = true;
+            } else {
+                productGrid.updateCard(event.getProduct());
+            }
+        }
+        if (membershipChanged) {
+            refreshProductDisplay();
+        }
+    }
 
-        Button addButton = new Button("Add to Cart");
-        addButton.setStyle("-fx-background-color: #27ae60; -fx-text-fill: white; "
-                + "-fx-background-radius: 10; -fx-font-weight: bold; -fx-padding: 5 15;");
-        addButton.setOnAction(e -> addToCart(product));
+    // Products in the selected category, taken from the catalogue's category index
+    private Collection<Product> productsInSelectedCategory() {
+        String selectedCategory = selectedCategory();
+        if (selectedCategory == null) {
+            return ProductFileManager.getProducts();
+        }
+        return ProductFileManager.getCatalogue().getByCategory(selectedCategory);
+    }
 
-        card.getChildren().addAll(imageView, nameLabel, priceLabel, stockLabel, addButton);
-        productContainer.getChildren().add(card);
+    // The chosen category, or null for "All"
+    private String selectedCategory() {
+        String selectedCategory = categoryFilter.getValue();
+        return selectedCategory == null || selectedCategory.equals(ALL_CATEGORIES) ? null : selectedCategory;
     }
 
     // Add to cart
     private void addToCart(Product product) {
-        if (product.getQuantity() <= 0) {
+        // Take the stock atomically so another till cannot sell the same unit
+        CheckoutReply reply = checkoutGateway.addToCart(product.getName(), 1);
+        if (reply.getStatus() == CheckoutReply.Status.OUT_OF_STOCK) {
             showAlert("Out of Stock", product.getName() + " is currently out of stock.");
             return;
         }
+        if (!reply.isOk()) {
+            showAlert("Unavailable", "The checkout service could not add " + product.getName() + ".");
+            return;
+        }
 
-        product.setQuantity(product.getQuantity() - 1);
-        ProductFileManager.saveProducts();
-
-        String entry = product.getName() + " - £" + String.format("%.2f", product.getPrice());
-        cartList.getItems().add(entry);
+        cart.add(product.getName(), 1, product.getPricePennies());
 
+        // The card's stock is redrawn by the catalogue's StockChanged event
         updateCartTotal();
-        refreshProductDisplay();
     }
 
     // Remove
     @FXML
     private void handleRemoveFromCart(ActionEvent event) {
-        String selected = cartList.getSelectionModel().getSelectedItem();
+        CartItem selected = cartList.getSelectionModel().getSelectedItem();
         if (selected != null) {
-            cartList.getItems().remove(selected);
+            // Take one unit off the line and put it back on the shelf
+            if (cart.remove(selected.getProductName(), 1) > 0) {
+                checkoutGateway.removeFromCart(selected.getProductName(), 1);
+            }
             updateCartTotal();
         }
     }
 
     //update cart total
     private void updateCartTotal() {
-        double total = 0.0;
-
-        for (String item : cartList.getItems()) {
-            try {
-                String priceText = item.substring(item.lastIndexOf("£") + 1);
-                total += Double.parseDouble(priceText);
-            } catch (Exception e) {
-                System.err.println("Price parse error: " + item);
-            }
-        }
-
-        cartTotalLabel.setText(String.format("£%.2f", total));
+        cartTotalLabel.setText(Money.format(cart.getTotalPennies()));
     }
 
     @FXML
     private void handleCheckout(ActionEvent event) {
 
-        if (cartList.getItems().isEmpty()) {
+        if (cart.isEmpty()) {
             showAlert("Cart Empty", "Please add items before purchasing.");
             return;
         }
 
-        List<SaleRecord> saleRecords = new ArrayList<>();
-        double cartTotal = 0.0;
-
-        List<String> rawItems = cartList.getItems();
-
-        for (String item : rawItems) {
-            try {
-                String name = item.substring(0, item.lastIndexOf(" - £"));
-                double price = Double.parseDouble(item.substring(item.lastIndexOf("£") + 1));
-
-                cartTotal += price;
-                saleRecords.add(new SaleRecord(name, 1, price));
-
-            } catch (Exception e) {
-                System.err.println("Failed to parse cart entry: " + item);
-            }
-        }
-
-        String receiptPath = ReceiptGenerator.createReceiptFromStrings(rawItems, cartTotal);
-
-        try {
-            java.awt.Desktop.getDesktop().open(new File(receiptPath));
-        } catch (Exception ex) {
-            System.err.println("Could not open receipt file.");
+        // Record the sale; the stored sales totals are updated when it commits
+        CheckoutReply reply = checkoutGateway.checkout(cart.toSaleRecords());
+        if (!reply.isOk()) {
+            showAlert("Unavailable", "The purchase could not be recorded, please try again.");
+            return;
         }
 
-
-        // Generate Receipt
-        ReceiptGenerator.createReceiptFromStrings(rawItems, cartTotal);
-
-        //  Update Total Sales
-        double previousSales = salesFileManager.loadTotalSales();
-        double updatedSales = previousSales + cartTotal;
-        salesFileManager.saveTotalSales(updatedSales);
-
-        salesFileManager.saveSaleRecords(saleRecords);
+        // Write and open the receipt in the background; the sale is already recorded.
+        // Its total is what was charged, which the checkout server prices itself
+        ReceiptPipeline.getDefault().submitAndOpen(List.copyOf(cart.getItems()), reply.getValue());
 
         // Clear cart UI
-        cartList.getItems().clear();
-        cartTotalLabel.setText("£0.00");
+        cart.clear();
+        updateCartTotal();
 
         showAlert("Success", "Purchase completed! Receipt saved.");
     }
     /**
-     * Filters products by search keyword and category.
+     * Filters products by search keyword and category straight away.
      */
     @FXML
     private void handleSearch(ActionEvent event) {
-        String keyword = txtSearch.getText().trim().toLowerCase();
-
-        productContainer.getChildren().clear();
-
-        String selectedCategory = categoryFilter.getValue();
-
-        for (Product p : ProductFileManager.getProducts()) {
-            boolean matchesName = p.getName().toLowerCase().contains(keyword);
-            boolean matchesCategory = selectedCategory.equals("All") ||
-                    p.getCategory().equals(selectedCategory);
-
-            if (matchesName && matchesCategory) {
-                addProductCard(p);
-            }
-        }
+        searchDelay.stop();
+        refreshProductDisplay();
     }
     /**
      * Clears the search field and restores the full product list.
@@ -256,6 +266,7 @@ public class BuyerController {
     @FXML
     private void handleClearSearch(ActionEvent event) {
         txtSearch.clear();
+        searchDelay.stop();
         refreshProductDisplay();
     }
 
@@ -264,6 +275,8 @@ public class BuyerController {
      */
     @FXML
     private void handleBack(ActionEvent event) {
+        ProductFileManager.getCatalogue().removeFacetListener(facetListener);
+        ProductFileManager.getCatalogue().removeEventListener(catalogueListener);
         try {
             Stage stage = (Stage) ((Button) event.getSource()).getScene().getWindow();
             new Main().start(stage);
@@ -1,29 +1,43 @@
 package org.minimarket.client.market;
 
+import javafx.animation.PauseTransition;
+import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
 import javafx.scene.control.*;
-import javafx.scene.control.cell.PropertyValueFactory;
 import javafx.stage.Stage;
+import javafx.util.Duration;
+import org.minimarket.catalogue.Cart;
 import org.minimarket.catalogue.CartItem;
 import org.minimarket.catalogue.Product;
+import org.minimarket.main.Main;
+import org.minimarket.storageAccess.LowStockIndex;
 import org.minimarket.storageAccess.ProductFileManager;
-import org.minimarket.storageAccess.SalesFileManager;
+import org.minimarket.service.CheckoutGateway;
+import org.minimarket.service.CheckoutReply;
+import org.minimarket.utility.Money;
 import org.minimarket.utility.SoundManager;
 
+
 /**
  * MarketController handles both buyer and worker interactions.
  * It manages product inventory, shopping cart operations,
  */
 public class MarketController {
 
+    /** Most search results shown at once. */
+    private static final int SEARCH_RESULTS = 500;
+
+    /** Pause in typing before the search runs. */
+    private static final Duration SEARCH_DELAY = Duration.millis(150);
+
     //  Product table (inventory view)
     @FXML private TableView<Product> tblProducts;
     @FXML private TableColumn<Product, String> colName;
-    @FXML private TableColumn<Product, Double> colPrice;
-    @FXML private TableColumn<Product, Integer> colStock;
+    @FXML private TableColumn<Product, Number> colPrice;
+    @FXML private TableColumn<Product, Number> colStock;
 
     //  Search & filter controls
     @FXML private TextField txtSearch;
@@ -48,8 +62,8 @@ public class MarketController {
     @FXML private Label lblTotalSales;
     @FXML private TableView<CartItem> tblCart;
     @FXML private TableColumn<CartItem, String> cartName;
-    @FXML private TableColumn<CartItem, Integer> cartQty;
-    @FXML private TableColumn<CartItem, Double> cartSubtotal;
+    @FXML private TableColumn<CartItem, Number> cartQty;
+    @FXML private TableColumn<CartItem, Number> cartSubtotal;
 
     @FXML private TextField txtCartName;
     @FXML private TextField txtCartQty;
@@ -63,14 +77,16 @@ public class MarketController {
 
     //  Data collections
     private ObservableList<Product> products;
-    private ObservableList<CartItem> cartItems;
+    private final Cart cart = new Cart();
 
     //  Utilities
     private SoundManager soundManager;
-    private final SalesFileManager salesFileManager = new SalesFileManager();
+    private final CheckoutGateway checkoutGateway = CheckoutGateway.getDefault();
+    private final PauseTransition searchDelay = new PauseTransition(SEARCH_DELAY);
+    private final LowStockIndex.Listener reorderListener = this::onReorderPointCrossed;
 
     // Sales tracking
-    private double totalSales = 0.0;
+    private long totalSales = 0;
 
     // User role (buyer by default)
     private String userRole = "buyer";
@@ -83,28 +99,30 @@ public class MarketController {
     @FXML
     public void initialize() {
 
-        // Bind product table columns to Product properties
-        colName.setCellValueFactory(new PropertyValueFactory<>("name"));
-        colPrice.setCellValueFactory(new PropertyValueFactory<>("price"));
-        colStock.setCellValueFactory(new PropertyValueFactory<>("quantity"));
+        // Bind product table columns to Product properties; a stock change repaints just its row
+        colName.setCellValueFactory(cell -> cell.getValue().nameProperty());
+        colPrice.setCellValueFactory(cell -> cell.getValue().priceProperty());
+        colStock.setCellValueFactory(cell -> cell.getValue().quantityProperty());
 
         // Bind cart table columns to CartItem properties
-        cartName.setCellValueFactory(new PropertyValueFactory<>("productName"));
-        cartQty.setCellValueFactory(new PropertyValueFactory<>("quantity"));
-        cartSubtotal.setCellValueFactory(new PropertyValueFactory<>("subtotal"));
+        cartName.setCellValueFactory(cell -> cell.getValue().productNameProperty());
+        cartQty.setCellValueFactory(cell -> cell.getValue().quantityProperty());
+        cartSubtotal.setCellValueFactory(cell -> cell.getValue().subtotalProperty());
 
         // Load products from persistent storage
         ProductFileManager.loadProducts();
         products = ProductFileManager.getProducts();
         tblProducts.setItems(products);
 
+        // Search as the user types, once they pause
+        searchDelay.setOnFinished(e -> applySearch());
+        txtSearch.textProperty().addListener((obs, oldText, newText) -> searchDelay.playFromStart());
+
         // Initialise cart
-        cartItems = FXCollections.observableArrayList();
-        tblCart.setItems(cartItems);
+        tblCart.setItems(cart.getItems());
 
-        // Load total sales from file
-        totalSales = salesFileManager.loadTotalSales();
-        lblTotalSales.setText(String.format("£%.2f", totalSales));
+        // Load total sales from file (or the checkout server)
+        loadTotalSales();
         lblCartTotal.setText("Cart Total: £0.00");
     }
 
@@ -148,24 +166,25 @@ public class MarketController {
     }
 
     /**
-     * Filters products by search keyword.
+     * Filters products by search keyword straight away (Enter or the Search button).
      */
     @FXML
     private void handleSearch(ActionEvent e) {
-        String keyword = txtSearch.getText().trim().toLowerCase();
+        searchDelay.stop();
+        applySearch();
+    }
+
+    // Shows the ranked matches from the catalogue's search index
+    private void applySearch() {
+        String keyword = txtSearch.getText().trim();
 
         if (keyword.isEmpty()) {
             tblProducts.setItems(products);
             return;
         }
 
-        ObservableList<Product> filtered = FXCollections.observableArrayList();
-        for (Product p : products) {
-            if (p.getName().toLowerCase().contains(keyword)) {
-                filtered.add(p);
-            }
-        }
-        tblProducts.setItems(filtered);
+        tblProducts.setItems(FXCollections.observableArrayList(
+                ProductFileManager.getCatalogue().search(keyword, null, SEARCH_RESULTS)));
     }
 
     /**
@@ -174,25 +193,39 @@ public class MarketController {
     @FXML
     private void handleClearSearch(ActionEvent e) {
         txtSearch.clear();
+        searchDelay.stop();
         tblProducts.setItems(products);
     }
 
     /**
-     * Filters products with low stock levels.
+     * Filters products with low stock levels, most urgent first.
      */
     @FXML
     private void handleLowStockFilter(ActionEvent e) {
+        // Only listen for reorder events while the low-stock view is showing
         if (chkLowStock.isSelected()) {
-            ObservableList<Product> lowStock = FXCollections.observableArrayList();
-            for (Product p : products) {
-                if (p.getQuantity() < 5) lowStock.add(p);
-            }
-            tblProducts.setItems(lowStock);
+            ProductFileManager.getCatalogue().addReorderListener(reorderListener);
+            showLowStock();
         } else {
+            ProductFileManager.getCatalogue().removeReorderListener(reorderListener);
             tblProducts.setItems(products);
         }
     }
 
+    private void showLowStock() {
+        tblProducts.setItems(FXCollections.observableArrayList(
+                ProductFileManager.getCatalogue().getLowStock(Integer.MAX_VALUE)));
+    }
+
+    // Keeps the low-stock view current when a product crosses its reorder point
+    private void onReorderPointCrossed(Product product, boolean low) {
+        Platform.runLater(() -> {
+            if (chkLowStock.isSelected()) {
+                showLowStock();
+            }
+        });
+    }
+
     /**
      * Adds a new product to inventory (worker only).
      */
@@ -269,17 +302,21 @@ public class MarketController {
             return;
         }
 
-        if (selected.getQuantity() < qty) {
-            showAlert("Error", "Not enough stock.");
+        if (qty <= 0) {
+            showAlert("Error", "Invalid quantity.");
             return;
         }
 
-        selected.setQuantity(selected.getQuantity() - qty);
-        cartItems.add(new CartItem(name, qty, selected.getPrice() * qty));
+        // Take the stock atomically so another till cannot sell the same units
+        CheckoutReply reply = checkoutGateway.addToCart(selected.getName(), qty);
+        if (!reply.isOk()) {
+            showCheckoutProblem(reply);
+            return;
+        }
+
+        cart.add(selected.getName(), qty, selected.getPricePennies());
 
         updateCartTotal();
-        ProductFileManager.saveProducts();
-        tblProducts.refresh();
     }
 
     /**
@@ -288,35 +325,24 @@ public class MarketController {
     @FXML
     private void handleCheckout(ActionEvent e) {
 
-        if (cartItems.isEmpty()) {
+        if (cart.isEmpty()) {
             showAlert("Cart Empty", "Add items before checkout.");
             return;
         }
 
-        double cartTotal = 0.0;
-
-        // 1) Save each cart item as a sale record (so it appears in report)
-        for (CartItem item : cartItems) {
-            cartTotal += item.getSubtotal();
-
-            salesFileManager.saveSaleRecords(
-                    java.util.List.of(
-                            new org.minimarket.catalogue.SaleRecord(
-                                    item.getProductName(),
-                                    item.getQuantity(),
-                                    item.getSubtotal()
-                            )
-                    )
-            );
+        // 1) Save the whole cart as sale records in one batch (so it appears in report)
+        CheckoutReply reply = checkoutGateway.checkout(cart.toSaleRecords());
+        if (!reply.isOk()) {
+            showCheckoutProblem(reply);
+            return;
         }
 
-        // 2) Update total sales (stored total)
-        totalSales += cartTotal;
-        salesFileManager.saveTotalSales(totalSales);
-        lblTotalSales.setText(String.format("£%.2f", totalSales));
+        // 2) Update total sales by what was charged, which the checkout server prices itself
+        totalSales += reply.getValue();
+        lblTotalSales.setText(Money.format(totalSales));
 
         // 3) Clear cart
-        cartItems.clear();
+        cart.clear();
         updateCartTotal();
 
         showAlert("Success", "Purchase complete!");
@@ -335,18 +361,49 @@ public class MarketController {
         }
     }
 
+    /**
+     * Returns the user to the main menu.
+     */
+    @FXML
+    private void handleBack(ActionEvent event) {
+        // The catalogue outlives this view, so it must not keep calling back into it
+        ProductFileManager.getCatalogue().removeReorderListener(reorderListener);
+        searchDelay.stop();
+        try {
+            Stage stage = (Stage) ((Button) event.getSource()).getScene().getWindow();
+            new Main().start(stage);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    // Shows the total sales recorded so far
+    private void loadTotalSales() {
+        CheckoutReply reply = checkoutGateway.totalSales();
+        if (reply.isOk()) {
+            totalSales = reply.getValue();
+        }
+        lblTotalSales.setText(Money.format(totalSales));
+    }
+
+    // Explains why the checkout service refused a request
+    private void showCheckoutProblem(CheckoutReply reply) {
+        switch (reply.getStatus()) {
+            case NOT_FOUND -> showAlert("Not Found", "Product does not exist.");
+            case OUT_OF_STOCK -> showAlert("Error", "Not enough stock.");
+            case BUSY -> showAlert("Busy", "The checkout service is busy, please try again.");
+            default -> showAlert("Error", "The checkout service is unavailable.");
+        }
+    }
+
     // Updates cart total label
     private void updateCartTotal() {
-        double total = cartItems.stream().mapToDouble(CartItem::getSubtotal).sum();
-        lblCartTotal.setText(String.format("Cart Total: £%.2f", total));
+        lblCartTotal.setText("Cart Total: " + Money.format(cart.getTotalPennies()));
     }
 
-    // Finds product by name (case-insensitive)
+    // Finds product by name (case-insensitive) through the catalogue's name index
     private Product findProductByName(String name) {
-        for (Product p : products)
-            if (p.getName().equalsIgnoreCase(name))
-                return p;
-        return null;
+        return ProductFileManager.getCatalogue().findByName(name);
     }
 
     // Displays information alerts
@@ -363,8 +420,7 @@ public class MarketController {
      */
     @FXML
     private void handleRefreshSales(ActionEvent e) {
-        totalSales = salesFileManager.loadTotalSales();
-        lblTotalSales.setText(String.format("£%.2f", totalSales));
+        loadTotalSales();
         showAlert("Sales Updated", "Sales refreshed.");
     }
 
@@ -372,7 +428,10 @@ public class MarketController {
     private void handleRemoveFromCart(ActionEvent e) {
         CartItem selected = tblCart.getSelectionModel().getSelectedItem();
         if (selected != null) {
-            cartItems.remove(selected);
+            cart.removeLine(selected);
+
+            // Put the reserved units back on the shelf
+            checkoutGateway.removeFromCart(selected.getProductName(), selected.getQuantity());
             updateCartTotal();
         }
     }
@@ -0,0 +1,230 @@
+package org.minimarket.client.market;
+
+import javafx.geometry.Pos;
+import javafx.scene.control.Button;
+import javafx.scene.control.Label;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
+import javafx.scene.image.ImageView;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.VBox;
+
+import org.minimarket.catalogue.Product;
+import org.minimarket.utility.Money;
+import org.minimarket.utility.StyleManager;
+import org.minimarket.utility.ThumbnailCache;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * ProductGrid shows product cards in a virtualized grid.
+ *
+ * It is a ListView whose items are row numbers; each row cell lays out a
+ * handful of cards side by side. Only the rows that are on screen have
+ * cells, and the ListView reuses those cells as the user scrolls, so the
+ * number of card nodes depends on the window size rather than on the
+ * number of products.
+ *
+ * Cards are styled through the "product-card" style classes in style.css.
+ * The grid remembers which card is currently showing which product, so a
+ * stock change only updates that one card (see {@link #updateCard(Product)}).
+ */
+public class ProductGrid extends ListView<Integer> {
+
+    /** Width of a card plus the gap between cards, in pixels. */
+    private static final double CELL_WIDTH = 205;
+
+    /** Height of one row of cards, in pixels. */
+    private static final double ROW_HEIGHT = 285;
+
+    /** Width and height of the product pictures, in pixels. */
+    private static final double THUMBNAIL_SIZE = 120;
+
+    /** Space taken by the list's padding and scroll bar. */
+    private static final double CHROME_WIDTH = 40;
+
+    private List<Product> products = List.of();
+    private int columns = 1;
+    private Consumer<Product> onAddToCart = p -> { };
+
+    // Cards currently showing each product; only visible cards are in here
+    private final Map<Product, ProductCard> cardsByProduct = new IdentityHashMap<>();
+
+    public ProductGrid() {
+        getStyleClass().add("product-grid");
+        StyleManager.applyStyle(this);
+
+        setFixedCellSize(ROW_HEIGHT);
+        setFocusTraversable(false);
+        setCellFactory(list -> new RowCell());
+
+        widthProperty().addListener((obs, oldWidth, newWidth) -> {
+            int fit = columnsFor(newWidth.doubleValue());
+            if (fit != columns) {
+                columns = fit;
+                rebuildRows();
+            }
+        });
+    }
+
+    /**
+     * Number of cards that fit side by side in the given width.
+     */
+    static int columnsFor(double width) {
+        return Math.max(1, (int) ((width - CHROME_WIDTH) / CELL_WIDTH));
+    }
+
+    /**
+     * Number of rows needed for the given number of products.
+     */
+    static int rowsFor(int productCount, int columns) {
+        return (productCount + columns - 1) / columns;
+    }
+
+    /**
+     * Sets the action run when a card's "Add to Cart" button is pressed.
+     */
+    public void setOnAddToCart(Consumer<Product> onAddToCart) {
+        this.onAddToCart = onAddToCart;
+    }
+
+    /**
+     * Shows the given products. Only the visible rows are redrawn; their
+     * cells are rebuilt once here, not on every scroll.
+     *
+     * @param products the products to show, in display order
+     */
+    public void setProducts(List<Product> products) {
+        this.products = products;
+        rebuildRows();
+    }
+
+    /**
+     * Redraws the card for one product, if it is on screen.
+     * Used after its stock changes.
+     */
+    public void updateCard(Product product) {
+        ProductCard card = cardsByProduct.get(product);
+        if (card != null) {
+            card.show(product);
+        }
+    }
+
+    private void rebuildRows() {
+        int rows = rowsFor(products.size(), columns);
+        if (rows != getItems().size()) {
+            List<Integer> rowNumbers = new ArrayList<>(rows);
+            for (int i = 0; i < rows; i++) {
+                rowNumbers.add(i);
+            }
+            getItems().setAll(rowNumbers);
+        }
+        // Row numbers may be unchanged while the products behind them are not
+        refresh();
+    }
+
+    // One row of cards; the cards are kept and reused with the cell
+    private class RowCell extends ListCell<Integer> {
+        private final HBox row = new HBox();
+        private final List<ProductCard> cards = new ArrayList<>();
+
+        RowCell() {
+            row.getStyleClass().add("product-row");
+            setText(null);
+        }
+
+        @Override
+        protected void updateItem(Integer rowNumber, boolean empty) {
+            super.updateItem(rowNumber, empty);
+
+            for (ProductCard card : cards) {
+                card.unbind();
+            }
+            if (empty || rowNumber == null) {
+                setGraphic(null);
+                return;
+            }
+
+            while (cards.size() < columns) {
+                ProductCard card = new ProductCard();
+                cards.add(card);
+                row.getChildren().add(card);
+            }
+
+            int first = rowNumber * columns;
+            for (int i = 0; i < cards.size(); i++) {
+                ProductCard card = cards.get(i);
+                int index = first + i;
+                if (i < columns && index < products.size()) {
+                    card.show(products.get(index));
+                    card.setVisible(true);
+                    card.setManaged(true);
+                } else {
+                    card.setVisible(false);
+                    card.setManaged(i < columns);
+                }
+            }
+            setGraphic(row);
+        }
+    }
+
+    // A single product card; its nodes are created once and refilled on reuse
+    private class ProductCard extends VBox {
+        private final ImageView imageView = new ImageView();
+        private final Label nameLabel = new Label();
+        private final Label priceLabel = new Label();
+        private final Label stockLabel = new Label();
+        private final Button addButton = new Button("Add to Cart");
+
+        private Product product;
+        private String imagePath;
+
+        ProductCard() {
+            getStyleClass().add("product-card");
+            setAlignment(Pos.CENTER);
+
+            imageView.setFitWidth(THUMBNAIL_SIZE);
+            imageView.setFitHeight(THUMBNAIL_SIZE);
+            imageView.setPreserveRatio(true);
+            imageView.setSmooth(true);
+
+            nameLabel.getStyleClass().add("product-card-name");
+            priceLabel.getStyleClass().add("product-card-price");
+            stockLabel.getStyleClass().add("product-card-stock");
+            addButton.getStyleClass().add("product-card-button");
+            addButton.setOnAction(e -> {
+                if (product != null) {
+                    onAddToCart.accept(product);
+                }
+            });
+
+            getChildren().addAll(imageView, nameLabel, priceLabel, stockLabel, addButton);
+        }
+
+        void show(Product product) {
+            this.product = product;
+            cardsByProduct.put(product, this);
+
+            nameLabel.setText(product.getName());
+            priceLabel.setText(Money.format(product.getPricePennies()));
+            stockLabel.setText("Stock: " + product.getQuantity());
+
+            // Only look the picture up again when the card moves to a product with a different one
+            if (!product.getImagePath().equals(imagePath)) {
+                imagePath = product.getImagePath();
+                ThumbnailCache.getDefault().load(imageView, imagePath, THUMBNAIL_SIZE);
+            }
+        }
+
+        void unbind() {
+            if (product != null && cardsByProduct.get(product) == this) {
+                cardsByProduct.remove(product);
+            }
+            product = null;
+        }
+    }
+}
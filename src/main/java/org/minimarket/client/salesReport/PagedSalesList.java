@@ -0,0 +1,129 @@
+package org.minimarket.client.salesReport;
+
+import javafx.application.Platform;
+import javafx.collections.ObservableListBase;
+import org.minimarket.catalogue.SaleRecord;
+import org.minimarket.storageAccess.SalesRepository;
+
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * PagedSalesList is a read-only ObservableList over the sales log that only
+ * holds the pages of rows the table has actually asked for.
+ *
+ * Its size is the number of rows in the log, which is known without reading
+ * them. When the TableView asks for a row whose page is not loaded yet, get()
+ * returns null (an empty row) and the page, plus its neighbours as a prefetch
+ * window, is loaded on a background thread. Once a page arrives the list fires
+ * a change for those rows so the visible cells fill in. Only a bounded number
+ * of pages is kept; the least recently used ones are dropped.
+ */
+public class PagedSalesList extends ObservableListBase<SaleRecord> {
+
+    /** Rows per page. */
+    private static final int PAGE_SIZE = 200;
+
+    /** Pages either side of a requested page that are loaded as well. */
+    private static final int PREFETCH_PAGES = 1;
+
+    /** Largest number of pages held in memory. */
+    private static final int MAX_CACHED_PAGES = 32;
+
+    /** One background thread loads pages for every open report. */
+    private static final ExecutorService loader = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "sales-page-loader");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final SalesRepository sales;
+    private final int size;
+
+    // Loaded pages in access order; only touched on the FX thread
+    private final Map<Integer, List<SaleRecord>> pages = new LinkedHashMap<>(16, 0.75f, true);
+    private final Set<Integer> pending = new HashSet<>();
+
+    /**
+     * @param sales the source of the rows
+     */
+    public PagedSalesList(SalesRepository sales) {
+        this.sales = sales;
+        this.size = (int) Math.min(Integer.MAX_VALUE, sales.getSaleRecordCount());
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public SaleRecord get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException(index);
+        }
+
+        int page = index / PAGE_SIZE;
+        List<SaleRecord> rows = pages.get(page);
+
+        for (int p = page - PREFETCH_PAGES; p <= page + PREFETCH_PAGES; p++) {
+            requestPage(p);
+        }
+
+        if (rows == null) {
+            return null;
+        }
+        int offset = index % PAGE_SIZE;
+        return offset < rows.size() ? rows.get(offset) : null;
+    }
+
+    // Starts a background load of a page unless it is loaded or on its way
+    private void requestPage(int page) {
+        if (page < 0 || (long) page * PAGE_SIZE >= size || pages.containsKey(page) || !pending.add(page)) {
+            return;
+        }
+
+        long fromRow = (long) page * PAGE_SIZE;
+        int count = (int) Math.min(PAGE_SIZE, size - fromRow);
+
+        loader.execute(() -> {
+            List<SaleRecord> rows;
+            try {
+                rows = sales.loadSaleRecords(fromRow, count);
+            } catch (RuntimeException e) {
+                System.err.println("Error loading sales page " + page + ": " + e.getMessage());
+                rows = List.of();
+            }
+            List<SaleRecord> loaded = rows;
+            Platform.runLater(() -> pageLoaded(page, count, loaded));
+        });
+    }
+
+    // Stores a page, drops the oldest one if needed and tells the table the rows changed
+    private void pageLoaded(int page, int count, List<SaleRecord> rows) {
+        pending.remove(page);
+        // The rows were counted up front, so a short page means the read failed;
+        // leave it out of the cache so it is loaded again the next time it is shown
+        if (rows.size() < count) {
+            return;
+        }
+        pages.put(page, rows);
+
+        if (pages.size() > MAX_CACHED_PAGES) {
+            Integer eldest = pages.keySet().iterator().next();
+            pages.remove(eldest);
+        }
+
+        int from = page * PAGE_SIZE;
+        beginChange();
+        for (int i = 0; i < rows.size(); i++) {
+            nextSet(from + i, null);
+        }
+        endChange();
+    }
+}
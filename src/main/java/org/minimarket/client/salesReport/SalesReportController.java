@@ -1,20 +1,38 @@
 package org.minimarket.client.salesReport;
 
+import javafx.beans.property.ReadOnlyObjectWrapper;
+import javafx.beans.property.SimpleObjectProperty;
+import javafx.beans.property.SimpleStringProperty;
 import javafx.collections.FXCollections;
+import javafx.concurrent.Task;
 import javafx.fxml.FXML;
+import javafx.scene.control.Button;
+import javafx.scene.control.ComboBox;
+import javafx.scene.control.DatePicker;
 import javafx.scene.control.Label;
 import javafx.scene.control.TableColumn;
 import javafx.scene.control.TableView;
-import javafx.scene.control.cell.PropertyValueFactory;
 import org.minimarket.catalogue.SaleRecord;
-import org.minimarket.storageAccess.SalesFileManager;
-
+import org.minimarket.storageAccess.Repositories;
+import org.minimarket.storageAccess.SalesAnalytics;
+import org.minimarket.storageAccess.SalesRepository;
+import org.minimarket.storageAccess.SalesRollups;
+import org.minimarket.utility.Money;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 /**
  * The SalesReportController is responsible for displaying a table of all
  * recorded sales in the system. It loads the sales log from storage, displays
  * each sale in a JavaFX TableView, and calculates the total revenue.
+ * A second tab shows sales per hour (today) or per day (last 30 days),
+ * read from the rollups kept by the sales repository, and an
+ * "Insights" tab runs a parallel analysis of the log for a chosen date range.
  *
  * This controller is part of the GUI component responsible for reporting
  * and analytics in the Mini Market application.
@@ -28,16 +46,54 @@ public class SalesReportController {
     @FXML private TableColumn<SaleRecord, String> colProduct;
 
     /** Column showing the quantity sold */
-    @FXML private TableColumn<SaleRecord, Integer> colQty;
+    @FXML private TableColumn<SaleRecord, Number> colQty;
 
     /** Column showing the subtotal (£) generated by the sale */
-    @FXML private TableColumn<SaleRecord, Double> colSubtotal;
+    @FXML private TableColumn<SaleRecord, Number> colSubtotal;
 
     /** Label showing the total revenue from all recorded sales */
     @FXML private Label lblTotal;
 
+    /** Label showing the revenue taken so far today */
+    @FXML private Label lblToday;
+
+    /** Chooses between hourly and daily buckets in the "By Time" tab */
+    @FXML private ComboBox<String> cmbGranularity;
+
+    /** Table of time buckets (hour or day) with their sales */
+    @FXML private TableView<SalesRollups.TimeBucket> timeTable;
+    @FXML private TableColumn<SalesRollups.TimeBucket, String> colPeriod;
+    @FXML private TableColumn<SalesRollups.TimeBucket, Long> colPeriodUnits;
+    @FXML private TableColumn<SalesRollups.TimeBucket, Double> colPeriodRevenue;
+
+    /** Date range and controls for the "Insights" tab */
+    @FXML private DatePicker dpFrom;
+    @FXML private DatePicker dpTo;
+    @FXML private Button btnAnalyse;
+    @FXML private Label lblInsightStatus;
+
+    /** Best-selling products in the chosen range */
+    @FXML private TableView<SalesAnalytics.ProductStat> topTable;
+    @FXML private TableColumn<SalesAnalytics.ProductStat, String> colTopProduct;
+    @FXML private TableColumn<SalesAnalytics.ProductStat, Long> colTopUnits;
+    @FXML private TableColumn<SalesAnalytics.ProductStat, Double> colTopRevenue;
+
+    /** Revenue per category in the chosen range */
+    @FXML private TableView<Map.Entry<String, Double>> categoryTable;
+    @FXML private TableColumn<Map.Entry<String, Double>, String> colCategory;
+    @FXML private TableColumn<Map.Entry<String, Double>, Double> colCategoryRevenue;
+
+    /** Number of products listed in the top products table */
+    private static final int TOP_PRODUCTS = 10;
+
+    private static final String HOURLY_TODAY = "Hourly (today)";
+    private static final String DAILY_30_DAYS = "Daily (last 30 days)";
+
+    private static final DateTimeFormatter HOUR_FORMAT = DateTimeFormatter.ofPattern("dd MMM HH:00");
+    private static final DateTimeFormatter DAY_FORMAT = DateTimeFormatter.ofPattern("EEE dd MMM yyyy");
+
     /** Handles loading and saving sales data to the CSV files */
-    private final SalesFileManager salesFileManager = new SalesFileManager();
+    private final SalesRepository sales = Repositories.sales();
 
     /**
      * Called automatically when the FXML view is loaded.
@@ -51,33 +107,143 @@ public class SalesReportController {
         assert colQty != null : "fx:id=\"colQty\" was not injected.";
         assert colSubtotal != null : "fx:id=\"colSubtotal\" was not injected.";
 
-        // Bind table columns to SaleRecord fields
-        colProduct.setCellValueFactory(new PropertyValueFactory<>("productName"));
-        colQty.setCellValueFactory(new PropertyValueFactory<>("quantity"));
-        colSubtotal.setCellValueFactory(new PropertyValueFactory<>("subtotal"));
+        // Bind table columns to SaleRecord properties; a row whose page is
+        // still loading has no record yet and shows empty
+        colProduct.setCellValueFactory(cell -> cell.getValue() == null ? null : cell.getValue().productNameProperty());
+        colQty.setCellValueFactory(cell -> cell.getValue() == null ? null : cell.getValue().quantityProperty());
+        colSubtotal.setCellValueFactory(cell -> cell.getValue() == null ? null : cell.getValue().subtotalProperty());
+
+        // Rows are paged in from the log on demand, so the list cannot be re-sorted
+        colProduct.setSortable(false);
+        colQty.setSortable(false);
+        colSubtotal.setSortable(false);
+
+        // Bind the time bucket columns
+        colPeriod.setCellValueFactory(cell -> new SimpleStringProperty(formatPeriod(cell.getValue())));
+        colPeriodUnits.setCellValueFactory(cell -> new ReadOnlyObjectWrapper<>(cell.getValue().getUnits()));
+        colPeriodRevenue.setCellValueFactory(cell -> new ReadOnlyObjectWrapper<>(cell.getValue().getRevenue()));
+
+        cmbGranularity.getItems().addAll(HOURLY_TODAY, DAILY_30_DAYS);
+        cmbGranularity.setValue(HOURLY_TODAY);
+        cmbGranularity.setOnAction(e -> loadTimeBuckets());
+
+        // Bind the insights columns
+        colTopProduct.setCellValueFactory(cell -> new ReadOnlyObjectWrapper<>(cell.getValue().getProductName()));
+        colTopUnits.setCellValueFactory(cell -> new ReadOnlyObjectWrapper<>(cell.getValue().getUnits()));
+        colTopRevenue.setCellValueFactory(cell -> new ReadOnlyObjectWrapper<>(cell.getValue().getRevenue()));
+        colCategory.setCellValueFactory(cell -> new SimpleStringProperty(cell.getValue().getKey()));
+        colCategoryRevenue.setCellValueFactory(cell -> new SimpleObjectProperty<>(cell.getValue().getValue()));
+
+        dpFrom.setValue(LocalDate.now().minusDays(29));
+        dpTo.setValue(LocalDate.now());
 
         // Load existing sales into the table
         loadSalesData();
+        loadTimeBuckets();
     }
 
     /**
-     * Loads sales data from the SalesFileManager and updates both the
+     * Loads sales data from the sales repository and updates both the
      * TableView and the total sales label.
+     *
+     * The table is backed by a {@link PagedSalesList}, which only reads the
+     * rows that are on screen (plus a small prefetch window) on a background
+     * thread, and the total comes from the materialized sales totals, so the
+     * window opens in about the same time whatever the size of the log.
      */
     private void loadSalesData() {
-        // Retrieve all sale records from the CSV file
-        List<SaleRecord> records = salesFileManager.loadSaleRecords();
-
-        // Display them in the table
-        salesTable.setItems(FXCollections.observableArrayList(records));
+        // Display the sales log one page at a time
+        salesTable.setItems(new PagedSalesList(sales));
 
-        // Calculate and display the total sales revenue
+        // Display the total sales revenue from the materialized totals
         if (lblTotal != null) {
-            double total = records.stream()
-                    .mapToDouble(SaleRecord::getSubtotal)
-                    .sum();
-            lblTotal.setText(String.format("£%.2f", total));
+            lblTotal.setText(Money.format(sales.loadTotalSalesPennies()));
+        }
+
+        // Today's revenue comes from the hourly and daily rollups
+        if (lblToday != null) {
+            LocalDateTime midnight = LocalDate.now().atStartOfDay();
+            long today = sales.loadSalesBetween(midnight, midnight.plusDays(1)).getRevenuePennies();
+            lblToday.setText(Money.format(today));
         }
     }
-}
 
+    /**
+     * Fills the "By Time" table from the rollup buckets for the chosen granularity.
+     */
+    private void loadTimeBuckets() {
+        SalesRollups rollups = sales.loadRollups();
+        LocalDate today = LocalDate.now();
+
+        List<SalesRollups.TimeBucket> buckets = HOURLY_TODAY.equals(cmbGranularity.getValue())
+                ? rollups.hourlyBuckets(today.atStartOfDay(), today.plusDays(1).atStartOfDay())
+                : rollups.dailyBuckets(today.minusDays(29), today.plusDays(1));
+
+        timeTable.setItems(FXCollections.observableArrayList(buckets));
+    }
+
+    /**
+     * Analyses the sales between the chosen dates (both inclusive) and fills
+     * the top products and category tables.
+     *
+     * The scan runs on a background Task, which splits the log across the
+     * common ForkJoinPool, so the window stays responsive on a large log.
+     */
+    @FXML
+    private void handleAnalyse() {
+        LocalDate from = dpFrom.getValue();
+        LocalDate to = dpTo.getValue();
+        if (from != null && to != null && to.isBefore(from)) {
+            lblInsightStatus.setText("'To' is before 'From'");
+            return;
+        }
+
+        LocalDateTime start = from != null ? from.atStartOfDay() : null;
+        LocalDateTime end = to != null ? to.plusDays(1).atStartOfDay() : null;
+
+        Task<SalesAnalytics.Result> task = new Task<>() {
+            @Override
+            protected SalesAnalytics.Result call() {
+                return sales.analyseSales(start, end);
+            }
+        };
+
+        task.setOnSucceeded(e -> {
+            btnAnalyse.setDisable(false);
+            SalesAnalytics.Result result = task.getValue();
+            if (result == null) {
+                lblInsightStatus.setText("Sales log unavailable");
+                return;
+            }
+            topTable.setItems(FXCollections.observableArrayList(result.topProducts(TOP_PRODUCTS, true)));
+            List<Map.Entry<String, Double>> categories = new ArrayList<>(result.revenueByCategory().entrySet());
+            categories.sort((a, b) -> Double.compare(b.getValue(), a.getValue()));
+            categoryTable.setItems(FXCollections.observableArrayList(categories));
+            lblInsightStatus.setText(result.getRowsMatched() + " sales, "
+                    + Money.format(result.getTotalRevenuePennies()));
+        });
+
+        task.setOnFailed(e -> {
+            btnAnalyse.setDisable(false);
+            lblInsightStatus.setText("Analysis failed");
+            System.err.println("Error analysing sales: " + task.getException().getMessage());
+        });
+
+        btnAnalyse.setDisable(true);
+        lblInsightStatus.setText("Analysing…");
+
+        Thread thread = new Thread(task, "sales-analysis");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    // Labels a bucket by its start hour or day
+    private String formatPeriod(SalesRollups.TimeBucket bucket) {
+        if (bucket == null) {
+            return "";
+        }
+        return HOURLY_TODAY.equals(cmbGranularity.getValue())
+                ? HOUR_FORMAT.format(bucket.getStart())
+                : DAY_FORMAT.format(bucket.getStart());
+    }
+}
@@ -7,6 +7,7 @@ import javafx.scene.Scene;
 import javafx.stage.Stage;
 import org.minimarket.client.market.MarketController;
 import org.minimarket.client.market.BuyerController;
+import org.minimarket.storageAccess.ProductFileManager;
 
 /**
  * The entry point of the Mini Market application.
@@ -29,6 +30,15 @@ public class Main extends Application {
         loadLoginPage();        // Display the login page first
     }
 
+    /**
+     * JavaFX lifecycle method called when the application exits.
+     * Writes any product changes still waiting in the background.
+     */
+    @Override
+    public void stop() {
+        ProductFileManager.flush();
+    }
+
     /**
      * Loads the Login page.
      * This is the default starting page for users.
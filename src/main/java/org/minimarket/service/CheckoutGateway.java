@@ -0,0 +1,59 @@
+package org.minimarket.service;
+
+import org.minimarket.catalogue.SaleRecord;
+
+import java.util.List;
+
+/**
+ * CheckoutGateway is what a till uses to take stock and record sales.
+ *
+ * There are two implementations:
+ *  - {@link LocalCheckoutGateway} works on the catalogue and sales log in
+ *    this process, which is how a single till has always worked.
+ *  - {@link RemoteCheckoutGateway} sends each request to a shared
+ *    {@link CheckoutServer}, so several tills can sell from one catalogue.
+ *
+ * {@link #getDefault()} picks the remote gateway when the system property
+ * {@code minimarket.checkout.server} is set (as {@code host:port}) and the
+ * local one otherwise.
+ */
+public interface CheckoutGateway {
+
+    /** System property naming the checkout server, e.g. {@code localhost:5150}. */
+    String SERVER_PROPERTY = "minimarket.checkout.server";
+
+    /**
+     * Reserves stock for a cart line.
+     *
+     * @return OK with the stock left, or why it failed
+     */
+    CheckoutReply addToCart(String productName, int quantity);
+
+    /**
+     * Returns the stock of a cart line that was removed.
+     *
+     * @return OK with the stock left, or why it failed
+     */
+    CheckoutReply removeFromCart(String productName, int quantity);
+
+    /**
+     * Records the sale of a cart whose stock is already reserved.
+     *
+     * @return OK with the cart total in pennies, or why it failed
+     */
+    CheckoutReply checkout(List<SaleRecord> records);
+
+    /**
+     * Total value of all sales recorded so far.
+     *
+     * @return OK with the total in pennies, or why it failed
+     */
+    CheckoutReply totalSales();
+
+    /**
+     * The gateway shared by every controller in this process.
+     */
+    static CheckoutGateway getDefault() {
+        return DefaultGateway.get();
+    }
+}
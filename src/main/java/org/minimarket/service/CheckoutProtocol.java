@@ -0,0 +1,48 @@
+package org.minimarket.service;
+
+/**
+ * The line protocol spoken between {@link RemoteCheckoutGateway} and
+ * {@link CheckoutServer}.
+ *
+ * Each request and reply is one UTF-8 line of tab-separated fields:
+ *
+ *      ADD      name qty                 → OK stockLeft
+ *      REMOVE   name qty                 → OK stockLeft
+ *      CHECKOUT name qty ...             → OK cartTotal   (one pair per cart line)
+ *      TOTAL                             → OK totalSales
+ *      STATS                             → OK requests checkouts busy requestsPerSecond
+ *
+ * Amounts are whole pennies. The server prices cart lines itself. A failed request is answered with the name of a {@link CheckoutReply.Status}
+ * instead of OK.
+ */
+final class CheckoutProtocol {
+
+    static final String ADD = "ADD";
+    static final String REMOVE = "REMOVE";
+    static final String CHECKOUT = "CHECKOUT";
+    static final String TOTAL = "TOTAL";
+    static final String STATS = "STATS";
+
+    static final String OK = "OK";
+    static final String SEPARATOR = "\t";
+
+    private CheckoutProtocol() {
+    }
+
+    /** Joins fields into one line, replacing separators and line breaks inside them. */
+    static String line(Object... fields) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < fields.length; i++) {
+            if (i > 0) {
+                sb.append(SEPARATOR);
+            }
+            sb.append(String.valueOf(fields[i]).replace('\t', ' ').replace('\n', ' ').replace('\r', ' '));
+        }
+        return sb.toString();
+    }
+
+    /** Splits a line back into its fields. */
+    static String[] fields(String line) {
+        return line.split(SEPARATOR, -1);
+    }
+}
@@ -0,0 +1,44 @@
+package org.minimarket.service;
+
+/**
+ * The answer to one checkout request.
+ *
+ * The meaning of the value depends on the request: the stock left after an
+ * add or remove, the cart total in pennies after a checkout, or the total
+ * sales in pennies for a report. It is only meaningful when the status is {@link Status#OK}.
+ */
+public class CheckoutReply {
+
+    public enum Status {
+        /** The request was carried out. */
+        OK,
+        /** No product has that name. */
+        NOT_FOUND,
+        /** There is not enough stock for the request. */
+        OUT_OF_STOCK,
+        /** The service is at capacity; try again shortly. */
+        BUSY,
+        /** The service could not be reached or failed. */
+        UNAVAILABLE
+    }
+
+    private final Status status;
+    private final long value;
+
+    public CheckoutReply(Status status, long value) {
+        this.status = status;
+        this.value = value;
+    }
+
+    public static CheckoutReply ok(long value) {
+        return new CheckoutReply(Status.OK, value);
+    }
+
+    public static CheckoutReply of(Status status) {
+        return new CheckoutReply(status, 0);
+    }
+
+    public Status getStatus() { return status; }
+    public long getValue() { return value; }
+    public boolean isOk() { return status == Status.OK; }
+}
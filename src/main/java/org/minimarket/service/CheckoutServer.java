@@ -0,0 +1,360 @@
+package org.minimarket.service;
+
+import org.minimarket.catalogue.Product;
+import org.minimarket.catalogue.SaleRecord;
+import org.minimarket.storageAccess.ProductCatalogue;
+import org.minimarket.storageAccess.ProductFileManager;
+import org.minimarket.storageAccess.Repositories;
+import org.minimarket.utility.Money;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * CheckoutServer is a headless service that lets several tills share one
+ * catalogue and one sales log.
+ *
+ * It holds the catalogue in memory and listens on a localhost socket for
+ * requests in the {@link CheckoutProtocol} line format. Every connection is a
+ * session handled on its own thread: a virtual thread when the JVM supports
+ * them (Java 21+), otherwise a pooled platform thread. The actual work is done
+ * by a {@link LocalCheckoutGateway}, so stock is reserved with the same
+ * lock-free reservation a single till uses.
+ *
+ * Backpressure:
+ *  - at most {@code maxSessions} tills may be connected; further connections
+ *    are answered BUSY and closed.
+ *  - at most {@code maxInFlight} requests are processed at once; a request
+ *    that cannot start within a short wait is answered BUSY.
+ *
+ * Each session remembers how many units of each product it has reserved
+ * and not yet sold. REMOVE puts back at most that many, and CHECKOUT only
+ * sells what was reserved, so a till cannot create stock or sell stock it
+ * never took. Whatever a session still holds when its till disconnects is
+ * put back. Cart lines are priced here from the catalogue, not by the
+ * till, so a till cannot choose what it charges.
+ *
+ * Request, checkout and rejection counts are kept in LongAdders and can be
+ * read with {@link #getRequestCount()} etc. or the STATS request.
+ *
+ * Run it with {@code java org.minimarket.service.CheckoutServer [port]} and
+ * start the tills with {@code -Dminimarket.checkout.server=localhost:port}.
+ */
+public class CheckoutServer implements AutoCloseable {
+
+    /** Port used when none is given. */
+    public static final int DEFAULT_PORT = 5150;
+
+    /** Default limit on connected tills. */
+    private static final int DEFAULT_MAX_SESSIONS = 64;
+
+    /** Default limit on requests processed at the same time. */
+    private static final int DEFAULT_MAX_IN_FLIGHT = 16;
+
+    /** How long a request may wait for a free slot before it is refused. */
+    private static final long IN_FLIGHT_WAIT_MILLIS = 50;
+
+    private final CheckoutGateway gateway;
+    private final ProductCatalogue catalogue;
+    private final ServerSocket serverSocket;
+    private final ExecutorService sessions;
+    private final Semaphore sessionSlots;
+    private final Semaphore inFlightSlots;
+    private final long startedAt = System.nanoTime();
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder checkouts = new LongAdder();
+    private final LongAdder busyRejections = new LongAdder();
+
+    private volatile boolean running = true;
+
+    /** What one connected till has reserved and not yet sold or put back. */
+    private static class Session {
+        /** Normalized product name → units held. */
+        final Map<String, Integer> held = new HashMap<>();
+
+        int held(String productName) {
+            return held.getOrDefault(ProductCatalogue.normalize(productName), 0);
+        }
+
+        void add(String productName, int quantity) {
+            held.merge(ProductCatalogue.normalize(productName), quantity, Integer::sum);
+        }
+    }
+
+    /**
+     * Starts a server on the loopback interface.
+     *
+     * @param port        the port to listen on (0 picks a free one)
+     * @param gateway     does the work for each request
+     * @param catalogue   prices the cart lines of a checkout
+     * @param maxSessions most tills connected at once
+     * @param maxInFlight most requests processed at once
+     */
+    public CheckoutServer(int port, CheckoutGateway gateway, ProductCatalogue catalogue,
+                          int maxSessions, int maxInFlight) throws IOException {
+        this.gateway = gateway;
+        this.catalogue = catalogue;
+        this.serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        this.sessions = newSessionExecutor();
+        this.sessionSlots = new Semaphore(maxSessions);
+        this.inFlightSlots = new Semaphore(maxInFlight);
+
+        Thread acceptor = new Thread(this::acceptLoop, "checkout-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    public CheckoutServer(int port) throws IOException {
+        this(port, new LocalCheckoutGateway(), ProductFileManager.getCatalogue(),
+                DEFAULT_MAX_SESSIONS, DEFAULT_MAX_IN_FLIGHT);
+    }
+
+    /** The port the server is listening on. */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    public long getRequestCount() { return requests.sum(); }
+    public long getCheckoutCount() { return checkouts.sum(); }
+    public long getBusyRejections() { return busyRejections.sum(); }
+
+    /** Requests handled per second since the server started. */
+    public double getRequestsPerSecond() {
+        double seconds = (System.nanoTime() - startedAt) / 1e9;
+        return seconds > 0 ? requests.sum() / seconds : 0.0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        serverSocket.close();
+        sessions.shutdownNow();
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (IOException e) {
+                if (running) {
+                    System.err.println("Checkout server stopped accepting: " + e.getMessage());
+                }
+                return;
+            }
+
+            if (!sessionSlots.tryAcquire()) {
+                busyRejections.increment();
+                refuse(socket);
+                continue;
+            }
+            sessions.execute(() -> {
+                try {
+                    serve(socket);
+                } finally {
+                    sessionSlots.release();
+                }
+            });
+        }
+    }
+
+    // Reads requests from one till until it disconnects
+    private void serve(Socket socket) {
+        Session session = new Session();
+        try (socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+             BufferedWriter out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                out.write(handle(line, session));
+                out.newLine();
+                out.flush();
+            }
+        } catch (SocketException e) {
+            // Till went away
+        } catch (IOException e) {
+            System.err.println("Checkout session failed: " + e.getMessage());
+        } finally {
+            releaseHeld(session);
+        }
+    }
+
+    // Puts back what a till reserved but never sold, so a dropped till does not keep stock off sale
+    private void releaseHeld(Session session) {
+        session.held.forEach((name, quantity) -> {
+            if (quantity > 0) {
+                try {
+                    gateway.removeFromCart(name, quantity);
+                } catch (RuntimeException e) {
+                    System.err.println("Could not put back " + quantity + " " + name + ": " + e.getMessage());
+                }
+            }
+        });
+        session.held.clear();
+    }
+
+    // Handles one request line and returns the reply line
+    private String handle(String line, Session session) {
+        requests.increment();
+        try {
+            if (!inFlightSlots.tryAcquire(IN_FLIGHT_WAIT_MILLIS, TimeUnit.MILLISECONDS)) {
+                busyRejections.increment();
+                return CheckoutReply.Status.BUSY.name();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return CheckoutReply.Status.UNAVAILABLE.name();
+        }
+
+        try {
+            String[] fields = CheckoutProtocol.fields(line);
+            if (CheckoutProtocol.STATS.equals(fields[0])) {
+                return CheckoutProtocol.line(CheckoutProtocol.OK, getRequestCount(), getCheckoutCount(),
+                        getBusyRejections(), getRequestsPerSecond());
+            }
+            return encode(dispatch(fields, session));
+        } catch (RuntimeException e) {
+            System.err.println("Bad checkout request '" + line + "': " + e.getMessage());
+            return CheckoutReply.Status.UNAVAILABLE.name();
+        } finally {
+            inFlightSlots.release();
+        }
+    }
+
+    private CheckoutReply dispatch(String[] f, Session session) {
+        switch (f[0]) {
+            case CheckoutProtocol.ADD: {
+                int quantity = positive(f[2]);
+                CheckoutReply reply = gateway.addToCart(f[1], quantity);
+                if (reply.isOk()) {
+                    session.add(f[1], quantity);
+                }
+                return reply;
+            }
+            case CheckoutProtocol.REMOVE: {
+                // Only what this till reserved can go back on the shelf
+                int quantity = Math.min(positive(f[2]), session.held(f[1]));
+                if (quantity == 0) {
+                    return CheckoutReply.of(CheckoutReply.Status.NOT_FOUND);
+                }
+                CheckoutReply reply = gateway.removeFromCart(f[1], quantity);
+                if (reply.isOk()) {
+                    session.add(f[1], -quantity);
+                }
+                return reply;
+            }
+            case CheckoutProtocol.CHECKOUT: {
+                List<SaleRecord> records = new ArrayList<>();
+                Session sold = new Session();
+                long now = System.currentTimeMillis();
+                for (int i = 1; i + 1 < f.length; i += 2) {
+                    Product product = catalogue.findByName(f[i]);
+                    if (product == null) {
+                        return CheckoutReply.of(CheckoutReply.Status.NOT_FOUND);
+                    }
+                    int quantity = positive(f[i + 1]);
+                    sold.add(f[i], quantity);
+                    if (sold.held(f[i]) > session.held(f[i])) {
+                        return CheckoutReply.of(CheckoutReply.Status.OUT_OF_STOCK);
+                    }
+                    records.add(SaleRecord.ofPennies(product.getName(), quantity,
+                            Money.times(product.getPricePennies(), quantity), now));
+                }
+                checkouts.increment();
+                CheckoutReply reply = gateway.checkout(records);
+                if (reply.isOk()) {
+                    sold.held.forEach((name, quantity) -> session.held.merge(name, -quantity, Integer::sum));
+                }
+                return reply;
+            }
+            case CheckoutProtocol.TOTAL:
+                return gateway.totalSales();
+            default:
+                throw new IllegalArgumentException("Unknown request " + f[0]);
+        }
+    }
+
+    // Parses a quantity, refusing zero and negative ones as malformed
+    private static int positive(String field) {
+        int quantity = Integer.parseInt(field);
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("Quantity must be positive: " + quantity);
+        }
+        return quantity;
+    }
+
+    private String encode(CheckoutReply reply) {
+        return reply.isOk()
+                ? CheckoutProtocol.line(CheckoutProtocol.OK, reply.getValue())
+                : reply.getStatus().name();
+    }
+
+    // Tells a till the server is full and hangs up
+    private static void refuse(Socket socket) {
+        try (socket) {
+            socket.getOutputStream().write((CheckoutReply.Status.BUSY.name() + "\n").getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            // Nothing more to do for a refused connection
+        }
+    }
+
+    /**
+     * One thread per session: virtual threads when the runtime has them,
+     * otherwise a cached pool of daemon threads (bounded by the session limit).
+     */
+    private static ExecutorService newSessionExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(r -> {
+                Thread t = new Thread(r, "checkout-session");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+
+    /**
+     * Loads the catalogue and serves tills until the process is stopped.
+     *
+     * @param args optional port number
+     */
+    public static void main(String[] args) throws Exception {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+
+        ProductFileManager.loadProducts();
+        CheckoutServer server = new CheckoutServer(port);
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            Repositories.sales().flush();
+            ProductFileManager.saveProducts();
+            ProductFileManager.flush();
+            System.out.printf("Served %d requests (%d checkouts, %d busy), %.1f requests/s%n",
+                    server.getRequestCount(), server.getCheckoutCount(),
+                    server.getBusyRejections(), server.getRequestsPerSecond());
+        }));
+
+        System.out.println("Checkout server listening on localhost:" + server.getPort());
+        Thread.currentThread().join();
+    }
+}
@@ -0,0 +1,26 @@
+package org.minimarket.service;
+
+import org.minimarket.storageAccess.ProductFileManager;
+
+/**
+ * Creates the process-wide gateway on first use.
+ */
+class DefaultGateway {
+
+    private static CheckoutGateway gateway;
+
+    static synchronized CheckoutGateway get() {
+        if (gateway == null) {
+            String server = System.getProperty(CheckoutGateway.SERVER_PROPERTY);
+            if (server == null || server.isBlank()) {
+                gateway = new LocalCheckoutGateway();
+            } else {
+                int colon = server.lastIndexOf(':');
+                String host = colon > 0 ? server.substring(0, colon) : "localhost";
+                int port = colon >= 0 ? Integer.parseInt(server.substring(colon + 1)) : Integer.parseInt(server);
+                gateway = new RemoteCheckoutGateway(host, port, ProductFileManager.getCatalogue());
+            }
+        }
+        return gateway;
+    }
+}
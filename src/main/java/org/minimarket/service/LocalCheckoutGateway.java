@@ -0,0 +1,75 @@
+package org.minimarket.service;
+
+import org.minimarket.catalogue.Product;
+import org.minimarket.catalogue.SaleRecord;
+import org.minimarket.storageAccess.ProductCatalogue;
+import org.minimarket.storageAccess.ProductFileManager;
+import org.minimarket.storageAccess.Repositories;
+import org.minimarket.storageAccess.SalesRepository;
+
+import java.util.List;
+
+/**
+ * LocalCheckoutGateway takes stock from the shared in-memory catalogue and
+ * records sales in this process's sales repository.
+ *
+ * Stock is reserved with the catalogue's compare-and-set reservation and
+ * recorded by the product repository, and sales go to the sales repository
+ * (the batched sales writer by default), so it is safe to call from several
+ * threads. The checkout server uses it to serve every
+ * connected till.
+ */
+public class LocalCheckoutGateway implements CheckoutGateway {
+
+    private final SalesRepository sales = Repositories.sales();
+
+    @Override
+    public CheckoutReply addToCart(String productName, int quantity) {
+        if (quantity <= 0) {
+            return CheckoutReply.of(CheckoutReply.Status.OUT_OF_STOCK);
+        }
+        ProductCatalogue catalogue = ProductFileManager.getCatalogue();
+        Product product = catalogue.findByName(productName);
+        if (product == null) {
+            return CheckoutReply.of(CheckoutReply.Status.NOT_FOUND);
+        }
+        if (!ProductFileManager.reserveStock(product, quantity)) {
+            return CheckoutReply.of(CheckoutReply.Status.OUT_OF_STOCK);
+        }
+        return CheckoutReply.ok(product.getQuantity());
+    }
+
+    @Override
+    public CheckoutReply removeFromCart(String productName, int quantity) {
+        // Nothing to put back; a negative release would take stock without a reservation
+        if (quantity <= 0) {
+            return CheckoutReply.of(CheckoutReply.Status.NOT_FOUND);
+        }
+        ProductCatalogue catalogue = ProductFileManager.getCatalogue();
+        Product product = catalogue.findByName(productName);
+        if (product == null) {
+            return CheckoutReply.of(CheckoutReply.Status.NOT_FOUND);
+        }
+        ProductFileManager.releaseStock(product, quantity);
+        return CheckoutReply.ok(product.getQuantity());
+    }
+
+    @Override
+    public CheckoutReply checkout(List<SaleRecord> records) {
+        long total = 0;
+        for (SaleRecord record : records) {
+            total += record.getSubtotalPennies();
+        }
+        if (!sales.saveSaleRecords(records)) {
+            return CheckoutReply.of(CheckoutReply.Status.UNAVAILABLE);
+        }
+        // The stock taken for this cart is stored before the checkout is confirmed
+        ProductFileManager.flush();
+        return CheckoutReply.ok(total);
+    }
+
+    @Override
+    public CheckoutReply totalSales() {
+        return CheckoutReply.ok(sales.loadTotalSalesPennies());
+    }
+}
@@ -0,0 +1,150 @@
+package org.minimarket.service;
+
+import org.minimarket.catalogue.Product;
+import org.minimarket.catalogue.SaleRecord;
+import org.minimarket.storageAccess.ProductCatalogue;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * RemoteCheckoutGateway makes this till a thin client of a {@link CheckoutServer}.
+ *
+ * Requests are sent one at a time over a single connection, opened on first
+ * use and re-opened when it has dropped. A request is only sent again if
+ * the first attempt failed before any of it was written, or if it is a
+ * read-only TOTAL: ADD, REMOVE and CHECKOUT change stock or sales, and once
+ * sent the server may have carried them out even though the reply was lost. The server owns the real stock; when a
+ * reply reports the stock left for a product, the local catalogue's copy is
+ * updated to match so the till's product views stay correct.
+ */
+public class RemoteCheckoutGateway implements CheckoutGateway {
+
+    private final String host;
+    private final int port;
+    private final ProductCatalogue mirror;
+
+    private Socket socket;
+    private BufferedReader in;
+    private BufferedWriter out;
+
+    /**
+     * @param host   the checkout server's host
+     * @param port   the checkout server's port
+     * @param mirror local catalogue whose stock levels follow the server's, or null
+     */
+    public RemoteCheckoutGateway(String host, int port, ProductCatalogue mirror) {
+        this.host = host;
+        this.port = port;
+        this.mirror = mirror;
+    }
+
+    @Override
+    public CheckoutReply addToCart(String productName, int quantity) {
+        return mirrorStock(productName, request(CheckoutProtocol.ADD, productName, quantity));
+    }
+
+    @Override
+    public CheckoutReply removeFromCart(String productName, int quantity) {
+        return mirrorStock(productName, request(CheckoutProtocol.REMOVE, productName, quantity));
+    }
+
+    @Override
+    public CheckoutReply checkout(List<SaleRecord> records) {
+        // Only names and quantities are sent; the server sets the prices
+        List<Object> fields = new ArrayList<>(1 + records.size() * 2);
+        fields.add(CheckoutProtocol.CHECKOUT);
+        for (SaleRecord record : records) {
+            fields.add(record.getProductName());
+            fields.add(record.getQuantity());
+        }
+        return request(fields.toArray());
+    }
+
+    @Override
+    public CheckoutReply totalSales() {
+        return request(CheckoutProtocol.TOTAL);
+    }
+
+    /**
+     * Closes the connection; the next request opens a new one.
+     */
+    public synchronized void close() {
+        if (socket != null) {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Already closed
+            }
+            socket = null;
+        }
+    }
+
+    // Sends one request and parses the reply; retries once only where that cannot repeat a change
+    private synchronized CheckoutReply request(Object... fields) {
+        String line = CheckoutProtocol.line(fields);
+        boolean readOnly = CheckoutProtocol.TOTAL.equals(fields[0]);
+        for (int attempt = 0; attempt < 2; attempt++) {
+            boolean sent = false;
+            try {
+                if (socket == null) {
+                    connect();
+                }
+                sent = true;
+                out.write(line);
+                out.newLine();
+                out.flush();
+
+                String reply = in.readLine();
+                if (reply == null) {
+                    throw new IOException("Checkout server closed the connection");
+                }
+                return parse(reply);
+            } catch (IOException e) {
+                close();
+                if (attempt == 1 || (sent && !readOnly)) {
+                    System.err.println("Checkout server unavailable: " + e.getMessage());
+                    break;
+                }
+            }
+        }
+        return CheckoutReply.of(CheckoutReply.Status.UNAVAILABLE);
+    }
+
+    private void connect() throws IOException {
+        socket = new Socket(host, port);
+        socket.setTcpNoDelay(true);
+        in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+        out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+    }
+
+    private CheckoutReply parse(String reply) throws IOException {
+        String[] fields = CheckoutProtocol.fields(reply);
+        if (CheckoutProtocol.OK.equals(fields[0]) && fields.length > 1) {
+            return CheckoutReply.ok(Long.parseLong(fields[1]));
+        }
+        try {
+            return CheckoutReply.of(CheckoutReply.Status.valueOf(fields[0]));
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Unexpected reply: " + reply);
+        }
+    }
+
+    // Copies the server's stock level into the local catalogue
+    private CheckoutReply mirrorStock(String productName, CheckoutReply reply) {
+        if (reply.isOk() && mirror != null) {
+            Product product = mirror.findByName(productName);
+            if (product != null) {
+                product.setQuantity((int) reply.getValue());
+            }
+        }
+        return reply;
+    }
+}
@@ -0,0 +1,288 @@
+package org.minimarket.storageAccess;
+
+import org.minimarket.catalogue.SaleRecord;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * BatchedSalesWriter appends sale records to the sales log in group commits.
+ *
+ * Checkouts hand their records to {@link #submit(List)} and return straight
+ * away. A single background thread owns one long-lived FileChannel; it collects
+ * whatever submissions are waiting (up to {@code maxBatchSize} records, or
+ * until {@code maxDelayMillis} has passed since the first one arrived) and
+ * writes them with one write call. Each submission's future completes once the
+ * batch containing it has been written (and forced to disk, if requested).
+ * Once the writer has stopped, after {@link #close()} or because its thread
+ * died, submissions fail straight away instead of waiting for ever.
+ *
+ * The on-disk format is decided by the {@link RecordEncoder} it is given.
+ */
+public class BatchedSalesWriter implements AutoCloseable {
+
+    /** Whether each batch is forced to the storage device before it counts as committed. */
+    public enum FsyncPolicy {
+        /** Leave flushing to the operating system (survives a process crash, not a power cut). */
+        NEVER,
+        /** Call FileChannel.force after every batch. */
+        EVERY_BATCH
+    }
+
+    /** Turns a batch of records into the bytes appended to the log. */
+    public interface RecordEncoder {
+        ByteBuffer encode(List<SaleRecord> records);
+    }
+
+    /** Receives every batch after it has been committed to the log. */
+    public interface CommitListener {
+        /**
+         * @param batch   the records that were just written
+         * @param logSize the size of the log file once the batch was written
+         */
+        void committed(List<SaleRecord> batch, long logSize);
+    }
+
+    // One queued submission; an empty record list acts as a flush marker
+    private static class Submission {
+        final List<SaleRecord> records;
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        Submission(List<SaleRecord> records) {
+            this.records = records;
+        }
+    }
+
+    private static final Submission STOP = new Submission(Collections.emptyList());
+
+    private final FileChannel channel;
+    private final RecordEncoder encoder;
+    private final int maxBatchSize;
+    private final long maxDelayNanos;
+    private final FsyncPolicy fsyncPolicy;
+    private final BlockingQueue<Submission> queue = new LinkedBlockingQueue<>();
+    private final Thread writerThread;
+
+    /** Set by the writer thread as it exits; nothing queued afterwards is written. */
+    private volatile boolean stopped;
+
+    private volatile CommitListener commitListener;
+
+    private final AtomicLong batchesWritten = new AtomicLong();
+    private final AtomicLong recordsWritten = new AtomicLong();
+
+    /**
+     * Opens the log for appending and starts the writer thread.
+     *
+     * @param file           the sales log file
+     * @param encoder        converts each batch into bytes
+     * @param maxBatchSize   maximum number of records written in one group commit
+     * @param maxDelayMillis how long the writer waits for more records before writing
+     * @param fsyncPolicy    whether batches are forced to disk
+     * @throws IOException if the log cannot be opened
+     */
+    public BatchedSalesWriter(Path file, RecordEncoder encoder, int maxBatchSize, long maxDelayMillis,
+                              FsyncPolicy fsyncPolicy) throws IOException {
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        this.channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        this.encoder = encoder;
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxDelayMillis);
+        this.fsyncPolicy = fsyncPolicy;
+
+        writerThread = new Thread(this::run, "sales-log-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * Queues records to be appended in the next group commit.
+     *
+     * @param records the records from one checkout
+     * @return a future that completes once the records are in the log
+     */
+    public CompletableFuture<Void> submit(List<SaleRecord> records) {
+        return enqueue(new Submission(new ArrayList<>(records)));
+    }
+
+    /**
+     * Blocks until everything submitted before this call has been written.
+     */
+    public void flush() {
+        try {
+            enqueue(new Submission(Collections.emptyList())).join();
+        } catch (CompletionException e) {
+            // The writer has stopped, so there is nothing left to wait for
+        }
+    }
+
+    /**
+     * Registers a listener that is told about each committed batch.
+     * It runs on the writer thread, so it should be quick.
+     */
+    public void setCommitListener(CommitListener listener) {
+        this.commitListener = listener;
+    }
+
+    public long getBatchesWritten() {
+        return batchesWritten.get();
+    }
+
+    public long getRecordsWritten() {
+        return recordsWritten.get();
+    }
+
+    /**
+     * Writes anything still queued, stops the writer thread and closes the log.
+     */
+    @Override
+    public void close() throws IOException {
+        queue.add(STOP);
+        try {
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+    }
+
+    // Queues a submission, failing it if the writer has stopped. The check comes
+    // after the add: the writer sets stopped before its last drain, so either it
+    // drains this submission or this thread sees stopped and drains it
+    private CompletableFuture<Void> enqueue(Submission submission) {
+        queue.add(submission);
+        if (stopped) {
+            failQueued();
+        }
+        return submission.done;
+    }
+
+    // Fails every submission still queued behind the writer's exit
+    private void failQueued() {
+        IOException error = new IOException("Sales log writer has stopped");
+        Submission submission;
+        while ((submission = queue.poll()) != null) {
+            if (submission != STOP) {
+                submission.done.completeExceptionally(error);
+            }
+        }
+    }
+
+    // Writer loop until STOP or interruption; fails anything left behind
+    private void run() {
+        try {
+            writeBatches();
+        } finally {
+            stopped = true;
+            failQueued();
+        }
+    }
+
+    // Gathers one batch, writes it, completes its futures, and repeats
+    private void writeBatches() {
+        List<Submission> batch = new ArrayList<>();
+
+        while (true) {
+            batch.clear();
+            boolean stop = false;
+
+            try {
+                Submission first = queue.take();
+                if (first == STOP) {
+                    return;
+                }
+                batch.add(first);
+
+                int recordCount = first.records.size();
+                long deadline = System.nanoTime() + maxDelayNanos;
+                boolean flushRequested = first.records.isEmpty();
+
+                // Linger for more submissions until the batch is full, the
+                // deadline passes or someone asks for a flush
+                while (recordCount < maxBatchSize && !flushRequested) {
+                    long remaining = deadline - System.nanoTime();
+                    Submission next = remaining > 0
+                            ? queue.poll(remaining, TimeUnit.NANOSECONDS)
+                            : queue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    if (next == STOP) {
+                        stop = true;
+                        break;
+                    }
+                    batch.add(next);
+                    recordCount += next.records.size();
+                    flushRequested = next.records.isEmpty();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                stop = true;
+            }
+
+            writeBatch(batch);
+            if (stop) {
+                return;
+            }
+        }
+    }
+
+    // Encodes a batch and writes it with a single call
+    private void writeBatch(List<Submission> batch) {
+        List<SaleRecord> records = new ArrayList<>();
+        for (Submission submission : batch) {
+            records.addAll(submission.records);
+        }
+
+        long logSize = 0;
+        try {
+            if (!records.isEmpty()) {
+                ByteBuffer buffer = encoder.encode(records);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                if (fsyncPolicy == FsyncPolicy.EVERY_BATCH) {
+                    channel.force(false);
+                }
+                logSize = channel.size();
+                batchesWritten.incrementAndGet();
+                recordsWritten.addAndGet(records.size());
+            }
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Error writing sales log: " + e.getMessage());
+            for (Submission submission : batch) {
+                submission.done.completeExceptionally(e);
+            }
+            return;
+        }
+
+        CommitListener listener = commitListener;
+        if (listener != null && !records.isEmpty()) {
+            try {
+                listener.committed(records, logSize);
+            } catch (RuntimeException e) {
+                System.err.println("Sales commit listener failed: " + e.getMessage());
+            }
+        }
+
+        for (Submission submission : batch) {
+            submission.done.complete(null);
+        }
+    }
+}
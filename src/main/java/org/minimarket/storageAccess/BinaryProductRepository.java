@@ -0,0 +1,88 @@
+package org.minimarket.storageAccess;
+
+import org.minimarket.catalogue.Product;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * BinaryProductRepository keeps the catalogue in a {@link BinaryProductStore}.
+ *
+ * Each stock or price change rewrites only that product's record, and
+ * several processes can share the store.
+ */
+public class BinaryProductRepository implements ProductRepository {
+
+    private final BinaryProductStore store;
+
+    public BinaryProductRepository(BinaryProductStore store) {
+        this.store = store;
+    }
+
+    @Override
+    public List<Product> loadProducts() {
+        List<Product> loaded = new ArrayList<>();
+        try {
+            store.readAll((name, price, quantity, category, reorderPoint) -> {
+                Product product = new Product(name, 0, quantity, category, "/images/" + name + ".png");
+                product.setPricePennies(price);
+                product.setReorderPoint(reorderPoint);
+                loaded.add(product);
+            });
+        } catch (IOException e) {
+            System.err.println("Error loading products: " + e.getMessage());
+        }
+        return loaded;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return store.size() == 0;
+    }
+
+    @Override
+    public void saveProducts(List<Product> products) {
+        try {
+            store.putAll(products);
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Error saving products: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void saveProduct(String oldName, Product product) {
+        try {
+            if (oldName != null && !oldName.equals(product.getName())) {
+                store.remove(oldName);
+            }
+            store.put(product);
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Error saving product: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void removeProduct(Product product) {
+        try {
+            store.remove(product.getName());
+        } catch (IOException e) {
+            System.err.println("Error removing product: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Adds the delta to the stored quantity under the record's lock, so
+     * changes made by other processes are not overwritten.
+     */
+    @Override
+    public void recordStockChange(Product product, int delta) {
+        try {
+            if (store.addQuantity(product.getName(), delta) == null) {
+                store.put(product);
+            }
+        } catch (IOException | IllegalArgumentException | ArithmeticException e) {
+            System.err.println("Error saving stock change: " + e.getMessage());
+        }
+    }
+}
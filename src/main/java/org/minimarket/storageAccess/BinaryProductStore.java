@@ -0,0 +1,454 @@
+package org.minimarket.storageAccess;
+
+import org.minimarket.catalogue.Product;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * BinaryProductStore keeps products as fixed-width binary records, so one
+ * product can be changed without rewriting the others.
+ *
+ * File layout (big-endian):
+ *
+ *      header : magic "MMPS" (int), version (int), record size (int), reserved (int)
+ *      record : in use (int), price in pennies (long), quantity (int), reorder point (int),
+ *               name length (short), name (64 bytes UTF-8),
+ *               category length (short), category (40 bytes UTF-8)
+ *
+ * Slot i lives at {@code HEADER_SIZE + i * RECORD_SIZE}. An index from name
+ * to slot is built when the store is opened, and removed products leave a
+ * free slot that the next new product reuses. A stock or price change is a
+ * single positional write of one record.
+ *
+ * Several MiniMarket processes may share the file. Each record is changed
+ * under a file lock on its own byte range, so processes updating different
+ * products do not wait for each other, and a stock change re-reads the
+ * quantity under the lock so no process overwrites another's sale. For the
+ * same reason {@link #put} leaves an existing record's quantity as stored;
+ * stock only moves through {@link #addQuantity}. New
+ * records are placed under a lock on the header. Another process may have
+ * moved or removed a product since this one built its index, so the record's
+ * name is checked under the lock and the index rebuilt if it no longer
+ * matches.
+ *
+ * File locks belong to the whole JVM, so threads in the same process are
+ * kept apart by synchronizing on the store.
+ */
+public class BinaryProductStore implements AutoCloseable {
+
+    /** Receives the fields of each record while loading. */
+    public interface RecordVisitor {
+        void record(String name, long pricePennies, int quantity, String category, int reorderPoint);
+    }
+
+    private static final int MAGIC = 0x4D4D5053; // "MMPS"
+    private static final int VERSION = 1;
+
+    public static final int HEADER_SIZE = 16;
+    public static final int RECORD_SIZE = 128;
+
+    /** Longest name and category, in UTF-8 bytes. */
+    public static final int MAX_NAME_BYTES = 64;
+    public static final int MAX_CATEGORY_BYTES = 40;
+
+    private static final int IN_USE = 1;
+
+    // Field offsets within a record
+    private static final int PRICE_OFFSET = 4;
+    private static final int QUANTITY_OFFSET = 12;
+    private static final int REORDER_OFFSET = 16;
+    private static final int NAME_OFFSET = 20;
+    private static final int CATEGORY_OFFSET = NAME_OFFSET + 2 + MAX_NAME_BYTES;
+
+    /** Records read at a time while building the index. */
+    private static final int RECORDS_PER_READ = 512;
+
+    private final Path file;
+    private final FileChannel channel;
+
+    // Guarded by this
+    private final Map<String, Integer> slotsByName = new HashMap<>();
+    private final ArrayDeque<Integer> freeSlots = new ArrayDeque<>();
+    private final ByteBuffer encoded = ByteBuffer.allocate(RECORD_SIZE);
+    private final ByteBuffer current = ByteBuffer.allocate(RECORD_SIZE);
+
+    // The record lock taken by lockedSlotOf, released by releaseRecordLock
+    private FileLock heldLock;
+
+    /**
+     * Opens (or creates) a product store and indexes its records.
+     *
+     * @param file the store file
+     * @throws IOException if the file cannot be opened or its header is invalid
+     */
+    public BinaryProductStore(Path file) throws IOException {
+        this.file = file;
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            FileLock lock = lockHeader();
+            try {
+                if (channel.size() == 0) {
+                    ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                    header.putInt(MAGIC).putInt(VERSION).putInt(RECORD_SIZE).putInt(0).flip();
+                    writeFully(header, 0);
+                } else {
+                    ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                    channel.read(header, 0);
+                    header.flip();
+                    if (header.remaining() < HEADER_SIZE || header.getInt() != MAGIC
+                            || header.getInt() != VERSION || header.getInt() != RECORD_SIZE) {
+                        throw new IOException("Not a version " + VERSION + " product store: " + file);
+                    }
+
+                    // Drop a record that was only partly written when a process died
+                    long recordBytes = channel.size() - HEADER_SIZE;
+                    if (recordBytes % RECORD_SIZE != 0) {
+                        channel.truncate(HEADER_SIZE + recordBytes - recordBytes % RECORD_SIZE);
+                    }
+                }
+                rebuildIndex();
+            } finally {
+                lock.release();
+            }
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    /** Number of products in the store, as of this process's index. */
+    public synchronized int size() {
+        return slotsByName.size();
+    }
+
+    /**
+     * Reads every product in the file, including ones added by other
+     * processes since the store was opened.
+     */
+    public synchronized void readAll(RecordVisitor visitor) throws IOException {
+        rebuildIndexLocked();
+
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE * RECORDS_PER_READ);
+        long position = HEADER_SIZE;
+        long end = channel.size();
+        while (position < end) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), end - position));
+            readFully(buffer, position);
+            for (int offset = 0; offset + RECORD_SIZE <= buffer.limit(); offset += RECORD_SIZE) {
+                if (buffer.getInt(offset) == IN_USE) {
+                    visitor.record(readString(buffer, offset + NAME_OFFSET),
+                            buffer.getLong(offset + PRICE_OFFSET),
+                            buffer.getInt(offset + QUANTITY_OFFSET),
+                            readString(buffer, offset + CATEGORY_OFFSET),
+                            buffer.getInt(offset + REORDER_OFFSET));
+                }
+            }
+            position += buffer.limit();
+        }
+    }
+
+    /**
+     * Writes one product's record, in its existing slot or a new one. An
+     * existing record keeps the quantity it has in the file, which may
+     * include sales made by other processes; only a new record takes the
+     * product's quantity.
+     *
+     * @throws IllegalArgumentException if the name or category is too long for a record
+     */
+    public synchronized void put(Product product) throws IOException {
+        encode(product);
+
+        Integer slot = lockedSlotOf(product.getName());
+        if (slot != null) {
+            // lockedSlotOf leaves the record locked and read, so the stored quantity is current
+            try {
+                encoded.putInt(QUANTITY_OFFSET, current.getInt(QUANTITY_OFFSET));
+                writeRecord(encoded, slot);
+            } finally {
+                releaseRecordLock();
+            }
+            return;
+        }
+
+        FileLock lock = lockHeader();
+        try {
+            // lockedSlotOf rebuilt the index, but another process may have added it since
+            rebuildIndex();
+            placeUnderHeaderLock(product.getName());
+        } finally {
+            lock.release();
+        }
+    }
+
+    /**
+     * Makes the file hold exactly the given products. Records that did not
+     * change are still rewritten; use {@link #put} and {@link #addQuantity}
+     * for single changes.
+     */
+    public synchronized void putAll(Collection<Product> products) throws IOException {
+        FileLock lock = lockHeader();
+        try {
+            rebuildIndex();
+
+            Set<String> keep = new HashSet<>();
+            for (Product product : products) {
+                encode(product);
+                keep.add(product.getName());
+                placeUnderHeaderLock(product.getName());
+            }
+
+            for (String name : slotsByName.keySet().toArray(new String[0])) {
+                if (!keep.contains(name)) {
+                    int slot = slotsByName.get(name);
+                    FileLock recordLock = lockRecord(slot);
+                    try {
+                        freeSlot(name, slot);
+                    } finally {
+                        recordLock.release();
+                    }
+                }
+            }
+        } finally {
+            lock.release();
+        }
+    }
+
+    /**
+     * Removes a product; its slot is reused by the next new product.
+     *
+     * @return false if the store has no product of that name
+     */
+    public synchronized boolean remove(String name) throws IOException {
+        Integer slot = lockedSlotOf(name);
+        if (slot == null) {
+            return false;
+        }
+        try {
+            freeSlot(name, slot);
+        } finally {
+            releaseRecordLock();
+        }
+        return true;
+    }
+
+    /**
+     * Adds delta to a product's stored quantity. The quantity is read and
+     * written back under the record's lock, so concurrent changes from other
+     * processes add up instead of overwriting each other.
+     *
+     * @return the new stored quantity, or null if the store has no product of that name
+     */
+    public synchronized Integer addQuantity(String name, int delta) throws IOException {
+        Integer slot = lockedSlotOf(name);
+        if (slot == null) {
+            return null;
+        }
+        try {
+            int quantity = Math.addExact(current.getInt(QUANTITY_OFFSET), delta);
+            current.putInt(QUANTITY_OFFSET, quantity);
+            writeRecord(current, slot);
+            return quantity;
+        } finally {
+            releaseRecordLock();
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        channel.close();
+    }
+
+    // Finds a product's slot and returns with the record locked and read into
+    // the current buffer, or returns null (holding no lock) if there is none
+    private Integer lockedSlotOf(String name) throws IOException {
+        for (int attempt = 0; attempt < 2; attempt++) {
+            Integer slot = slotsByName.get(name);
+            if (slot != null) {
+                FileLock lock = lockRecord(slot);
+                boolean found = false;
+                try {
+                    found = readRecord(slot) && current.getInt(0) == IN_USE
+                            && name.equals(readString(current, NAME_OFFSET));
+                } finally {
+                    // Also released when the read throws
+                    if (!found) {
+                        lock.release();
+                    }
+                }
+                if (found) {
+                    heldLock = lock;
+                    return slot;
+                }
+            }
+            if (attempt == 0) {
+                // Another process may have added, moved or removed it
+                rebuildIndexLocked();
+            }
+        }
+        return null;
+    }
+
+    private void releaseRecordLock() throws IOException {
+        FileLock lock = heldLock;
+        heldLock = null;
+        if (lock != null) {
+            lock.release();
+        }
+    }
+
+    // Writes the encoded record over the product's slot, or into a free slot
+    // or the end of the file if it is new; needs the header lock
+    private void placeUnderHeaderLock(String name) throws IOException {
+        Integer slot = slotsByName.get(name);
+        if (slot == null) {
+            Integer free = freeSlots.poll();
+            slot = free != null ? free : (int) ((channel.size() - HEADER_SIZE) / RECORD_SIZE);
+        }
+
+        FileLock lock = lockRecord(slot);
+        try {
+            writeRecord(encoded, slot);
+        } finally {
+            lock.release();
+        }
+        slotsByName.put(name, slot);
+    }
+
+    private void freeSlot(String name, int slot) throws IOException {
+        ByteBuffer flag = ByteBuffer.allocate(4).putInt(0, 0);
+        writeFully(flag, offsetOf(slot));
+        slotsByName.remove(name);
+        freeSlots.add(slot);
+    }
+
+    // Re-reads every record's flag and name; needs the header lock so no record is being placed
+    private void rebuildIndex() throws IOException {
+        slotsByName.clear();
+        freeSlots.clear();
+
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE * RECORDS_PER_READ);
+        long position = HEADER_SIZE;
+        long end = channel.size();
+        int slot = 0;
+        while (position < end) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), end - position));
+            readFully(buffer, position);
+            for (int offset = 0; offset + RECORD_SIZE <= buffer.limit(); offset += RECORD_SIZE, slot++) {
+                if (buffer.getInt(offset) == IN_USE) {
+                    slotsByName.put(readString(buffer, offset + NAME_OFFSET), slot);
+                } else {
+                    freeSlots.add(slot);
+                }
+            }
+            position += buffer.limit();
+        }
+    }
+
+    // Fills the encoded buffer with the product's fields
+    private void encode(Product product) {
+        encoded.clear();
+        encoded.putInt(0, IN_USE)
+                .putLong(PRICE_OFFSET, product.getPricePennies())
+                .putInt(QUANTITY_OFFSET, product.getQuantity())
+                .putInt(REORDER_OFFSET, product.getReorderPoint());
+        putString(product.getName(), NAME_OFFSET, MAX_NAME_BYTES, "name");
+        putString(product.getCategory(), CATEGORY_OFFSET, MAX_CATEGORY_BYTES, "category");
+    }
+
+    private void putString(String text, int offset, int maxBytes, String what) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > maxBytes) {
+            throw new IllegalArgumentException("Product " + what + " is longer than "
+                    + maxBytes + " bytes: " + text);
+        }
+        encoded.putShort(offset, (short) bytes.length);
+        encoded.put(offset + 2, bytes);
+        // Clear the rest so old, longer values do not linger in the file
+        for (int i = offset + 2 + bytes.length; i < offset + 2 + maxBytes; i++) {
+            encoded.put(i, (byte) 0);
+        }
+    }
+
+    private static String readString(ByteBuffer buffer, int offset) {
+        int length = buffer.getShort(offset);
+        byte[] bytes = new byte[length];
+        buffer.get(offset + 2, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // Rebuilds the index holding the header lock
+    private void rebuildIndexLocked() throws IOException {
+        FileLock lock = lockHeader();
+        try {
+            rebuildIndex();
+        } finally {
+            lock.release();
+        }
+    }
+
+    private FileLock lockHeader() throws IOException {
+        return channel.lock(0, HEADER_SIZE, false);
+    }
+
+    private FileLock lockRecord(int slot) throws IOException {
+        return channel.lock(offsetOf(slot), RECORD_SIZE, false);
+    }
+
+    // Reads one record into the current buffer; false if the slot is past the end of the file
+    private boolean readRecord(int slot) throws IOException {
+        current.clear();
+        long position = offsetOf(slot);
+        if (position + RECORD_SIZE > channel.size()) {
+            return false;
+        }
+        readFully(current, position);
+        return true;
+    }
+
+    private void writeRecord(ByteBuffer buffer, int slot) throws IOException {
+        buffer.clear();
+        writeFully(buffer, offsetOf(slot));
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Product store ended early: " + file);
+            }
+        }
+        buffer.flip();
+    }
+
+    private void writeFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private static long offsetOf(int slot) {
+        return HEADER_SIZE + (long) slot * RECORD_SIZE;
+    }
+}
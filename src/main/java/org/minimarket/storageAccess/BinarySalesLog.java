@@ -0,0 +1,326 @@
+package org.minimarket.storageAccess;
+
+import org.minimarket.catalogue.SaleRecord;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * BinarySalesLog stores sale records as fixed-width binary rows and reads
+ * them back through memory-mapped buffers.
+ *
+ * File layout (big-endian):
+ *
+ *      header  : magic "MMSL" (int), version (int), record size (int), reserved (int)
+ *      record  : productId (int), quantity (int), amount in pennies (long), timestamp millis (long)
+ *
+ * Because every row has the same width, row i lives at
+ * {@code HEADER_SIZE + i * RECORD_SIZE}, so counts are O(1) and any range of
+ * rows can be mapped directly. Product names are kept once in a small
+ * dictionary file ("id,name" per line) and rows refer to them by id.
+ *
+ * {@link #scan} walks the mapped rows and hands the raw fields to a visitor,
+ * so totals can be computed without creating a SaleRecord per row.
+ */
+public class BinarySalesLog implements AutoCloseable {
+
+    /** Receives the fields of each row during a scan. */
+    public interface RowVisitor {
+        void row(int productId, int quantity, long amountPennies, long timestamp);
+    }
+
+    private static final int MAGIC = 0x4D4D534C; // "MMSL"
+    private static final int VERSION = 1;
+
+    public static final int HEADER_SIZE = 16;
+    public static final int RECORD_SIZE = 24;
+
+    /** Rows mapped at a time; keeps each mapping well under the 2 GB limit. */
+    private static final int ROWS_PER_MAPPING = 1 << 22;
+
+    private final Path file;
+    private final Path dictionaryFile;
+    private final FileChannel channel;
+
+    // Product name dictionary; guarded by this
+    private final Map<String, Integer> idsByName = new HashMap<>();
+    private final List<String> namesById = new ArrayList<>();
+
+    /**
+     * Opens (or creates) a binary sales log and its product dictionary.
+     *
+     * @param file           the binary log file
+     * @param dictionaryFile the product name dictionary
+     * @throws IOException if either file cannot be opened or the log header is invalid
+     */
+    public BinarySalesLog(Path file, Path dictionaryFile) throws IOException {
+        this.file = file;
+        this.dictionaryFile = dictionaryFile;
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (channel.size() == 0) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION).putInt(RECORD_SIZE).putInt(0).flip();
+            channel.write(header, 0);
+        } else {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            channel.read(header, 0);
+            header.flip();
+            if (header.remaining() < HEADER_SIZE || header.getInt() != MAGIC
+                    || header.getInt() != VERSION || header.getInt() != RECORD_SIZE) {
+                channel.close();
+                throw new IOException("Not a version " + VERSION + " sales log: " + file);
+            }
+
+            // Drop a row that was only partly written when the process died
+            long rowBytes = channel.size() - HEADER_SIZE;
+            if (rowBytes % RECORD_SIZE != 0) {
+                channel.truncate(HEADER_SIZE + rowBytes - rowBytes % RECORD_SIZE);
+            }
+        }
+
+        loadDictionary();
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Number of complete rows in the log. A row cut short by a crash is ignored.
+     */
+    public long getRecordCount() {
+        try {
+            return Math.max(0, (channel.size() - HEADER_SIZE) / RECORD_SIZE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Byte offset just after the given row; used as a watermark by the totals.
+     */
+    public static long offsetOfRow(long row) {
+        return HEADER_SIZE + row * RECORD_SIZE;
+    }
+
+    /**
+     * Row number that starts at (or after) the given byte offset.
+     */
+    public static long rowAtOffset(long offset) {
+        return Math.max(0, (offset - HEADER_SIZE + RECORD_SIZE - 1) / RECORD_SIZE);
+    }
+
+    /**
+     * Returns the dictionary id of a product, adding it if it is new.
+     * New names are appended to the dictionary file before they are used.
+     */
+    public synchronized int idOf(String productName) {
+        Integer id = idsByName.get(productName);
+        if (id != null) {
+            return id;
+        }
+
+        int newId = namesById.size();
+        try {
+            Files.write(dictionaryFile,
+                    (newId + "," + productName + "\n").getBytes(StandardCharsets.UTF_8),
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error extending sales product dictionary", e);
+        }
+        idsByName.put(productName, newId);
+        namesById.add(productName);
+        return newId;
+    }
+
+    /**
+     * Returns the product name for a dictionary id.
+     */
+    public synchronized String nameOf(int productId) {
+        String name = productId >= 0 && productId < namesById.size() ? namesById.get(productId) : null;
+        return name != null ? name : "#" + productId;
+    }
+
+    /**
+     * Number of distinct products in the dictionary; ids run from 0 to this - 1.
+     */
+    public synchronized int getProductCount() {
+        return namesById.size();
+    }
+
+    /**
+     * Encodes a batch of records as consecutive binary rows.
+     *
+     * @param records the records to encode
+     * @return a buffer ready to be written at the end of the log
+     */
+    public ByteBuffer encode(List<SaleRecord> records) {
+        ByteBuffer buffer = ByteBuffer.allocate(records.size() * RECORD_SIZE);
+        for (SaleRecord record : records) {
+            buffer.putInt(idOf(record.getProductName()))
+                    .putInt(record.getQuantity())
+                    .putLong(record.getSubtotalPennies())
+                    .putLong(record.getTimestamp());
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Appends records directly, without going through a batched writer.
+     */
+    public synchronized void append(List<SaleRecord> records) throws IOException {
+        ByteBuffer buffer = encode(records);
+        long position = offsetOfRow(getRecordCount());
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    /**
+     * Visits rows [fromRow, toRow) straight from the mapped file.
+     *
+     * @param fromRow first row to visit
+     * @param toRow   row after the last one to visit (clamped to the record count)
+     * @param visitor receives each row's fields
+     */
+    public void scan(long fromRow, long toRow, RowVisitor visitor) {
+        long end = Math.min(toRow, getRecordCount());
+        long row = Math.max(0, fromRow);
+
+        try {
+            while (row < end) {
+                int rows = (int) Math.min(ROWS_PER_MAPPING, end - row);
+                MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY,
+                        offsetOfRow(row), (long) rows * RECORD_SIZE);
+                mapped.order(ByteOrder.BIG_ENDIAN);
+
+                for (int i = 0; i < rows; i++) {
+                    int base = i * RECORD_SIZE;
+                    visitor.row(mapped.getInt(base), mapped.getInt(base + 4),
+                            mapped.getLong(base + 8), mapped.getLong(base + 16));
+                }
+                row += rows;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error reading sales log", e);
+        }
+    }
+
+    /**
+     * Sum of all amounts in the log, in pennies, computed over the mapped rows.
+     */
+    public long totalPennies() {
+        long[] total = new long[1];
+        scan(0, Long.MAX_VALUE, (id, qty, amount, ts) -> total[0] += amount);
+        return total[0];
+    }
+
+    /**
+     * Materializes rows [fromRow, fromRow + count) as SaleRecord objects.
+     * Only use this for rows that are about to be shown.
+     */
+    public List<SaleRecord> read(long fromRow, int count) {
+        List<SaleRecord> records = new ArrayList<>(Math.max(0, count));
+        scan(fromRow, fromRow + count, (id, qty, amount, ts) ->
+                records.add(SaleRecord.ofPennies(nameOf(id), qty, amount, ts)));
+        return records;
+    }
+
+    /**
+     * Converts a CSV sales log into binary rows appended to this log.
+     * Rows may be in the original format (productName,quantity,subtotal),
+     * which has no sale time, or carry a fourth timestamp column in epoch
+     * milliseconds. Malformed lines are skipped.
+     *
+     * @param csvFile the CSV log to convert
+     * @return the number of rows converted
+     */
+    public synchronized long convertFromCsv(Path csvFile) throws IOException {
+        long converted = 0;
+        long position = offsetOfRow(getRecordCount());
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE * 4096);
+
+        try (FileChannel csvChannel = FileChannel.open(csvFile, StandardOpenOption.READ)) {
+            CsvReader row = new CsvReader(csvChannel.map(FileChannel.MapMode.READ_ONLY, 0, csvChannel.size()));
+            while (true) {
+                try {
+                    if (!row.next()) {
+                        break;
+                    }
+                    int fields = row.getFieldCount();
+                    if (fields != 3 && fields != 4) {
+                        continue;
+                    }
+                    int quantity = row.getInt(1);
+                    long pennies = row.getPennies(2);
+                    long timestamp = fields == 4 ? row.getLong(3) : 0L;
+                    buffer.putInt(idOf(row.getString(0))).putInt(quantity).putLong(pennies).putLong(timestamp);
+                } catch (CsvFormatException e) {
+                    continue;
+                }
+                converted++;
+
+                if (!buffer.hasRemaining()) {
+                    position = writeFully(buffer, position);
+                }
+            }
+        }
+        writeFully(buffer, position);
+        return converted;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    // Flips, writes and clears a buffer at the given position; returns the new end
+    private long writeFully(ByteBuffer buffer, long position) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+        buffer.clear();
+        return position;
+    }
+
+    private void loadDictionary() throws IOException {
+        if (!Files.exists(dictionaryFile)) {
+            return;
+        }
+        try (BufferedReader br = Files.newBufferedReader(dictionaryFile, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                int comma = line.indexOf(',');
+                if (comma <= 0) {
+                    continue;
+                }
+                int id = Integer.parseInt(line.substring(0, comma));
+                String name = line.substring(comma + 1);
+                while (namesById.size() <= id) {
+                    namesById.add(null);
+                }
+                namesById.set(id, name);
+                idsByName.put(name, id);
+            }
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package org.minimarket.storageAccess;
+
+import org.minimarket.catalogue.Product;
+
+/**
+ * A change to one product in the catalogue, as delivered by
+ * {@link CatalogueEventBus}.
+ *
+ * Listeners receive the events of one JavaFX pulse together, already
+ * merged per product, so they can patch just the products named instead of
+ * redrawing everything. Editing a product's name or category is reported as
+ * a removal followed by an addition, since it moves the product between
+ * lists and index buckets.
+ */
+public abstract class CatalogueEvent {
+
+    private final Product product;
+
+    CatalogueEvent(Product product) {
+        this.product = product;
+    }
+
+    public Product getProduct() {
+        return product;
+    }
+
+    /** A product was added to the catalogue. */
+    public static final class ProductAdded extends CatalogueEvent {
+        ProductAdded(Product product) {
+            super(product);
+        }
+    }
+
+    /** A product was removed from the catalogue. */
+    public static final class ProductRemoved extends CatalogueEvent {
+        ProductRemoved(Product product) {
+            super(product);
+        }
+    }
+
+    /** A product's stock changed, by the sum of the changes since the last delivery. */
+    public static final class StockChanged extends CatalogueEvent {
+        private final int delta;
+
+        StockChanged(Product product, int delta) {
+            super(product);
+            this.delta = delta;
+        }
+
+        /** Units added (negative when taken) since the last delivery. */
+        public int getDelta() {
+            return delta;
+        }
+
+        StockChanged plus(int more) {
+            return new StockChanged(getProduct(), delta + more);
+        }
+    }
+
+    /** A product's price changed. */
+    public static final class PriceChanged extends CatalogueEvent {
+        private final long oldPricePennies;
+        private final long newPricePennies;
+
+        PriceChanged(Product product, long oldPricePennies, long newPricePennies) {
+            super(product);
+            this.oldPricePennies = oldPricePennies;
+            this.newPricePennies = newPricePennies;
+        }
+
+        /** The price before the first change since the last delivery. */
+        public long getOldPricePennies() {
+            return oldPricePennies;
+        }
+
+        public long getNewPricePennies() {
+            return newPricePennies;
+        }
+
+        PriceChanged then(PriceChanged later) {
+            return new PriceChanged(getProduct(), oldPricePennies, later.newPricePennies);
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package org.minimarket.storageAccess;
+
+import javafx.application.Platform;
+import org.minimarket.catalogue.Product;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+
+/**
+ * CatalogueEventBus tells listeners which products changed and how, so
+ * views can patch those products instead of rebuilding.
+ *
+ * Changes are published by {@link ProductCatalogue} on whatever thread made
+ * them. They are merged per product until the next delivery: stock deltas
+ * are added up, price changes keep the first old price and the last new
+ * one, and a product added and removed again in between is not reported at
+ * all. Deliveries run on the JavaFX thread, at most one per pulse; when the
+ * JavaFX toolkit is not running (the checkout server, tests), they run
+ * straight away on the publishing thread.
+ *
+ * Nothing is recorded while there are no listeners.
+ */
+public class CatalogueEventBus {
+
+    /** Told about the changes of one delivery, in the order the products first changed. */
+    public interface Listener {
+        void catalogueChanged(List<CatalogueEvent> events);
+    }
+
+    // Everything that happened to one product since the last delivery
+    private static class Changes {
+        boolean removed;
+        boolean added;
+        CatalogueEvent.StockChanged stock;
+        CatalogueEvent.PriceChanged price;
+    }
+
+    private final Executor dispatcher;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    /** Changes waiting for delivery; guarded by this object. */
+    private Map<Product, Changes> pending = new LinkedHashMap<>();
+    private boolean deliveryScheduled;
+
+    /**
+     * Delivers on the JavaFX thread, or straight away if JavaFX is not running.
+     */
+    public CatalogueEventBus() {
+        this(task -> {
+            try {
+                Platform.runLater(task);
+            } catch (IllegalStateException e) {
+                // Toolkit not started
+                task.run();
+            }
+        });
+    }
+
+    /**
+     * @param dispatcher runs each delivery; it should run tasks in order
+     */
+    public CatalogueEventBus(Executor dispatcher) {
+        this.dispatcher = dispatcher;
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    void productAdded(Product product) {
+        boolean schedule;
+        synchronized (this) {
+            if (listeners.isEmpty()) {
+                return;
+            }
+            changesFor(product).added = true;
+            schedule = scheduleDelivery();
+        }
+        if (schedule) {
+            dispatcher.execute(this::deliver);
+        }
+    }
+
+    void productRemoved(Product product) {
+        boolean schedule;
+        synchronized (this) {
+            if (listeners.isEmpty()) {
+                return;
+            }
+            Changes changes = changesFor(product);
+            changes.stock = null;
+            changes.price = null;
+            if (changes.added && !changes.removed) {
+                // Added since the last delivery, so listeners never saw it
+                pending.remove(product);
+            } else {
+                changes.added = false;
+                changes.removed = true;
+            }
+            schedule = scheduleDelivery();
+        }
+        if (schedule) {
+            dispatcher.execute(this::deliver);
+        }
+    }
+
+    void stockChanged(Product product, int delta) {
+        boolean schedule;
+        synchronized (this) {
+            if (listeners.isEmpty()) {
+                return;
+            }
+            Changes changes = changesFor(product);
+            changes.stock = changes.stock == null
+                    ? new CatalogueEvent.StockChanged(product, delta)
+                    : changes.stock.plus(delta);
+            schedule = scheduleDelivery();
+        }
+        if (schedule) {
+            dispatcher.execute(this::deliver);
+        }
+    }
+
+    void priceChanged(Product product, long oldPricePennies, long newPricePennies) {
+        boolean schedule;
+        synchronized (this) {
+            if (listeners.isEmpty()) {
+                return;
+            }
+            Changes changes = changesFor(product);
+            CatalogueEvent.PriceChanged change = new CatalogueEvent.PriceChanged(product, oldPricePennies, newPricePennies);
+            changes.price = changes.price == null ? change : changes.price.then(change);
+            schedule = scheduleDelivery();
+        }
+        if (schedule) {
+            dispatcher.execute(this::deliver);
+        }
+    }
+
+    // Takes the pending changes and hands them to every listener
+    private void deliver() {
+        Map<Product, Changes> batch;
+        synchronized (this) {
+            batch = pending;
+            pending = new LinkedHashMap<>();
+            deliveryScheduled = false;
+        }
+
+        List<CatalogueEvent> events = new ArrayList<>(batch.size());
+        for (Map.Entry<Product, Changes> e : batch.entrySet()) {
+            Product product = e.getKey();
+            Changes changes = e.getValue();
+            if (changes.removed) {
+                events.add(new CatalogueEvent.ProductRemoved(product));
+            }
+            if (changes.added) {
+                events.add(new CatalogueEvent.ProductAdded(product));
+            }
+            if (changes.stock != null && changes.stock.getDelta() != 0) {
+                events.add(changes.stock);
+            }
+            if (changes.price != null && changes.price.getOldPricePennies() != changes.price.getNewPricePennies()) {
+                events.add(changes.price);
+            }
+        }
+        if (events.isEmpty()) {
+            return;
+        }
+
+        List<CatalogueEvent> delivered = Collections.unmodifiableList(events);
+        for (Listener listener : listeners) {
+            listener.catalogueChanged(delivered);
+        }
+    }
+
+    // Called holding the lock
+    private Changes changesFor(Product product) {
+        return pending.computeIfAbsent(product, p -> new Changes());
+    }
+
+    // Called holding the lock; true if the caller should hand a delivery to the dispatcher
+    private boolean scheduleDelivery() {
+        if (deliveryScheduled) {
+            return false;
+        }
+        deliveryScheduled = true;
+        return true;
+    }
+}
@@ -0,0 +1,169 @@
+package org.minimarket.storageAccess;
+
+import org.minimarket.catalogue.Product;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * CategoryFacets counts, for each category, how many products it has and
+ * how many of those are in stock.
+ *
+ * The counts are kept up to date as products are added, removed, edited or
+ * sold, so the category filter can show them without scanning the catalogue.
+ * Each product's category and in-stock state are remembered, so a product
+ * is always taken out of the bucket it was counted in, even if its category
+ * has since been changed.
+ *
+ * Stock changes arrive on whatever thread made them, so the counts are
+ * synchronized. Listeners are called outside the lock, only when a count
+ * actually changed.
+ */
+public class CategoryFacets {
+
+    /** A snapshot of the counts for one category. */
+    public static class Facet {
+        private final String category;
+        private final int productCount;
+        private final int inStockCount;
+
+        Facet(String category, int productCount, int inStockCount) {
+            this.category = category;
+            this.productCount = productCount;
+            this.inStockCount = inStockCount;
+        }
+
+        public String getCategory() { return category; }
+        public int getProductCount() { return productCount; }
+        public int getInStockCount() { return inStockCount; }
+    }
+
+    /** Told when any count changes. */
+    public interface Listener {
+        void facetsChanged();
+    }
+
+    // Running counts for one category
+    private static class Counts {
+        int products;
+        int inStock;
+    }
+
+    // Where a product was counted
+    private static class Membership {
+        final String category;
+        boolean inStock;
+
+        Membership(String category, boolean inStock) {
+            this.category = category;
+            this.inStock = inStock;
+        }
+    }
+
+    private final Map<String, Counts> byCategory = new LinkedHashMap<>();
+    private final Map<Product, Membership> members = new IdentityHashMap<>();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private int totalProducts;
+    private int totalInStock;
+
+    /**
+     * Counts a product in its current category.
+     */
+    public void add(Product product) {
+        synchronized (this) {
+            if (members.containsKey(product)) {
+                return;
+            }
+            Membership membership = new Membership(product.getCategory(), product.getQuantity() > 0);
+            members.put(product, membership);
+
+            Counts counts = byCategory.computeIfAbsent(membership.category, c -> new Counts());
+            counts.products++;
+            totalProducts++;
+            if (membership.inStock) {
+                counts.inStock++;
+                totalInStock++;
+            }
+        }
+        fireChanged();
+    }
+
+    /**
+     * Stops counting a product; a category left with no products is dropped.
+     */
+    public void remove(Product product) {
+        synchronized (this) {
+            Membership membership = members.remove(product);
+            if (membership == null) {
+                return;
+            }
+
+            Counts counts = byCategory.get(membership.category);
+            counts.products--;
+            totalProducts--;
+            if (membership.inStock) {
+                counts.inStock--;
+                totalInStock--;
+            }
+            if (counts.products == 0) {
+                byCategory.remove(membership.category);
+            }
+        }
+        fireChanged();
+    }
+
+    /**
+     * Updates the in-stock count if the product ran out or came back into stock.
+     */
+    public void stockChanged(Product product) {
+        synchronized (this) {
+            Membership membership = members.get(product);
+            boolean inStock = product.getQuantity() > 0;
+            if (membership == null || membership.inStock == inStock) {
+                return;
+            }
+            membership.inStock = inStock;
+
+            int delta = inStock ? 1 : -1;
+            byCategory.get(membership.category).inStock += delta;
+            totalInStock += delta;
+        }
+        fireChanged();
+    }
+
+    /**
+     * The counts for every category, in the order categories were first seen.
+     */
+    public synchronized List<Facet> getFacets() {
+        List<Facet> facets = new ArrayList<>(byCategory.size());
+        for (Map.Entry<String, Counts> e : byCategory.entrySet()) {
+            facets.add(new Facet(e.getKey(), e.getValue().products, e.getValue().inStock));
+        }
+        return facets;
+    }
+
+    /**
+     * The counts across all categories, under the category name given.
+     */
+    public synchronized Facet getTotal(String label) {
+        return new Facet(label, totalProducts, totalInStock);
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    private void fireChanged() {
+        for (Listener listener : listeners) {
+            listener.facetsChanged();
+        }
+    }
+}
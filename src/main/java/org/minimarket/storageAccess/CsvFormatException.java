@@ -0,0 +1,23 @@
+package org.minimarket.storageAccess;
+
+/**
+ * Thrown by {@link CsvReader} for a row it cannot read: a number that is not
+ * a number, or a quoted field that is never closed. Carries the line the row
+ * starts on so the problem can be reported and the row skipped.
+ */
+public class CsvFormatException extends IllegalArgumentException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int lineNumber;
+
+    public CsvFormatException(String message, int lineNumber) {
+        super("line " + lineNumber + ": " + message);
+        this.lineNumber = lineNumber;
+    }
+
+    /** The 1-based line the bad row starts on. */
+    public int getLineNumber() {
+        return lineNumber;
+    }
+}
@@ -0,0 +1,259 @@
+package org.minimarket.storageAccess;
+
+import org.minimarket.catalogue.Product;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * CsvProductRepository keeps the catalogue in products.csv.
+ *
+ * products.csv is a snapshot. Stock changes from the tills are appended to a
+ * {@link StockJournal} instead of rewriting the snapshot, and are folded back
+ * into it once the journal grows past {@link #COMPACT_THRESHOLD} entries.
+ * Adding, removing or editing a product rewrites the snapshot.
+ *
+ * Snapshots are written from the repository's own copy of what it has
+ * stored, never from the live catalogue. A snapshot therefore holds exactly
+ * the stock changes the journal has been given, however stock changes while
+ * it is written, and a reload does not count any change twice.
+ */
+public class CsvProductRepository implements ProductRepository {
+
+    /** Snapshot header line recording the last journal sequence it contains. */
+    private static final String SEQUENCE_HEADER = "#seq=";
+
+    /** Number of journal entries after which the journal is compacted. */
+    private static final int COMPACT_THRESHOLD = 500;
+
+    private final Path productFile;
+    private final Path journalFile;
+
+    /** What products.csv and the journal hold, by normalized name; guarded by this. */
+    private final Map<String, Product> stored = new LinkedHashMap<>();
+
+    private StockJournal journal;
+
+    /** Journal sequence already contained in products.csv. */
+    private long snapshotSequence;
+
+    /**
+     * @param productFile the products.csv snapshot
+     * @param journalFile the stock journal
+     */
+    public CsvProductRepository(Path productFile, Path journalFile) {
+        this.productFile = productFile;
+        this.journalFile = journalFile;
+    }
+
+    /**
+     * Reads the snapshot, then replays any journalled stock changes that are
+     * newer than it.
+     */
+    @Override
+    public synchronized List<Product> loadProducts() {
+        List<Product> loaded = new ArrayList<>();
+        snapshotSequence = 0;
+
+        try {
+            CsvReader csv = CsvReader.open(productFile);
+            csv.forEachRow(productFile.getFileName().toString(), row -> {
+                if (row.fieldStartsWith(0, SEQUENCE_HEADER)) {
+                    snapshotSequence = Long.parseLong(row.getString(0).substring(SEQUENCE_HEADER.length()).trim());
+                    return;
+                }
+
+                // name, price, quantity, category[, reorder point]
+                int fields = row.getFieldCount();
+                if (fields == 4 || fields == 5) {
+                    String name = ProductCatalogue.normalize(row.getString(0));
+                    long price = row.getPennies(1);
+                    int quantity = row.getInt(2);
+                    String category = row.getTrimmedString(3);
+
+                    // Missing pictures fall back to the default when the thumbnail is loaded
+                    String imagePath = "/images/" + name + ".png";
+
+                    Product product = new Product(name, 0, quantity, category, imagePath);
+                    product.setPricePennies(price);
+                    if (fields == 5) {
+                        product.setReorderPoint(row.getInt(4));
+                    }
+                    loaded.add(product);
+                }
+            });
+        } catch (IOException | NumberFormatException e) {
+            System.err.println("Error loading products: " + e.getMessage());
+        }
+
+        StockJournal stockJournal = journal();
+        if (stockJournal != null) {
+            Map<String, Product> byName = new HashMap<>();
+            for (Product p : loaded) {
+                byName.putIfAbsent(ProductCatalogue.normalize(p.getName()), p);
+            }
+
+            stockJournal.advanceTo(snapshotSequence);
+            int replayed = stockJournal.replay(snapshotSequence, entry -> {
+                Product p = byName.get(ProductCatalogue.normalize(entry.getProductName()));
+                if (p != null) {
+                    p.addQuantity(entry.getDelta());
+                }
+            });
+
+            if (replayed >= COMPACT_THRESHOLD) {
+                saveProducts(loaded);
+                return loaded;
+            }
+        }
+        remember(loaded);
+        return loaded;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return !Files.exists(productFile);
+    }
+
+    /**
+     * Makes the given products the whole catalogue and writes the snapshot.
+     */
+    @Override
+    public synchronized void saveProducts(List<Product> products) {
+        remember(products);
+        writeSnapshot();
+    }
+
+    @Override
+    public synchronized void saveProduct(String oldName, Product product) {
+        if (oldName != null) {
+            stored.remove(ProductCatalogue.normalize(oldName));
+        }
+        stored.put(ProductCatalogue.normalize(product.getName()), product.copy());
+        writeSnapshot();
+    }
+
+    @Override
+    public synchronized void removeProduct(Product product) {
+        stored.remove(ProductCatalogue.normalize(product.getName()));
+        writeSnapshot();
+    }
+
+    // Writes the stored products to a temporary file and moves it into place,
+    // then empties the journal it now contains
+    private void writeSnapshot() {
+        StockJournal stockJournal = journal();
+        long sequence = stockJournal != null ? stockJournal.getLastSequence() : snapshotSequence;
+
+        Path temp = productFile.resolveSibling(productFile.getFileName() + ".tmp");
+
+        try (CsvWriter csv = new CsvWriter(Files.newBufferedWriter(temp, StandardCharsets.UTF_8))) {
+
+            csv.line(SEQUENCE_HEADER + sequence);
+
+            for (Product p : stored.values()) {
+                csv.field(p.getName())
+                        .pennies(p.getPricePennies())
+                        .field(p.getQuantity())
+                        .field(p.getCategory());
+                // Only written when set, so files stay readable by older versions
+                if (p.getReorderPoint() != Product.DEFAULT_REORDER_POINT) {
+                    csv.field(p.getReorderPoint());
+                }
+                csv.endRow();
+            }
+        } catch (IOException e) {
+            System.err.println("Error saving products: " + e.getMessage());
+            return;
+        }
+
+        try {
+            Files.move(temp, productFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("Error replacing products file: " + e.getMessage());
+            return;
+        }
+
+        snapshotSequence = sequence;
+        if (stockJournal != null) {
+            stockJournal.reset();
+        }
+    }
+
+    /**
+     * Appends the change to the journal instead of rewriting products.csv,
+     * so the cost does not depend on the size of the catalogue.
+     */
+    @Override
+    public synchronized void recordStockChange(Product product, int delta) {
+        applyStored(product, delta);
+        StockJournal stockJournal = journal();
+        if (stockJournal == null) {
+            writeSnapshot();
+            return;
+        }
+
+        stockJournal.append(product.getName(), delta);
+        if (stockJournal.getEntryCount() >= COMPACT_THRESHOLD) {
+            writeSnapshot();
+        }
+    }
+
+    /**
+     * Appends every change before compacting, so a compaction never takes a
+     * snapshot that already holds changes still to be appended.
+     */
+    @Override
+    public synchronized void recordStockChanges(Map<Product, Integer> deltas) {
+        deltas.forEach(this::applyStored);
+        StockJournal stockJournal = journal();
+        if (stockJournal == null) {
+            writeSnapshot();
+            return;
+        }
+
+        deltas.forEach((product, delta) -> stockJournal.append(product.getName(), delta));
+        if (stockJournal.getEntryCount() >= COMPACT_THRESHOLD) {
+            writeSnapshot();
+        }
+    }
+
+    // Replaces the stored products with copies of the given ones
+    private void remember(List<Product> products) {
+        stored.clear();
+        synchronized (products) {
+            for (Product p : products) {
+                stored.put(ProductCatalogue.normalize(p.getName()), p.copy());
+            }
+        }
+    }
+
+    // Adds a stock change to the stored copy; a product never saved here is not in the snapshot either
+    private void applyStored(Product product, int delta) {
+        Product copy = stored.get(ProductCatalogue.normalize(product.getName()));
+        if (copy != null) {
+            copy.addQuantity(delta);
+        }
+    }
+
+    // Opens the journal on first use; returns null if it cannot be opened
+    private synchronized StockJournal journal() {
+        if (journal == null) {
+            try {
+                journal = new StockJournal(journalFile);
+            } catch (IOException e) {
+                System.err.println("Stock journal unavailable, saving full snapshots: " + e.getMessage());
+            }
+        }
+        return journal;
+    }
+}
@@ -0,0 +1,377 @@
+package org.minimarket.storageAccess;
+
+import org.minimarket.utility.Money;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * CsvReader reads comma-separated rows straight out of a byte buffer.
+ *
+ * {@link #next()} only finds where each field of the next row starts and
+ * ends; nothing is copied until a field is asked for. Numbers are parsed
+ * from the bytes themselves ({@link #getInt}, {@link #getLong},
+ * {@link #getPennies}), so a row of numbers creates no Strings at all.
+ *
+ * Fields may be quoted as in RFC 4180: a quoted field can hold commas,
+ * newlines and doubled quotes (""). Rows may end in \n or \r\n, blank lines
+ * are skipped, and a UTF-8 byte order mark at the start is ignored.
+ *
+ * A row that cannot be read raises a {@link CsvFormatException} naming its
+ * line. {@link #forEachRow} reports such rows and carries on with the next.
+ *
+ * The file managers in this package all read their CSV files through this
+ * class, and write them with {@link CsvWriter}.
+ */
+public class CsvReader {
+
+    /** Handles one row during {@link #forEachRow}. */
+    public interface RowHandler {
+        void row(CsvReader row);
+    }
+
+    private final ByteBuffer buffer;
+    private final int limit;
+    private int position;
+
+    // Line number of the next unread byte, and of the current row
+    private int nextLine = 1;
+    private int line;
+
+    // Byte ranges of the current row's fields; quoted fields exclude their quotes
+    private int[] starts = new int[8];
+    private int[] ends = new int[8];
+    private boolean[] escaped = new boolean[8];
+    private int fieldCount;
+
+    private byte[] scratch = new byte[64];
+
+    /**
+     * Reads rows from the buffer's position up to its limit.
+     * The buffer's own position is not changed.
+     */
+    public CsvReader(ByteBuffer buffer) {
+        this.buffer = buffer;
+        this.position = buffer.position();
+        this.limit = buffer.limit();
+
+        if (limit - position >= 3 && buffer.get(position) == (byte) 0xEF
+                && buffer.get(position + 1) == (byte) 0xBB && buffer.get(position + 2) == (byte) 0xBF) {
+            position += 3;
+        }
+    }
+
+    /**
+     * Reads a whole (small) file into memory and returns a reader over it.
+     */
+    public static CsvReader open(Path file) throws IOException {
+        return new CsvReader(ByteBuffer.wrap(Files.readAllBytes(file)));
+    }
+
+    /**
+     * Calls the handler for every row. Rows that raise a
+     * {@link CsvFormatException}, while being split or in the handler, are
+     * reported on System.err with their line number and skipped.
+     *
+     * @param source  name used in the report, e.g. the file name
+     * @param handler called once per row
+     * @return the number of rows skipped
+     */
+    public int forEachRow(String source, RowHandler handler) {
+        int skipped = 0;
+        while (true) {
+            try {
+                if (!next()) {
+                    return skipped;
+                }
+                handler.row(this);
+            } catch (CsvFormatException e) {
+                System.err.println("Skipping malformed row in " + source + ", " + e.getMessage());
+                skipped++;
+            }
+        }
+    }
+
+    /**
+     * Moves to the next non-blank row.
+     *
+     * @return false when there are no more rows
+     * @throws CsvFormatException if the row has a broken quoted field; the
+     *                            reader has already moved past it
+     */
+    public boolean next() {
+        while (position < limit) {
+            line = nextLine;
+            fieldCount = 0;
+            int p = position;
+            boolean quoted = false;
+
+            while (true) {
+                if (p < limit && buffer.get(p) == '"') {
+                    p = readQuoted(p);
+                    quoted = true;
+                } else {
+                    int start = p;
+                    while (p < limit && buffer.get(p) != ',' && buffer.get(p) != '\n') {
+                        p++;
+                    }
+                    int end = p;
+                    if (end > start && buffer.get(end - 1) == '\r' && (p == limit || buffer.get(p) == '\n')) {
+                        end--;
+                    }
+                    addField(start, end, false);
+                }
+
+                if (p < limit && buffer.get(p) == ',') {
+                    p++;
+                    continue;
+                }
+                if (p < limit) {
+                    p++; // the newline
+                    nextLine++;
+                }
+                break;
+            }
+            position = p;
+
+            if (fieldCount == 1 && starts[0] == ends[0] && !quoted) {
+                continue; // blank line
+            }
+            return true;
+        }
+        fieldCount = 0;
+        return false;
+    }
+
+    /** Number of fields in the current row. */
+    public int getFieldCount() {
+        return fieldCount;
+    }
+
+    /** The 1-based line the current row starts on. */
+    public int getLineNumber() {
+        return line;
+    }
+
+    /**
+     * The field's text, unquoted.
+     */
+    public String getString(int field) {
+        checkField(field);
+        int start = starts[field];
+        int length = ends[field] - start;
+        if (buffer.hasArray() && !escaped[field]) {
+            return new String(buffer.array(), buffer.arrayOffset() + start, length, StandardCharsets.UTF_8);
+        }
+
+        if (scratch.length < length) {
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+        }
+        int n = 0;
+        for (int i = start; i < start + length; i++) {
+            byte b = buffer.get(i);
+            scratch[n++] = b;
+            if (b == '"' && escaped[field]) {
+                i++; // "" stands for one quote
+            }
+        }
+        return new String(scratch, 0, n, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * The field's text with leading and trailing whitespace removed.
+     */
+    public String getTrimmedString(int field) {
+        return getString(field).trim();
+    }
+
+    /**
+     * True if the field is exactly the given ASCII text; compares bytes, so no String is made.
+     */
+    public boolean fieldEquals(int field, String ascii) {
+        checkField(field);
+        int start = starts[field];
+        if (escaped[field] || ends[field] - start != ascii.length()) {
+            return false;
+        }
+        for (int i = 0; i < ascii.length(); i++) {
+            if (buffer.get(start + i) != ascii.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * True if the field starts with the given ASCII text.
+     */
+    public boolean fieldStartsWith(int field, String ascii) {
+        checkField(field);
+        int start = starts[field];
+        if (ends[field] - start < ascii.length()) {
+            return false;
+        }
+        for (int i = 0; i < ascii.length(); i++) {
+            if (buffer.get(start + i) != ascii.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Parses the field as an int; surrounding spaces are allowed.
+     *
+     * @throws CsvFormatException if it is not a whole number in int range
+     */
+    public int getInt(int field) {
+        long value = getLong(field);
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            throw new CsvFormatException("number out of range in column " + (field + 1), line);
+        }
+        return (int) value;
+    }
+
+    /**
+     * Parses the field as a long; surrounding spaces are allowed.
+     *
+     * @throws CsvFormatException if it is not a whole number
+     */
+    public long getLong(int field) {
+        checkField(field);
+        int p = skipSpaces(starts[field], ends[field]);
+        int end = trimEnd(p, ends[field]);
+
+        boolean negative = false;
+        if (p < end && (buffer.get(p) == '-' || buffer.get(p) == '+')) {
+            negative = buffer.get(p) == '-';
+            p++;
+        }
+        if (p == end) {
+            throw notANumber(field);
+        }
+
+        // Accumulate negatively so Long.MIN_VALUE parses too
+        long value = 0;
+        for (; p < end; p++) {
+            int digit = buffer.get(p) - '0';
+            if (digit < 0 || digit > 9) {
+                throw notANumber(field);
+            }
+            if (value < (Long.MIN_VALUE + digit) / 10) {
+                throw new CsvFormatException("number out of range in column " + (field + 1), line);
+            }
+            value = value * 10 - digit;
+        }
+        if (!negative && value == Long.MIN_VALUE) {
+            throw new CsvFormatException("number out of range in column " + (field + 1), line);
+        }
+        return negative ? value : -value;
+    }
+
+    /**
+     * Parses the field as an amount in pounds (e.g. "12.50") and returns
+     * pennies, with {@link Money#parse(ByteBuffer, int, int)}: plain decimals
+     * are read from the bytes without making a String.
+     *
+     * @throws CsvFormatException if it is not an amount
+     */
+    public long getPennies(int field) {
+        checkField(field);
+        int start = skipSpaces(starts[field], ends[field]);
+        int end = trimEnd(start, ends[field]);
+        try {
+            return Money.parse(buffer, start, end);
+        } catch (NumberFormatException | ArithmeticException e) {
+            throw notANumber(field);
+        }
+    }
+
+    // Reads a quoted field starting at the opening quote; returns the position after the closing one
+    private int readQuoted(int quote) {
+        int start = quote + 1;
+        int p = start;
+        boolean hasEscapes = false;
+        int linesInside = 0;
+
+        while (true) {
+            if (p >= limit) {
+                position = limit;
+                nextLine += linesInside;
+                throw new CsvFormatException("quoted field is never closed", line);
+            }
+            byte b = buffer.get(p);
+            if (b == '"') {
+                if (p + 1 < limit && buffer.get(p + 1) == '"') {
+                    hasEscapes = true;
+                    p += 2;
+                    continue;
+                }
+                break;
+            }
+            if (b == '\n') {
+                linesInside++;
+            }
+            p++;
+        }
+        nextLine += linesInside;
+        addField(start, p, hasEscapes);
+        p++; // closing quote
+
+        if (p < limit && buffer.get(p) == '\r') {
+            p++;
+        }
+        if (p < limit && buffer.get(p) != ',' && buffer.get(p) != '\n') {
+            // Skip the rest of the row so the next call starts cleanly
+            while (p < limit && buffer.get(p) != '\n') {
+                p++;
+            }
+            position = p < limit ? p + 1 : p;
+            if (p < limit) {
+                nextLine++;
+            }
+            throw new CsvFormatException("text after closing quote in column " + fieldCount, line);
+        }
+        return p;
+    }
+
+    private void addField(int start, int end, boolean hasEscapes) {
+        if (fieldCount == starts.length) {
+            starts = Arrays.copyOf(starts, fieldCount * 2);
+            ends = Arrays.copyOf(ends, fieldCount * 2);
+            escaped = Arrays.copyOf(escaped, fieldCount * 2);
+        }
+        starts[fieldCount] = start;
+        ends[fieldCount] = end;
+        escaped[fieldCount] = hasEscapes;
+        fieldCount++;
+    }
+
+    private void checkField(int field) {
+        if (field < 0 || field >= fieldCount) {
+            throw new CsvFormatException("missing column " + (field + 1), line);
+        }
+    }
+
+    private int skipSpaces(int p, int end) {
+        while (p < end && buffer.get(p) == ' ') {
+            p++;
+        }
+        return p;
+    }
+
+    private int trimEnd(int start, int end) {
+        while (end > start && buffer.get(end - 1) == ' ') {
+            end--;
+        }
+        return end;
+    }
+
+    private CsvFormatException notANumber(int field) {
+        return new CsvFormatException("not a number in column " + (field + 1), line);
+    }
+}
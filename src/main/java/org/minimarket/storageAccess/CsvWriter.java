@@ -0,0 +1,102 @@
+package org.minimarket.storageAccess;
+
+import org.minimarket.utility.Money;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * CsvWriter writes rows that {@link CsvReader} reads back exactly.
+ *
+ * Text fields are quoted only when they need it (they contain a comma, a
+ * quote or a line break, or start or end with a space), so ordinary files
+ * look the same as before. Numbers and amounts are written as they are.
+ */
+public class CsvWriter implements Closeable {
+
+    private final Writer out;
+    private final StringBuilder row = new StringBuilder(128);
+    private int fields;
+
+    /**
+     * @param out where rows are written; closed with this writer
+     */
+    public CsvWriter(Writer out) {
+        this.out = out;
+    }
+
+    /** Adds a text field to the current row. */
+    public CsvWriter field(String text) {
+        separate();
+        if (needsQuotes(text)) {
+            row.append('"');
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                if (c == '"') {
+                    row.append('"');
+                }
+                row.append(c);
+            }
+            row.append('"');
+        } else {
+            row.append(text);
+        }
+        return this;
+    }
+
+    /** Adds a whole number field to the current row. */
+    public CsvWriter field(long value) {
+        separate();
+        row.append(value);
+        return this;
+    }
+
+    /** Adds an amount in pennies, written in pounds with two decimals. */
+    public CsvWriter pennies(long pennies) {
+        separate();
+        Money.appendTo(row, pennies);
+        return this;
+    }
+
+    /** Writes a line that is not split into fields, e.g. a header. */
+    public void line(String text) throws IOException {
+        out.write(text);
+        out.write('\n');
+    }
+
+    /** Ends the current row. */
+    public void endRow() throws IOException {
+        row.append('\n');
+        out.append(row);
+        row.setLength(0);
+        fields = 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    private void separate() {
+        if (fields++ > 0) {
+            row.append(',');
+        }
+    }
+
+    private static boolean needsQuotes(String text) {
+        if (text.isEmpty()) {
+            return false;
+        }
+        if (text.charAt(0) == ' ' || text.charAt(text.length() - 1) == ' ' || text.charAt(0) == '"') {
+            return true;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                return true;
+            }
+        }
+        return false;
+    }
+}
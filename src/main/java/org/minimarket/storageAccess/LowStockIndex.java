@@ -0,0 +1,132 @@
+package org.minimarket.storageAccess;
+
+import org.minimarket.catalogue.Product;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * LowStockIndex keeps products ordered by how far their stock is above
+ * their reorder point ({@link Product#getStockSlack()}), lowest first.
+ *
+ * A product is low when its slack is negative, i.e. it has fewer units than
+ * its reorder point. Because the low products sit at the front of the order,
+ * listing the k most urgent ones costs O(k + log n) instead of a scan.
+ *
+ * The catalogue calls {@link #update} whenever a product's stock changes,
+ * which may happen on any thread (tills reserve stock concurrently), so the
+ * index is synchronized. Each update re-reads the product's current stock,
+ * so updates that arrive out of order still leave the right position.
+ * Listeners are told when a product becomes low or stops being low; they are
+ * called on the thread that changed the stock, outside the index lock.
+ */
+public class LowStockIndex {
+
+    /** Told when a product's stock crosses its reorder point. */
+    public interface Listener {
+        /**
+         * @param product the product whose stock changed
+         * @param low     true if it is now below its reorder point, false if it was restocked
+         */
+        void reorderPointCrossed(Product product, boolean low);
+    }
+
+    // A product's place in the order; slack is only changed while it is out of the set
+    private static class Entry {
+        final Product product;
+        final long sequence;
+        int slack;
+
+        Entry(Product product, long sequence) {
+            this.product = product;
+            this.sequence = sequence;
+            this.slack = product.getStockSlack();
+        }
+    }
+
+    private final TreeSet<Entry> bySlack = new TreeSet<>(
+            Comparator.comparingInt((Entry e) -> e.slack).thenComparingLong(e -> e.sequence));
+    private final Map<Product, Entry> entries = new IdentityHashMap<>();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private long nextSequence;
+
+    /**
+     * Adds a product at its current stock. No event is raised.
+     */
+    public synchronized void add(Product product) {
+        if (entries.containsKey(product)) {
+            return;
+        }
+        Entry entry = new Entry(product, nextSequence++);
+        entries.put(product, entry);
+        bySlack.add(entry);
+    }
+
+    public synchronized void remove(Product product) {
+        Entry entry = entries.remove(product);
+        if (entry != null) {
+            bySlack.remove(entry);
+        }
+    }
+
+    /**
+     * Moves a product to match its current stock and reorder point, and
+     * tells the listeners if it crossed the reorder point.
+     */
+    public void update(Product product) {
+        boolean crossed;
+        boolean low;
+        synchronized (this) {
+            Entry entry = entries.get(product);
+            if (entry == null) {
+                return;
+            }
+            boolean wasLow = entry.slack < 0;
+            bySlack.remove(entry);
+            entry.slack = product.getStockSlack();
+            bySlack.add(entry);
+
+            low = entry.slack < 0;
+            crossed = low != wasLow;
+        }
+
+        if (crossed) {
+            for (Listener listener : listeners) {
+                listener.reorderPointCrossed(product, low);
+            }
+        }
+    }
+
+    /**
+     * Products below their reorder point, most urgent first.
+     *
+     * @param limit the most products to return
+     */
+    public synchronized List<Product> getLowStock(int limit) {
+        List<Product> low = new ArrayList<>();
+        for (Entry entry : bySlack) {
+            if (entry.slack >= 0 || low.size() == limit) {
+                break;
+            }
+            low.add(entry.product);
+        }
+        return low;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+}
@@ -0,0 +1,389 @@
+package org.minimarket.storageAccess;
+
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+import org.minimarket.catalogue.Product;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * ProductCatalogue keeps hash indexes over the shared product list so that
+ * controllers can look products up without scanning the whole catalogue.
+ *
+ * Five indexes are maintained:
+ *  - a normalized-name index (name → product) used for cart lookups.
+ *  - a category index (category → products) used by the category filter.
+ *  - a {@link ProductSearchIndex} over names and categories used by search.
+ *  - a {@link LowStockIndex} ordering products by stock above their reorder
+ *    point, used by the low-stock view and reorder alerts. Products tell the
+ *    catalogue about every stock change, so it stays current on its own.
+ *  - {@link CategoryFacets}, the product and in-stock counts per category
+ *    shown by the category filter.
+ *
+ * Every addition, removal, stock change and price change made through the
+ * catalogue is also published on its {@link CatalogueEventBus}, so views can
+ * patch the products that changed instead of redrawing everything.
+ *
+ * The indexes follow the backing ObservableList through a ListChangeListener,
+ * so adding or removing products through ProductFileManager keeps them in sync.
+ * Product setters do not notify anyone, so edits that change a name or category
+ * must go through {@link #updateProduct} instead of calling the setters directly.
+ *
+ * The catalogue is also where stock is reserved. {@link #reserve} takes stock
+ * with a compare-and-set loop on the product's quantity, so two tills selling
+ * the same product can never take more than is on the shelf, and no lock is
+ * held while they do it. {@link #reserveAll} reserves a whole basket or none of it.
+ */
+public class ProductCatalogue {
+
+    /** The shared product list this catalogue indexes. */
+    private final ObservableList<Product> products;
+
+    /** Normalized product name → products with that name (normally just one). */
+    private final Map<String, List<Product>> byName = new HashMap<>();
+
+    /** Category → products in that category, in insertion order. */
+    private final Map<String, Set<Product>> byCategory = new LinkedHashMap<>();
+
+    /** Gram index over names and categories for as-you-type search. */
+    private final ProductSearchIndex searchIndex =
+            new ProductSearchIndex(key -> byName.getOrDefault(key, Collections.emptyList()));
+
+    /** Products ordered by stock above their reorder point. */
+    private final LowStockIndex lowStock = new LowStockIndex();
+
+    /** Product and in-stock counts per category. */
+    private final CategoryFacets facets = new CategoryFacets();
+
+    /** Per-product changes for views, delivered once per pulse. */
+    private final CatalogueEventBus events;
+
+    /** Registered on every product in the catalogue. */
+    private final Product.StockListener stockListener = this::stockChanged;
+
+    /**
+     * Creates a catalogue over the given list and indexes its current contents.
+     *
+     * @param products the observable product list to index
+     */
+    public ProductCatalogue(ObservableList<Product> products) {
+        this(products, new CatalogueEventBus());
+    }
+
+    /**
+     * @param products the observable product list to index
+     * @param events   where changes are published
+     */
+    ProductCatalogue(ObservableList<Product> products, CatalogueEventBus events) {
+        this.products = products;
+        this.events = events;
+        for (Product p : products) {
+            index(p);
+        }
+        products.addListener((ListChangeListener<Product>) change -> {
+            while (change.next()) {
+                if (change.wasPermutated()) {
+                    continue;
+                }
+                for (Product removed : change.getRemoved()) {
+                    unindex(removed);
+                    events.productRemoved(removed);
+                }
+                for (Product added : change.getAddedSubList()) {
+                    index(added);
+                    events.productAdded(added);
+                }
+            }
+        });
+    }
+
+    /**
+     * Normalizes a product name the same way product names are stored:
+     * trimmed, lower case and with all whitespace removed.
+     *
+     * @param name the raw name
+     * @return the normalized key, or an empty string for null
+     */
+    public static String normalize(String name) {
+        if (name == null) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder(name.length());
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (!Character.isWhitespace(c)) {
+                sb.append(Character.toLowerCase(c));
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Finds a product by name, ignoring case and whitespace.
+     *
+     * @param name the product name to look up
+     * @return the matching product, or null if there is none
+     */
+    public Product findByName(String name) {
+        List<Product> matches = byName.get(normalize(name));
+        return matches == null ? null : matches.get(0);
+    }
+
+    /**
+     * Returns every product in the given category.
+     *
+     * @param category the category name (case-sensitive, as stored)
+     * @return an unmodifiable view of the products in that category
+     */
+    public Collection<Product> getByCategory(String category) {
+        Set<Product> members = byCategory.get(category);
+        return members == null ? Collections.emptySet() : Collections.unmodifiableSet(members);
+    }
+
+    /**
+     * Finds products by part of their name or category, best matches first.
+     *
+     * @param query    what the user typed
+     * @param category only search this category, or null for all
+     * @param limit    the most results to return
+     * @return the ranked matches; empty for a blank query
+     */
+    public List<Product> search(String query, String category, int limit) {
+        return searchIndex.search(query, category, limit);
+    }
+
+    /**
+     * Products below their reorder point, most urgent first.
+     *
+     * @param limit the most products to return
+     */
+    public List<Product> getLowStock(int limit) {
+        return lowStock.getLowStock(limit);
+    }
+
+    /**
+     * Adds a listener told when a product's stock falls below, or climbs back
+     * to, its reorder point. It is called on the thread that changed the stock.
+     */
+    public void addReorderListener(LowStockIndex.Listener listener) {
+        lowStock.addListener(listener);
+    }
+
+    public void removeReorderListener(LowStockIndex.Listener listener) {
+        lowStock.removeListener(listener);
+    }
+
+    /**
+     * Product and in-stock counts for every category, in the order the
+     * categories were first seen.
+     */
+    public List<CategoryFacets.Facet> getCategoryFacets() {
+        return facets.getFacets();
+    }
+
+    /**
+     * Product and in-stock counts across the whole catalogue.
+     *
+     * @param label the name to give the total, e.g. "All"
+     */
+    public CategoryFacets.Facet getTotalFacet(String label) {
+        return facets.getTotal(label);
+    }
+
+    /**
+     * Adds a listener told when any category count changes, e.g. a category
+     * appears or a product sells out. It may be called on any thread.
+     */
+    public void addFacetListener(CategoryFacets.Listener listener) {
+        facets.addListener(listener);
+    }
+
+    public void removeFacetListener(CategoryFacets.Listener listener) {
+        facets.removeListener(listener);
+    }
+
+    /**
+     * Adds a listener told which products were added, removed, restocked or
+     * repriced. Calls are made on the JavaFX thread, at most once per pulse.
+     */
+    public void addEventListener(CatalogueEventBus.Listener listener) {
+        events.addListener(listener);
+    }
+
+    public void removeEventListener(CatalogueEventBus.Listener listener) {
+        events.removeListener(listener);
+    }
+
+    /**
+     * Returns all known categories in the order they were first seen.
+     *
+     * @return a new list of category names
+     */
+    public List<String> getCategories() {
+        return new ArrayList<>(byCategory.keySet());
+    }
+
+    /**
+     * Returns the indexed product list.
+     *
+     * @return the shared ObservableList
+     */
+    public ObservableList<Product> getProducts() {
+        return products;
+    }
+
+    /**
+     * Edits a product and moves it between index buckets if its name or
+     * category changed. Null arguments leave the corresponding field as it is.
+     *
+     * @param product  the product to edit
+     * @param name     the new name, or null
+     * @param price    the new price, or null
+     * @param quantity the new quantity, or null
+     * @param category the new category, or null
+     */
+    public void updateProduct(Product product, String name, Double price, Integer quantity, String category) {
+        String oldName = product.getName();
+        String oldCategory = product.getCategory();
+        long oldPrice = product.getPricePennies();
+
+        // The low-stock index stays attached, so a quantity edit can raise a reorder event
+        unindexText(product);
+        if (name != null) product.setName(name);
+        if (price != null) product.setPrice(price);
+        if (quantity != null) product.setQuantity(quantity);
+        if (category != null) product.setCategory(category);
+        indexText(product);
+
+        // A new name or category moves the product between lists, so views re-place it
+        if (!Objects.equals(oldName, product.getName()) || !Objects.equals(oldCategory, product.getCategory())) {
+            events.productRemoved(product);
+            events.productAdded(product);
+        }
+        if (product.getPricePennies() != oldPrice) {
+            events.priceChanged(product, oldPrice, product.getPricePennies());
+        }
+    }
+
+    /**
+     * Takes stock of one product if enough is left.
+     * Safe to call from several threads at once; the quantity never goes below zero.
+     *
+     * @param product  the product to take stock from
+     * @param quantity the number of units to take (must be positive)
+     * @return true if the stock was taken, false if there was not enough
+     */
+    public boolean reserve(Product product, int quantity) {
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("Quantity to reserve must be positive: " + quantity);
+        }
+        while (true) {
+            int available = product.getQuantity();
+            if (available < quantity) {
+                return false;
+            }
+            if (product.compareAndSetQuantity(available, available - quantity)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Takes stock for a whole basket, or none of it.
+     * Lines are reserved one by one; if any line is short, the lines already
+     * taken are put back before returning. Another till may briefly see the
+     * lower stock of a basket that is being rolled back, but stock is never
+     * oversold.
+     *
+     * @param basket product → units wanted
+     * @return true if every line was reserved, false if nothing was
+     */
+    public boolean reserveAll(Map<Product, Integer> basket) {
+        List<Map.Entry<Product, Integer>> taken = new ArrayList<>(basket.size());
+        for (Map.Entry<Product, Integer> line : basket.entrySet()) {
+            if (!reserve(line.getKey(), line.getValue())) {
+                for (Map.Entry<Product, Integer> undo : taken) {
+                    release(undo.getKey(), undo.getValue());
+                }
+                return false;
+            }
+            taken.add(line);
+        }
+        return true;
+    }
+
+    /**
+     * Puts reserved stock back, e.g. when an item leaves the cart.
+     *
+     * @param product  the product to return stock to
+     * @param quantity the number of units to return
+     */
+    public void release(Product product, int quantity) {
+        product.addQuantity(quantity);
+    }
+
+    // Keeps the stock-based indexes current and tells the views
+    private void stockChanged(Product product, int delta) {
+        lowStock.update(product);
+        facets.stockChanged(product);
+        if (delta != 0) {
+            events.stockChanged(product, delta);
+        }
+    }
+
+    // Adds a product to every index and starts listening to its stock
+    private void index(Product p) {
+        indexText(p);
+        lowStock.add(p);
+        p.setStockListener(stockListener);
+    }
+
+    // Removes a product from every index
+    private void unindex(Product p) {
+        if (p.getStockListener() == stockListener) {
+            p.setStockListener(null);
+        }
+        lowStock.remove(p);
+        unindexText(p);
+    }
+
+    // Adds a product to the text indexes. The first product with a given name wins lookups.
+    private void indexText(Product p) {
+        byName.computeIfAbsent(normalize(p.getName()), n -> new ArrayList<>(1)).add(p);
+        byCategory.computeIfAbsent(p.getCategory(), c -> new LinkedHashSet<>()).add(p);
+        searchIndex.add(p);
+        facets.add(p);
+    }
+
+    // Removes a product from the text indexes and drops empty categories.
+    private void unindexText(Product p) {
+        searchIndex.remove(p);
+        facets.remove(p);
+
+        String key = normalize(p.getName());
+        List<Product> matches = byName.get(key);
+        if (matches != null) {
+            matches.remove(p);
+            if (matches.isEmpty()) {
+                byName.remove(key);
+            }
+        }
+
+        Set<Product> members = byCategory.get(p.getCategory());
+        if (members != null) {
+            members.remove(p);
+            if (members.isEmpty()) {
+                byCategory.remove(p.getCategory());
+            }
+        }
+    }
+}
@@ -4,98 +4,152 @@ import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import org.minimarket.catalogue.Product;
 
-import java.io.*;
-import java.nio.charset.StandardCharsets;
+import java.util.List;
 
 /**
  * ProductFileManager handles loading, saving, and sharing the list of products
  * between different controllers
  * It maintains a single ObservableList that stays synchronized across the app.
+ *
+ * Storage is delegated to the {@link ProductRepository} chosen by
+ * {@link Repositories}: products.csv with a stock journal by default, a
+ * fixed-width {@link BinaryProductStore}, or the embedded SQL database.
+ *
+ * Writes go through a {@link ProductWriteBehind}: changes are merged and
+ * written on a background thread shortly after the till goes quiet, so the
+ * FX thread never waits for the disk. Call {@link #flush()} where the
+ * changes must be stored before carrying on; the JVM shutdown flushes too.
+ * Elements are added to and removed from the shared list only while
+ * synchronized on it, so the background thread can copy it safely.
  */
 public class ProductFileManager {
 
-    private static final String PRODUCT_FILE = "src/main/resources/data/products.csv";
-
     private static final ObservableList<Product> products = FXCollections.observableArrayList();
 
+    /** Hash indexes over the shared list, kept in sync by the catalogue itself. */
+    private static final ProductCatalogue catalogue = new ProductCatalogue(products);
+
+    /** Quiet time after the last change before the changes are written. */
+    private static final long WRITE_DEBOUNCE_MILLIS = 200;
+
+    /** Longest a change waits to be written while changes keep coming. */
+    private static final long WRITE_MAX_DELAY_MILLIS = 1000;
+
+    private static ProductWriteBehind writeBehind;
+
     public static ObservableList<Product> getProducts() {
         return products;
     }
 
     /**
-     * Loads products from CSV into the shared ObservableList.
+     * Returns the indexed view of the shared product list.
+     * Use this for name and category lookups instead of scanning getProducts().
+     */
+    public static ProductCatalogue getCatalogue() {
+        return catalogue;
+    }
+
+    /**
+     * Loads products from the repository into the shared ObservableList.
      * Clears previous data before reloading.
      */
     public static void loadProducts() {
-        products.clear();
-
-        try (BufferedReader br = new BufferedReader(new InputStreamReader(
-                new FileInputStream(PRODUCT_FILE), StandardCharsets.UTF_8))) {
-
-            String line;
-            while ((line = br.readLine()) != null) {
-                String[] parts = line.split(",");
-
-                // name, price, quantity, category
-                if (parts.length == 4) {
-                    String name = parts[0]
-                            .trim()
-                            .toLowerCase()
-                            .replaceAll("\\s+", "");
-
-                    double price = Double.parseDouble(parts[1]);
-                    int quantity = Integer.parseInt(parts[2]);
-                    String category = parts[3].trim();
-
-                    String imagePath = "/images/" + name + ".png";
-
-                    if (ProductFileManager.class.getResource(imagePath) == null) {
-                        imagePath = "/images/default.png";
-                    }
+        List<Product> loaded = writeBehind().loadProducts();
+        // Replace the contents in one change so the catalogue re-indexes once
+        synchronized (products) {
+            products.setAll(loaded);
+        }
+    }
 
-                    products.add(new Product(name, price, quantity, category, imagePath));
+    /**
+     * Saves all products from the ObservableList.
+     * The list is copied and written on the background thread.
+     */
+    public static void saveProducts() {
+        writeBehind().saveProducts(products);
+    }
 
+    /**
+     * Writes every pending change before returning.
+     */
+    public static void flush() {
+        writeBehind().flush();
+    }
 
-                }
-            }
-        } catch (IOException e) {
-            System.err.println("Error loading products: " + e.getMessage());
-        }
+    /**
+     * The write-behind in front of the repository, for its metrics
+     * (pending changes, flush count and flush latency).
+     */
+    public static ProductWriteBehind getWriteBehind() {
+        return writeBehind();
     }
 
+    /**
+     * Takes stock of one product through the catalogue and records the change.
+     * No write of the catalogue can fall between the two, so a snapshot never
+     * holds a change that is still waiting to be journalled.
+     *
+     * @return true if the stock was taken, false if there was not enough
+     */
+    public static boolean reserveStock(Product product, int quantity) {
+        return writeBehind().changeStock(product,
+                () -> catalogue.reserve(product, quantity) ? -quantity : 0) != 0;
+    }
 
     /**
-     * Saves all products from the ObservableList to the CSV file.
+     * Puts stock back through the catalogue and records the change.
      */
-    public static void saveProducts() {
-        try (BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(
-                new FileOutputStream(PRODUCT_FILE), StandardCharsets.UTF_8))) {
-
-            for (Product p : products) {
-                bw.write(p.getName() + "," +
-                        p.getPrice() + "," +
-                        p.getQuantity() + "," +
-                        p.getCategory());
-                bw.newLine();
-            }
-        } catch (IOException e) {
-            System.err.println("Error saving products: " + e.getMessage());
-        }
+    public static void releaseStock(Product product, int quantity) {
+        writeBehind().changeStock(product, () -> {
+            catalogue.release(product, quantity);
+            return quantity;
+        });
     }
 
     /**
-     * Adds a product to the shared list and saves immediately.
+     * Adds a product to the shared list and queues it to be saved.
      */
     public static void addProduct(Product product) {
-        products.add(product);
-        saveProducts();
+        synchronized (products) {
+            products.add(product);
+        }
+        writeBehind().saveProduct(null, product);
     }
 
     /**
-     * Removes a product from the shared list and saves immediately.
+     * Removes a product from the shared list and queues its removal.
      */
     public static void removeProduct(Product product) {
-        products.remove(product);
-        saveProducts();
+        synchronized (products) {
+            products.remove(product);
+        }
+        writeBehind().removeProduct(product);
+    }
+
+    /**
+     * Edits a product through the catalogue (so its indexes follow the change)
+     * and queues it to be saved. Null arguments leave that field unchanged.
+     */
+    public static void editProduct(Product product, String name, Double price, Integer quantity, String category) {
+        String oldName = product.getName();
+        // A quantity edit is stored as a stock change, so stores shared with
+        // other processes add it to their quantity rather than overwrite it
+        writeBehind().changeStock(product, () -> {
+            int before = product.getQuantity();
+            catalogue.updateProduct(product, name, price, quantity, category);
+            return product.getQuantity() - before;
+        });
+        writeBehind().saveProduct(oldName, product);
+    }
+
+    // Creates the write-behind on first use and flushes it when the JVM exits
+    private static synchronized ProductWriteBehind writeBehind() {
+        if (writeBehind == null) {
+            ProductWriteBehind created = new ProductWriteBehind(
+                    Repositories.products(), WRITE_DEBOUNCE_MILLIS, WRITE_MAX_DELAY_MILLIS);
+            Runtime.getRuntime().addShutdownHook(new Thread(created::close));
+            writeBehind = created;
+        }
+        return writeBehind;
     }
 }
@@ -0,0 +1,61 @@
+package org.minimarket.storageAccess;
+
+import org.minimarket.catalogue.Product;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Where the product catalogue is stored.
+ *
+ * {@link ProductFileManager} keeps the shared in-memory list and indexes and
+ * passes every change to the repository chosen by {@link Repositories}, so
+ * implementations only deal with persistence. Errors are reported on
+ * System.err; the in-memory catalogue stays as it is.
+ */
+public interface ProductRepository {
+
+    /**
+     * Reads every stored product.
+     */
+    List<Product> loadProducts();
+
+    /**
+     * True if no products have been stored yet.
+     */
+    boolean isEmpty();
+
+    /**
+     * Replaces the stored catalogue with the given products.
+     */
+    void saveProducts(List<Product> products);
+
+    /**
+     * Stores one new or edited product.
+     *
+     * @param oldName the product's name before an edit that renamed it, or null
+     * @param product the product as it is now
+     */
+    void saveProduct(String oldName, Product product);
+
+    void removeProduct(Product product);
+
+    /**
+     * Records a stock change that was already applied to the product in memory.
+     *
+     * @param product the product whose quantity changed
+     * @param delta   the change in units (negative when stock is taken)
+     */
+    void recordStockChange(Product product, int delta);
+
+    /**
+     * Records several stock changes that were already applied in memory.
+     * Repositories that take snapshots of the live catalogue override this
+     * so that no snapshot is taken until every change in the batch is stored.
+     *
+     * @param deltas product → change in units
+     */
+    default void recordStockChanges(Map<Product, Integer> deltas) {
+        deltas.forEach(this::recordStockChange);
+    }
+}
@@ -0,0 +1,327 @@
+package org.minimarket.storageAccess;
+
+import org.minimarket.catalogue.Product;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.IntPredicate;
+
+/**
+ * ProductSearchIndex finds products by part of their name or category
+ * without looking at every product.
+ *
+ * Every product gets an id in the order it was added. Its normalized name
+ * (see {@link ProductCatalogue#normalize}) is broken into grams, and each
+ * gram keeps a sorted list of the ids whose name contains it:
+ *  - every three-letter substring (trigram).
+ *  - the first one, two and three letters, marked as anchored to the start.
+ * Categories are few, so each normalized category simply keeps the list of
+ * its ids.
+ *
+ * Results are ranked in tiers: exact name, then names starting with the
+ * query, then names containing it, then products whose category matches.
+ * Each tier walks the smallest gram list that can hold its matches,
+ * galloping through the other lists in step (or testing a bit, for lists
+ * holding at least one id in 32), checks the text itself, and
+ * stops as soon as enough results are found, so a broad query costs about
+ * as much as the results it returns.
+ * A chosen category's id list joins each walk.
+ * Queries of one or two letters match the start of a name or category only.
+ * Within a tier, results keep catalogue order.
+ *
+ * Removing a product only marks its id dead. Dead ids are skipped by
+ * queries and dropped when the index is compacted, which happens once they
+ * outnumber the live ones, so bulk reloads stay linear.
+ *
+ * Not thread safe; it is maintained by {@link ProductCatalogue} on the same
+ * thread as the product list.
+ */
+public class ProductSearchIndex {
+
+    /** Dead ids tolerated before compaction is considered. */
+    private static final int COMPACT_MIN_DEAD = 1024;
+
+    // Marks grams anchored to the start of a name so they cannot clash with trigrams
+    private static final char ANCHOR = '\u0001';
+
+    // Growable sorted int list; ids are only ever appended in increasing order
+    private static class Postings {
+        int[] ids = new int[2];
+        int size;
+        // One bit per id, kept once the list is dense; no larger than ids then
+        long[] bits;
+
+        void add(int id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+            if (bits != null) {
+                setBit(id);
+            }
+        }
+
+        // Holds at least one id in 32, so a bit set costs no more than the list
+        boolean dense(int idCount) {
+            return size > 0 && (long) size * 32 >= idCount;
+        }
+
+        void indexBits() {
+            bits = new long[(ids[size - 1] >>> 6) + 1];
+            for (int i = 0; i < size; i++) {
+                setBit(ids[i]);
+            }
+        }
+
+        boolean hasBit(int id) {
+            int word = id >>> 6;
+            return word < bits.length && (bits[word] & (1L << id)) != 0;
+        }
+
+        private void setBit(int id) {
+            int word = id >>> 6;
+            if (word >= bits.length) {
+                bits = Arrays.copyOf(bits, Math.max(word + 1, bits.length * 2));
+            }
+            bits[word] |= 1L << id;
+        }
+
+        // Position of the first id >= the given one, searching forward from 'from'.
+        // Gallops first, so walking a list in order touches memory mostly in order.
+        int seek(int from, int id) {
+            int lo = from;
+            int hi = from;
+            int step = 1;
+            while (hi < size && ids[hi] < id) {
+                lo = hi + 1;
+                hi += step;
+                step <<= 1;
+            }
+            int found = Arrays.binarySearch(ids, lo, Math.min(hi + 1, size), id);
+            return found >= 0 ? found : -found - 1;
+        }
+    }
+
+    private static final Postings EMPTY = new Postings();
+
+    private final Function<String, List<Product>> exactMatches;
+    private final List<Product> products = new ArrayList<>();
+    private final List<String> names = new ArrayList<>();
+    private final Map<Product, Integer> ids = new IdentityHashMap<>();
+    private final Map<String, Postings> grams = new HashMap<>();
+    private final Map<String, Postings> categories = new LinkedHashMap<>();
+    private int dead;
+
+    /**
+     * @param exactMatches finds the products with exactly this normalized name;
+     *                     the catalogue already keeps that index
+     */
+    public ProductSearchIndex(Function<String, List<Product>> exactMatches) {
+        this.exactMatches = exactMatches;
+    }
+
+    /**
+     * Adds a product to the index.
+     */
+    public void add(Product product) {
+        if (ids.containsKey(product)) {
+            return;
+        }
+        if (dead > COMPACT_MIN_DEAD && dead > ids.size()) {
+            compact();
+        }
+
+        int id = products.size();
+        String name = ProductCatalogue.normalize(product.getName());
+        products.add(product);
+        names.add(name);
+        ids.put(product, id);
+
+        if (!name.isEmpty()) {
+            for (int i = 1; i <= Math.min(3, name.length()); i++) {
+                addGram(id, ANCHOR + name.substring(0, i));
+            }
+            for (int i = 0; i + 3 <= name.length(); i++) {
+                addGram(id, name.substring(i, i + 3));
+            }
+        }
+        categories.computeIfAbsent(ProductCatalogue.normalize(product.getCategory()), c -> new Postings()).add(id);
+    }
+
+    /**
+     * Removes a product from the index. Its grams are cleaned up lazily.
+     */
+    public void remove(Product product) {
+        Integer id = ids.remove(product);
+        if (id != null) {
+            products.set(id, null);
+            dead++;
+        }
+    }
+
+    /** Number of products in the index. */
+    public int size() {
+        return ids.size();
+    }
+
+    /**
+     * Finds products whose name or category contains the query, best matches first.
+     * Queries of one or two letters match the start of a name or category only.
+     *
+     * @param query    what the user typed; case and whitespace are ignored
+     * @param category only return products in this category, or null for all
+     * @param limit    the most results to return
+     * @return the ranked matches; empty for a blank query
+     */
+    public List<Product> search(String query, String category, int limit) {
+        List<Product> results = new ArrayList<>();
+        String q = ProductCatalogue.normalize(query);
+        if (q.isEmpty() || limit <= 0) {
+            return results;
+        }
+        boolean prefixOnly = q.length() < 3;
+        // With a category chosen, its id list joins every walk below
+        String categoryKey = category != null ? ProductCatalogue.normalize(category) : null;
+        Postings categoryIds = categoryKey != null ? categories.getOrDefault(categoryKey, EMPTY) : null;
+
+        // Exact name
+        for (Product p : exactMatches.apply(q)) {
+            if (results.size() < limit && ids.containsKey(p) && inCategory(p, category)) {
+                results.add(p);
+            }
+        }
+
+        // Name starts with the query
+        collect(postings(q, true, categoryIds), category, limit, results, id -> {
+            String name = names.get(id);
+            return name.startsWith(q) && !name.equals(q);
+        });
+
+        // Name contains the query further in
+        if (!prefixOnly) {
+            collect(postings(q, false, categoryIds), category, limit, results, id -> {
+                String name = names.get(id);
+                return !name.startsWith(q) && name.contains(q);
+            });
+        }
+
+        // Only the category matches
+        for (Map.Entry<String, Postings> e : categories.entrySet()) {
+            String c = e.getKey();
+            if (categoryKey != null && !categoryKey.equals(c)) {
+                continue;
+            }
+            if (prefixOnly ? c.startsWith(q) : c.contains(q)) {
+                collect(new Postings[] { e.getValue() }, category, limit, results, id -> {
+                    String name = names.get(id);
+                    return prefixOnly ? !name.startsWith(q) : !name.contains(q);
+                });
+            }
+        }
+        return results;
+    }
+
+    /** Drops everything from the index. */
+    public void clear() {
+        products.clear();
+        names.clear();
+        ids.clear();
+        grams.clear();
+        categories.clear();
+        dead = 0;
+    }
+
+    // Walks the smallest list, keeping ids in every other list that pass the check
+    private void collect(Postings[] lists, String category, int limit, List<Product> results, IntPredicate matches) {
+        if (results.size() >= limit) {
+            return;
+        }
+        Arrays.sort(lists, (a, b) -> Integer.compare(a.size, b.size));
+        Postings smallest = lists[0];
+        int[] cursors = new int[lists.length];
+        // Probing a dense list by bit is far cheaper than seeking through it
+        for (int l = 1; l < lists.length; l++) {
+            if (lists[l].bits == null && lists[l].dense(products.size())) {
+                lists[l].indexBits();
+            }
+        }
+
+        candidates:
+        for (int i = 0; i < smallest.size; i++) {
+            int id = smallest.ids[i];
+            for (int l = 1; l < lists.length; l++) {
+                Postings list = lists[l];
+                if (list.bits != null) {
+                    if (!list.hasBit(id)) {
+                        continue candidates;
+                    }
+                    continue;
+                }
+                cursors[l] = list.seek(cursors[l], id);
+                if (cursors[l] == list.size) {
+                    return;
+                }
+                if (list.ids[cursors[l]] != id) {
+                    continue candidates;
+                }
+            }
+            Product product = products.get(id);
+            if (product == null || !inCategory(product, category)) {
+                continue;
+            }
+            if (matches.test(id)) {
+                results.add(product);
+                if (results.size() == limit) {
+                    return;
+                }
+            }
+        }
+    }
+
+    // The gram lists a query needs: its anchored start and/or its trigrams, plus the category's ids if given
+    private Postings[] postings(String q, boolean anchored, Postings categoryIds) {
+        List<Postings> lists = new ArrayList<>();
+        if (categoryIds != null) {
+            lists.add(categoryIds);
+        }
+        if (anchored) {
+            lists.add(grams.getOrDefault(ANCHOR + q.substring(0, Math.min(3, q.length())), EMPTY));
+        }
+        for (int i = anchored ? 1 : 0; i + 3 <= q.length(); i++) {
+            lists.add(grams.getOrDefault(q.substring(i, i + 3), EMPTY));
+        }
+        return lists.toArray(new Postings[0]);
+    }
+
+    private static boolean inCategory(Product product, String category) {
+        return category == null || category.equals(product.getCategory());
+    }
+
+    private void addGram(int id, String gram) {
+        Postings postings = grams.computeIfAbsent(gram, g -> new Postings());
+        // A name can repeat a trigram; keep each id once
+        if (postings.size == 0 || postings.ids[postings.size - 1] != id) {
+            postings.add(id);
+        }
+    }
+
+    // Re-adds the live products with fresh ids, in their current order
+    private void compact() {
+        List<Product> live = new ArrayList<>(ids.size());
+        for (Product p : products) {
+            if (p != null) {
+                live.add(p);
+            }
+        }
+        clear();
+        for (Product p : live) {
+            add(p);
+        }
+    }
+}
@@ -0,0 +1,362 @@
+package org.minimarket.storageAccess;
+
+import org.minimarket.catalogue.Product;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntSupplier;
+
+/**
+ * ProductWriteBehind sits in front of another {@link ProductRepository} and
+ * writes to it later, on a background thread, instead of on the caller's
+ * thread.
+ *
+ * Each change marks the catalogue dirty and is merged into what is already
+ * waiting: stock deltas for a product are added up, a product saved several
+ * times is saved once, and a full save or a removal replaces everything
+ * before it. Ten scans of the same item therefore cost one write. A save
+ * keeps the product's deltas, since a store shared with other processes may
+ * leave the stored quantity alone on a save ({@link BinaryProductStore});
+ * only a renamed product's deltas are dropped, as its save writes the whole
+ * quantity under the new name.
+ *
+ * A flush starts once no change has arrived for the debounce delay, and at
+ * the latest the max delay after the first unwritten change. Call
+ * {@link #flush()} to write synchronously, e.g. when a checkout commits.
+ * Until a flush, changes exist only in memory.
+ *
+ * A flush takes the pending changes and copies every product they write
+ * ({@link Product#copy()}); a full save copies the list while synchronized on
+ * it, so code that adds or removes elements must hold the same lock. The
+ * batch is then written from the copies.
+ *
+ * A save must hold exactly the stock changes whose deltas are stored before
+ * it: a CSV save also empties the stock journal. So the copies are taken
+ * while no stock change is half done. {@link #changeStock} applies a change
+ * and queues its delta under a shared lock, and a flush holds that lock
+ * exclusively only while it takes the batch and copies the products. The
+ * batch's deltas are written before its saves. Writing happens after the
+ * lock is released, so a till taking stock never waits for the disk.
+ */
+public class ProductWriteBehind implements ProductRepository, AutoCloseable {
+
+    private final ProductRepository repository;
+    private final long debounceNanos;
+    private final long maxDelayNanos;
+    private final ScheduledExecutorService timer;
+
+    /** Changes not yet written; guarded by this object. */
+    private Pending pending = new Pending();
+    private ScheduledFuture<?> scheduledFlush;
+    private long firstDirtyNanos;
+    private boolean closed;
+
+    /** Held while a batch is written, so batches reach the repository in order. */
+    private final Object flushLock = new Object();
+
+    /** Shared by stock changes, exclusive while a batch is written. */
+    private final ReentrantReadWriteLock stockLock = new ReentrantReadWriteLock();
+
+    private final AtomicLong flushCount = new AtomicLong();
+    private final AtomicLong mutationsFlushed = new AtomicLong();
+    private final AtomicLong lastFlushNanos = new AtomicLong();
+    private final AtomicLong maxFlushNanos = new AtomicLong();
+    private final AtomicLong totalFlushNanos = new AtomicLong();
+
+    /**
+     * @param repository     where changes are written
+     * @param debounceMillis quiet time after the last change before a flush
+     * @param maxDelayMillis longest a change waits, however busy the till is
+     */
+    public ProductWriteBehind(ProductRepository repository, long debounceMillis, long maxDelayMillis) {
+        this.repository = repository;
+        this.debounceNanos = TimeUnit.MILLISECONDS.toNanos(debounceMillis);
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxDelayMillis);
+        this.timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "product-write-behind");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Writes anything pending first, so the result includes every change.
+     */
+    @Override
+    public List<Product> loadProducts() {
+        flush();
+        return repository.loadProducts();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        flush();
+        return repository.isEmpty();
+    }
+
+    /**
+     * Queues a save of the whole list. Changes made before it are dropped,
+     * because the list is copied when the batch is taken.
+     */
+    @Override
+    public void saveProducts(List<Product> products) {
+        boolean writeNow;
+        synchronized (this) {
+            int mutations = pending.mutations;
+            pending = new Pending();
+            pending.mutations = mutations;
+            pending.fullSave = products;
+            writeNow = markDirty();
+        }
+        if (writeNow) {
+            flush();
+        }
+    }
+
+    @Override
+    public void saveProduct(String oldName, Product product) {
+        boolean writeNow;
+        synchronized (this) {
+            if (pending.fullSave == null) {
+                // The first old name is the one the repository still has
+                if (!pending.saved.containsKey(product)) {
+                    pending.saved.put(product, oldName);
+                }
+                pending.removed.remove(product);
+            }
+            writeNow = markDirty();
+        }
+        if (writeNow) {
+            flush();
+        }
+    }
+
+    @Override
+    public void removeProduct(Product product) {
+        boolean writeNow;
+        synchronized (this) {
+            if (pending.fullSave == null) {
+                pending.deltas.remove(product);
+                pending.removed.add(product);
+            }
+            writeNow = markDirty();
+        }
+        if (writeNow) {
+            flush();
+        }
+    }
+
+    /**
+     * Adds the delta to the product's pending delta. Nothing is queued when a
+     * full save or a removal of the product is already waiting.
+     * Use {@link #changeStock} where a flush could run between changing the
+     * stock and calling this.
+     */
+    @Override
+    public void recordStockChange(Product product, int delta) {
+        if (queueStockChange(product, delta)) {
+            flush();
+        }
+    }
+
+    /**
+     * Changes a product's stock in memory and queues the change, with no
+     * flush able to run in between.
+     *
+     * @param product the product whose stock changes
+     * @param change  makes the change and returns its delta, or 0 if it made none
+     * @return the delta returned by the change
+     */
+    public int changeStock(Product product, IntSupplier change) {
+        int delta;
+        boolean writeNow = false;
+        stockLock.readLock().lock();
+        try {
+            delta = change.getAsInt();
+            if (delta != 0) {
+                writeNow = queueStockChange(product, delta);
+            }
+        } finally {
+            stockLock.readLock().unlock();
+        }
+        if (writeNow) {
+            flush();
+        }
+        return delta;
+    }
+
+    /**
+     * Writes everything pending before returning.
+     */
+    public void flush() {
+        synchronized (flushLock) {
+            Pending batch;
+            // No stock change is half done while the batch is taken and copied
+            stockLock.writeLock().lock();
+            try {
+                Pending taken;
+                synchronized (this) {
+                    taken = pending;
+                    pending = new Pending();
+                    if (scheduledFlush != null) {
+                        scheduledFlush.cancel(false);
+                        scheduledFlush = null;
+                    }
+                }
+                if (taken.mutations == 0) {
+                    return;
+                }
+                batch = freeze(taken);
+            } finally {
+                stockLock.writeLock().unlock();
+            }
+
+            long start = System.nanoTime();
+            try {
+                write(batch);
+            } catch (RuntimeException e) {
+                System.err.println("Error writing products: " + e.getMessage());
+            }
+            long elapsed = System.nanoTime() - start;
+
+            flushCount.incrementAndGet();
+            mutationsFlushed.addAndGet(batch.mutations);
+            lastFlushNanos.set(elapsed);
+            maxFlushNanos.accumulateAndGet(elapsed, Math::max);
+            totalFlushNanos.addAndGet(elapsed);
+        }
+    }
+
+    /** Changes made since the last flush started. */
+    public synchronized int getPendingMutations() {
+        return pending.mutations;
+    }
+
+    public long getFlushCount() {
+        return flushCount.get();
+    }
+
+    /** Changes written so far; divided by the flush count, how many each write absorbed. */
+    public long getMutationsFlushed() {
+        return mutationsFlushed.get();
+    }
+
+    public double getLastFlushMillis() {
+        return lastFlushNanos.get() / 1e6;
+    }
+
+    public double getMaxFlushMillis() {
+        return maxFlushNanos.get() / 1e6;
+    }
+
+    public double getAverageFlushMillis() {
+        long flushes = flushCount.get();
+        return flushes == 0 ? 0 : totalFlushNanos.get() / 1e6 / flushes;
+    }
+
+    /**
+     * Writes anything pending and stops the background thread. Changes made
+     * afterwards are written straight away.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+        }
+        flush();
+        timer.shutdown();
+    }
+
+    // Queues a delta; true if the caller should flush (once closed)
+    private boolean queueStockChange(Product product, int delta) {
+        synchronized (this) {
+            if (pending.fullSave == null && !pending.removed.contains(product)) {
+                pending.deltas.merge(product, delta, Integer::sum);
+            }
+            return markDirty();
+        }
+    }
+
+    // Counts a change and (re)schedules the flush; called holding this object's lock.
+    // Returns true once closed, when the caller should flush after releasing it.
+    private boolean markDirty() {
+        long now = System.nanoTime();
+        if (pending.mutations++ == 0) {
+            firstDirtyNanos = now;
+        }
+        if (closed) {
+            return true;
+        }
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+        }
+        long delay = Math.min(debounceNanos, firstDirtyNanos + maxDelayNanos - now);
+        scheduledFlush = timer.schedule(this::flush, Math.max(0, delay), TimeUnit.NANOSECONDS);
+        return false;
+    }
+
+    // Copies every product a batch writes, so it can be written while stock keeps
+    // changing. Zero deltas and a renamed product's deltas are dropped: the save
+    // under the new name already holds the whole quantity.
+    private static Pending freeze(Pending taken) {
+        Pending frozen = new Pending();
+        frozen.mutations = taken.mutations;
+        if (taken.fullSave != null) {
+            List<Product> copies;
+            synchronized (taken.fullSave) {
+                copies = new ArrayList<>(taken.fullSave.size());
+                for (Product product : taken.fullSave) {
+                    copies.add(product.copy());
+                }
+            }
+            frozen.fullSave = copies;
+            return frozen;
+        }
+        taken.deltas.forEach((product, delta) -> {
+            String oldName = taken.saved.get(product);
+            boolean renamed = oldName != null && !oldName.equals(product.getName());
+            if (delta != 0 && !renamed) {
+                frozen.deltas.put(product.copy(), delta);
+            }
+        });
+        taken.saved.forEach((product, oldName) -> frozen.saved.put(product.copy(), oldName));
+        for (Product product : taken.removed) {
+            frozen.removed.add(product.copy());
+        }
+        return frozen;
+    }
+
+    // A full save alone, or deltas before saves (renames included), removals last
+    private void write(Pending batch) {
+        if (batch.fullSave != null) {
+            repository.saveProducts(batch.fullSave);
+            return;
+        }
+        if (!batch.deltas.isEmpty()) {
+            repository.recordStockChanges(batch.deltas);
+        }
+        batch.saved.forEach((product, oldName) -> repository.saveProduct(oldName, product));
+        for (Product product : batch.removed) {
+            repository.removeProduct(product);
+        }
+    }
+
+    /** The coalesced changes of one flush. */
+    private static class Pending {
+        List<Product> fullSave;
+        final Map<Product, String> saved = new LinkedHashMap<>();
+        final Map<Product, Integer> deltas = new LinkedHashMap<>();
+        final Set<Product> removed = new LinkedHashSet<>();
+        int mutations;
+    }
+}
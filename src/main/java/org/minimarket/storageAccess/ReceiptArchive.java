@@ -0,0 +1,276 @@
+package org.minimarket.storageAccess;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * ReceiptArchive stores receipts back to back in a few large segment files
+ * instead of one small file per sale.
+ *
+ * Receipts are appended to the current segment ("segment-00000.dat", ...)
+ * until it passes a size limit, then a new segment is started. Each receipt
+ * gets an entry in an append-only index file, 32 bytes per receipt:
+ *
+ *      id (long), timestamp millis (long), segment (int), offset (long), length (int)
+ *
+ * Ids and timestamps only ever increase, so the index is kept in memory as
+ * sorted arrays and receipts are found by binary search, by id or by time.
+ * A receipt is written to its segment before its index entry, so a crash can
+ * leave unused bytes in a segment but never an entry pointing at missing data.
+ */
+public class ReceiptArchive implements AutoCloseable {
+
+    /** A receipt's place in the archive. */
+    public static class Entry {
+        private final long id;
+        private final long timestamp;
+        private final int length;
+
+        Entry(long id, long timestamp, int length) {
+            this.id = id;
+            this.timestamp = timestamp;
+            this.length = length;
+        }
+
+        public long getId() { return id; }
+        public long getTimestamp() { return timestamp; }
+        public int getLength() { return length; }
+    }
+
+    /** Size after which a new segment is started. */
+    public static final long DEFAULT_SEGMENT_BYTES = 4L << 20;
+
+    private static final String INDEX_FILE = "receipts.idx";
+    private static final int INDEX_ENTRY_SIZE = 32;
+
+    private final Path folder;
+    private final long segmentBytes;
+    private final FileChannel index;
+
+    // In-memory copy of the index, sorted by id and by timestamp; guarded by this
+    private long[] ids = new long[64];
+    private long[] timestamps = new long[64];
+    private int[] segments = new int[64];
+    private long[] offsets = new long[64];
+    private int[] lengths = new int[64];
+    private int count;
+
+    private int currentSegment;
+    private FileChannel segment;
+
+    /**
+     * Opens (or creates) an archive in the given folder.
+     *
+     * @param folder       folder holding the segments and the index
+     * @param segmentBytes size after which a new segment is started
+     */
+    public ReceiptArchive(Path folder, long segmentBytes) throws IOException {
+        this.folder = folder;
+        this.segmentBytes = segmentBytes;
+        Files.createDirectories(folder);
+
+        index = FileChannel.open(folder.resolve(INDEX_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        loadIndex();
+
+        currentSegment = count > 0 ? segments[count - 1] : 0;
+        openSegment(currentSegment);
+    }
+
+    public ReceiptArchive(Path folder) throws IOException {
+        this(folder, DEFAULT_SEGMENT_BYTES);
+    }
+
+    /** Number of receipts in the archive. */
+    public synchronized int size() {
+        return count;
+    }
+
+    /**
+     * Appends a receipt.
+     *
+     * @param timestamp when the sale was made (epoch millis)
+     * @param text      the rendered receipt
+     * @return the new receipt's id
+     */
+    public synchronized long append(long timestamp, byte[] text) throws IOException {
+        if (segment.size() >= segmentBytes) {
+            segment.close();
+            openSegment(++currentSegment);
+        }
+
+        long id = count > 0 ? ids[count - 1] + 1 : 1;
+        // Keep timestamps in order even if the clock steps back
+        long time = count > 0 ? Math.max(timestamp, timestamps[count - 1]) : timestamp;
+        long offset = segment.size();
+
+        ByteBuffer data = ByteBuffer.wrap(text);
+        long position = offset;
+        while (data.hasRemaining()) {
+            position += segment.write(data, position);
+        }
+
+        ByteBuffer entry = ByteBuffer.allocate(INDEX_ENTRY_SIZE);
+        entry.putLong(id).putLong(time).putInt(currentSegment).putLong(offset).putInt(text.length).flip();
+        long indexPosition = (long) count * INDEX_ENTRY_SIZE;
+        while (entry.hasRemaining()) {
+            indexPosition += index.write(entry, indexPosition);
+        }
+
+        add(id, time, currentSegment, offset, text.length);
+        return id;
+    }
+
+    /**
+     * Reads a receipt back.
+     *
+     * @param id the receipt's id
+     * @return the receipt text, or null if there is no receipt with that id
+     */
+    public String read(long id) throws IOException {
+        int segmentNo;
+        long offset;
+        int length;
+        synchronized (this) {
+            int i = Arrays.binarySearch(ids, 0, count, id);
+            if (i < 0) {
+                return null;
+            }
+            segmentNo = segments[i];
+            offset = offsets[i];
+            length = lengths[i];
+        }
+
+        ByteBuffer data = ByteBuffer.allocate(length);
+        try (FileChannel channel = FileChannel.open(segmentFile(segmentNo), StandardOpenOption.READ)) {
+            while (data.hasRemaining()) {
+                if (channel.read(data, offset + data.position()) < 0) {
+                    throw new IOException("Receipt " + id + " is cut short");
+                }
+            }
+        }
+        return new String(data.array(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Receipts made in [fromMillis, toMillis), oldest first.
+     */
+    public synchronized List<Entry> findBetween(long fromMillis, long toMillis) {
+        int from = lowerBound(timestamps, count, fromMillis);
+        int to = lowerBound(timestamps, count, toMillis);
+
+        List<Entry> entries = new ArrayList<>(Math.max(0, to - from));
+        for (int i = from; i < to; i++) {
+            entries.add(new Entry(ids[i], timestamps[i], lengths[i]));
+        }
+        return entries;
+    }
+
+    /**
+     * The most recent receipt, or null if the archive is empty.
+     */
+    public synchronized Entry latest() {
+        return count == 0 ? null : new Entry(ids[count - 1], timestamps[count - 1], lengths[count - 1]);
+    }
+
+    /**
+     * Writes one receipt to its own file, e.g. to open or print it.
+     *
+     * @param id     the receipt's id
+     * @param target the file to write
+     * @return the target, or null if there is no receipt with that id
+     */
+    public Path export(long id, Path target) throws IOException {
+        String text = read(id);
+        if (text == null) {
+            return null;
+        }
+        Files.writeString(target, text, StandardCharsets.UTF_8);
+        return target;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        segment.close();
+        index.close();
+    }
+
+    private Path segmentFile(int segmentNo) {
+        return folder.resolve(String.format("segment-%05d.dat", segmentNo));
+    }
+
+    private void openSegment(int segmentNo) throws IOException {
+        segment = FileChannel.open(segmentFile(segmentNo),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    // Reads the index into memory, dropping a torn last entry or one whose data is missing
+    private void loadIndex() throws IOException {
+        long entries = index.size() / INDEX_ENTRY_SIZE;
+        ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(entries * INDEX_ENTRY_SIZE, 1 << 20));
+        long position = 0;
+
+        while (position < entries * INDEX_ENTRY_SIZE) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), entries * INDEX_ENTRY_SIZE - position));
+            while (buffer.hasRemaining()) {
+                index.read(buffer, position + buffer.position());
+            }
+            buffer.flip();
+            position += buffer.limit();
+
+            while (buffer.remaining() >= INDEX_ENTRY_SIZE) {
+                add(buffer.getLong(), buffer.getLong(), buffer.getInt(), buffer.getLong(), buffer.getInt());
+            }
+        }
+
+        if (count > 0) {
+            Path last = segmentFile(segments[count - 1]);
+            long lastEnd = offsets[count - 1] + lengths[count - 1];
+            if (!Files.exists(last) || Files.size(last) < lastEnd) {
+                count--;
+            }
+        }
+        index.truncate((long) count * INDEX_ENTRY_SIZE);
+    }
+
+    private void add(long id, long timestamp, int segmentNo, long offset, int length) {
+        if (count == ids.length) {
+            int capacity = count * 2;
+            ids = Arrays.copyOf(ids, capacity);
+            timestamps = Arrays.copyOf(timestamps, capacity);
+            segments = Arrays.copyOf(segments, capacity);
+            offsets = Arrays.copyOf(offsets, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+        }
+        ids[count] = id;
+        timestamps[count] = timestamp;
+        segments[count] = segmentNo;
+        offsets[count] = offset;
+        lengths[count] = length;
+        count++;
+    }
+
+    // First position whose value is >= key
+    private static int lowerBound(long[] values, int size, long key) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (values[mid] < key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
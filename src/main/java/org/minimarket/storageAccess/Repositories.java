@@ -0,0 +1,129 @@
+package org.minimarket.storageAccess;
+
+import org.minimarket.auth.User;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Creates the process-wide repositories on first use.
+ *
+ * By default products are kept in products.csv (with a stock journal),
+ * sales in the binary sales log and users in users.csv. System properties
+ * choose other backends:
+ *
+ *  - {@code minimarket.storage=sql} keeps all three in an embedded H2
+ *    database file. The first time, it is filled from the existing files.
+ *  - {@code minimarket.products.store=binary} keeps products in a
+ *    fixed-width {@link BinaryProductStore} instead of products.csv, filled
+ *    from products.csv the first time.
+ *
+ * If the chosen backend cannot be opened, the files are used.
+ */
+public class Repositories {
+
+    /** System property choosing the storage backend: "files" (default) or "sql". */
+    public static final String STORAGE_PROPERTY = "minimarket.storage";
+
+    /** System property choosing the file product store: "csv" (default) or "binary". */
+    public static final String PRODUCT_STORE_PROPERTY = "minimarket.products.store";
+
+    private static final String PRODUCT_FILE = "src/main/resources/data/products.csv";
+
+    /** Append-only log of stock deltas written since the last products.csv snapshot. */
+    private static final String JOURNAL_FILE = "src/main/resources/data/products_journal.csv";
+
+    /** Fixed-width product records, used when {@link #PRODUCT_STORE_PROPERTY} is "binary". */
+    private static final String BINARY_STORE_FILE = "src/main/resources/data/products.bin";
+
+    /** H2 database file name (H2 adds ".mv.db"). */
+    private static final String DATABASE_FILE = "src/main/resources/data/minimarket";
+
+    private static ProductRepository products;
+    private static SalesRepository sales;
+    private static UserRepository users;
+    private static SqlDatabase database;
+    private static boolean databaseOpened;
+
+    public static synchronized ProductRepository products() {
+        if (products == null) {
+            CsvProductRepository csv = new CsvProductRepository(
+                    Paths.get(PRODUCT_FILE), Paths.get(JOURNAL_FILE));
+            products = csv;
+
+            SqlDatabase db = database();
+            if (db != null) {
+                products = new SqlProductRepository(db);
+            } else if ("binary".equalsIgnoreCase(System.getProperty(PRODUCT_STORE_PROPERTY))) {
+                try {
+                    products = new BinaryProductRepository(new BinaryProductStore(Paths.get(BINARY_STORE_FILE)));
+                } catch (IOException e) {
+                    System.err.println("Binary product store unavailable, using products.csv: " + e.getMessage());
+                }
+            }
+
+            // A new store starts from the CSV snapshot and its journal
+            if (products != csv && products.isEmpty() && !csv.isEmpty()) {
+                products.saveProducts(csv.loadProducts());
+            }
+        }
+        return products;
+    }
+
+    public static synchronized SalesRepository sales() {
+        if (sales == null) {
+            SalesFileManager files = new SalesFileManager();
+            sales = files;
+
+            SqlDatabase db = database();
+            if (db != null) {
+                try {
+                    SqlSalesRepository sql = new SqlSalesRepository(db);
+                    if (sql.getSaleRecordCount() == 0) {
+                        long copied = sql.importFrom(files);
+                        if (copied > 0) {
+                            System.out.println("Copied " + copied + " sales into the database");
+                        }
+                    }
+                    sales = sql;
+                } catch (SQLException e) {
+                    System.err.println("Sales table unavailable, using the sales log: " + e.getMessage());
+                }
+            }
+        }
+        return sales;
+    }
+
+    public static synchronized UserRepository users() {
+        if (users == null) {
+            UserFileManager files = new UserFileManager();
+            users = files;
+
+            SqlDatabase db = database();
+            if (db != null) {
+                SqlUserRepository sql = new SqlUserRepository(db);
+                if (sql.loadUsers().isEmpty()) {
+                    List<User> existing = files.loadUsers();
+                    sql.saveUsers(existing);
+                }
+                users = sql;
+            }
+        }
+        return users;
+    }
+
+    // Opens the database on first use if it was chosen; returns null otherwise
+    private static SqlDatabase database() {
+        if (!databaseOpened && "sql".equalsIgnoreCase(System.getProperty(STORAGE_PROPERTY))) {
+            databaseOpened = true;
+            try {
+                database = new SqlDatabase("jdbc:h2:file:" + Paths.get(DATABASE_FILE).toAbsolutePath());
+            } catch (SQLException e) {
+                System.err.println("Database unavailable, using files: " + e.getMessage());
+            }
+        }
+        return database;
+    }
+}
@@ -0,0 +1,195 @@
+package org.minimarket.storageAccess;
+
+import org.minimarket.utility.Money;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * SalesAggregates holds running totals over the whole sales log so that
+ * reports do not need to re-read every sale.
+ *
+ * It tracks:
+ *  - the grand total and number of units sold.
+ *  - units and revenue per product.
+ *  - revenue per category.
+ *  - hourly and daily rollups ({@link SalesRollups}) for time-range queries.
+ *  - how many bytes of the sales log are already included (the watermark),
+ *    so a restart only has to fold in sales written after the last save.
+ *
+ * Amounts are held in pennies, so the totals stay exact however many sales
+ * are added. The totals are saved to a small CSV file (amounts in pounds with
+ * two decimals) whose size depends on the number of products and categories,
+ * not on the number of sales:
+ *
+ *      total,grandTotal,units,logOffset
+ *      product,name,units,revenue
+ *      category,name,revenue
+ *      hour,epochHour,units,revenue
+ *      day,epochDay,units,revenue
+ */
+public class SalesAggregates {
+
+    /** Units sold and revenue taken for one product. */
+    public static class ProductTotals {
+        private long units;
+        private long revenue;
+
+        public long getUnits() { return units; }
+        public double getRevenue() { return Money.toPounds(revenue); }
+        public long getRevenuePennies() { return revenue; }
+    }
+
+    private long grandTotal;
+    private long totalUnits;
+    private long logOffset;
+    private final Map<String, ProductTotals> byProduct = new LinkedHashMap<>();
+    private final Map<String, Long> byCategory = new LinkedHashMap<>();
+    private SalesRollups rollups = new SalesRollups();
+
+    /**
+     * Adds one sale to the running totals and its time buckets.
+     *
+     * @param productName the product sold
+     * @param category    the product's category
+     * @param quantity    units sold
+     * @param subtotal    revenue from the sale, in pennies
+     * @param timestamp   when the sale was made (epoch millis, 0 if unknown)
+     */
+    public void add(String productName, String category, long quantity, long subtotal, long timestamp) {
+        add(productName, category, quantity, subtotal);
+        rollups.add(timestamp, quantity, subtotal);
+    }
+
+    /**
+     * Adds sales to the running totals without touching the time buckets.
+     * Used when the per-sale times are folded into the rollups separately.
+     *
+     * @param productName the product sold
+     * @param category    the product's category
+     * @param quantity    units sold
+     * @param subtotal    revenue from the sales, in pennies
+     */
+    public void add(String productName, String category, long quantity, long subtotal) {
+        grandTotal += subtotal;
+        totalUnits += quantity;
+
+        ProductTotals totals = byProduct.computeIfAbsent(productName, n -> new ProductTotals());
+        totals.units += quantity;
+        totals.revenue += subtotal;
+
+        byCategory.merge(category, subtotal, Long::sum);
+    }
+
+    public double getGrandTotal() { return Money.toPounds(grandTotal); }
+    public long getGrandTotalPennies() { return grandTotal; }
+    public long getTotalUnits() { return totalUnits; }
+
+    /** Number of sales log bytes already folded into these totals. */
+    public long getLogOffset() { return logOffset; }
+
+    public void setLogOffset(long logOffset) { this.logOffset = logOffset; }
+
+    public Map<String, ProductTotals> getProductTotals() { return byProduct; }
+
+    /** Revenue per category, in pennies. */
+    public Map<String, Long> getCategoryRevenue() { return byCategory; }
+
+    public SalesRollups getRollups() { return rollups; }
+
+    /**
+     * Returns an independent copy, safe to hand to another thread.
+     */
+    public SalesAggregates copy() {
+        SalesAggregates copy = new SalesAggregates();
+        copy.grandTotal = grandTotal;
+        copy.totalUnits = totalUnits;
+        copy.logOffset = logOffset;
+        for (Map.Entry<String, ProductTotals> e : byProduct.entrySet()) {
+            ProductTotals totals = new ProductTotals();
+            totals.units = e.getValue().units;
+            totals.revenue = e.getValue().revenue;
+            copy.byProduct.put(e.getKey(), totals);
+        }
+        copy.byCategory.putAll(byCategory);
+        copy.rollups = rollups.copy();
+        return copy;
+    }
+
+    /**
+     * Writes the totals to a temporary file and moves it over the old one.
+     *
+     * @param file the aggregates file
+     */
+    public void save(Path file) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+
+        try (CsvWriter csv = new CsvWriter(Files.newBufferedWriter(temp, StandardCharsets.UTF_8))) {
+            csv.field("total").pennies(grandTotal).field(totalUnits).field(logOffset).endRow();
+            for (Map.Entry<String, ProductTotals> e : byProduct.entrySet()) {
+                csv.field("product").field(e.getKey()).field(e.getValue().units)
+                        .pennies(e.getValue().revenue).endRow();
+            }
+            for (Map.Entry<String, Long> e : byCategory.entrySet()) {
+                csv.field("category").field(e.getKey()).pennies(e.getValue()).endRow();
+            }
+            for (Map.Entry<Long, SalesRollups.Bucket> e : rollups.getHourly().entrySet()) {
+                csv.field("hour").field(e.getKey()).field(e.getValue().getUnits())
+                        .pennies(e.getValue().getRevenuePennies()).endRow();
+            }
+            for (Map.Entry<Long, SalesRollups.Bucket> e : rollups.getDaily().entrySet()) {
+                csv.field("day").field(e.getKey()).field(e.getValue().getUnits())
+                        .pennies(e.getValue().getRevenuePennies()).endRow();
+            }
+        }
+
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Reads totals saved by {@link #save(Path)}.
+     *
+     * @param file the aggregates file
+     * @return the loaded totals, or null if the file is missing or unreadable
+     */
+    public static SalesAggregates load(Path file) {
+        if (!Files.exists(file)) {
+            return null;
+        }
+
+        SalesAggregates aggregates = new SalesAggregates();
+        try {
+            // A bad row means the file cannot be trusted, so it is rebuilt rather than skipped
+            CsvReader row = CsvReader.open(file);
+            while (row.next()) {
+                int fields = row.getFieldCount();
+
+                if (row.fieldEquals(0, "total") && fields == 4) {
+                    aggregates.grandTotal = row.getPennies(1);
+                    aggregates.totalUnits = row.getLong(2);
+                    aggregates.logOffset = row.getLong(3);
+                } else if (row.fieldEquals(0, "product") && fields == 4) {
+                    ProductTotals totals = new ProductTotals();
+                    totals.units = row.getLong(2);
+                    totals.revenue = row.getPennies(3);
+                    aggregates.byProduct.put(row.getString(1), totals);
+                } else if (row.fieldEquals(0, "category") && fields == 3) {
+                    aggregates.byCategory.put(row.getString(1), row.getPennies(2));
+                } else if (row.fieldEquals(0, "hour") && fields == 4) {
+                    aggregates.rollups.putHour(row.getLong(1), row.getLong(2), row.getPennies(3));
+                } else if (row.fieldEquals(0, "day") && fields == 4) {
+                    aggregates.rollups.putDay(row.getLong(1), row.getLong(2), row.getPennies(3));
+                }
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Could not read sales aggregates, rebuilding: " + e.getMessage());
+            return null;
+        }
+        return aggregates;
+    }
+}
@@ -0,0 +1,251 @@
+package org.minimarket.storageAccess;
+
+import org.minimarket.utility.Money;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+
+/**
+ * SalesAnalytics answers ad-hoc questions over the whole binary sales log:
+ * top-N products, revenue by category and units per product, optionally
+ * limited to a time range.
+ *
+ * The log is split into row ranges that are aggregated in parallel on a
+ * ForkJoinPool. Each leaf scans its rows straight from the mapped file into
+ * plain long arrays indexed by product id (the "partial maps"), and the
+ * partials are summed as the tasks join. Nothing is allocated per row, so the
+ * cost is one pass over the mapped log spread across the available cores.
+ *
+ * This class has no UI dependencies and can be used headless.
+ */
+public class SalesAnalytics {
+
+    /** Rows handled by one leaf task before it stops splitting. */
+    private static final long LEAF_ROWS = 1 << 18;
+
+    /** Units and revenue for one product in a result. */
+    public static class ProductStat {
+        private final String productName;
+        private final long units;
+        private final double revenue;
+
+        public ProductStat(String productName, long units, double revenue) {
+            this.productName = productName;
+            this.units = units;
+            this.revenue = revenue;
+        }
+
+        public String getProductName() { return productName; }
+        public long getUnits() { return units; }
+        public double getRevenue() { return revenue; }
+    }
+
+    /** The merged totals for one analysis. */
+    public static class Result {
+        private final long[] units;
+        private final long[] pennies;
+        private final long rowsMatched;
+        private final IntFunction<String> nameOf;
+        private final Function<String, String> categoryOf;
+
+        /**
+         * @param units      units sold, indexed by product id
+         * @param pennies    revenue in pennies, indexed by product id
+         * @param nameOf     the product name for each id
+         * @param categoryOf the category for each product name
+         */
+        Result(long[] units, long[] pennies, long rowsMatched,
+               IntFunction<String> nameOf, Function<String, String> categoryOf) {
+            this.units = units;
+            this.pennies = pennies;
+            this.rowsMatched = rowsMatched;
+            this.nameOf = nameOf;
+            this.categoryOf = categoryOf;
+        }
+
+        /** Number of sale rows that fell in the range. */
+        public long getRowsMatched() {
+            return rowsMatched;
+        }
+
+        public long getTotalUnits() {
+            long total = 0;
+            for (long u : units) total += u;
+            return total;
+        }
+
+        public double getTotalRevenue() {
+            return Money.toPounds(getTotalRevenuePennies());
+        }
+
+        public long getTotalRevenuePennies() {
+            long total = 0;
+            for (long p : pennies) total += p;
+            return total;
+        }
+
+        /**
+         * The n best-selling products, by revenue or by units, best first.
+         * Uses a bounded heap, so it is O(products · log n).
+         */
+        public List<ProductStat> topProducts(int n, boolean byRevenue) {
+            long[] key = byRevenue ? pennies : units;
+            PriorityQueue<Integer> heap = new PriorityQueue<>(Comparator.comparingLong(id -> key[id]));
+
+            for (int id = 0; id < key.length; id++) {
+                if (units[id] == 0 && pennies[id] == 0) {
+                    continue;
+                }
+                heap.add(id);
+                if (heap.size() > n) {
+                    heap.poll();
+                }
+            }
+
+            List<ProductStat> top = new ArrayList<>(heap.size());
+            while (!heap.isEmpty()) {
+                top.add(stat(heap.poll()));
+            }
+            Collections.reverse(top);
+            return top;
+        }
+
+        /** Units sold per product, for every product with sales in the range. */
+        public Map<String, Long> unitsByProduct() {
+            Map<String, Long> result = new LinkedHashMap<>();
+            for (int id = 0; id < units.length; id++) {
+                if (units[id] != 0) {
+                    result.put(nameOf.apply(id), units[id]);
+                }
+            }
+            return result;
+        }
+
+        /** Revenue per category, for every category with sales in the range. */
+        public Map<String, Double> revenueByCategory() {
+            Map<String, Long> categoryPennies = new LinkedHashMap<>();
+            for (int id = 0; id < pennies.length; id++) {
+                if (pennies[id] != 0) {
+                    categoryPennies.merge(categoryOf.apply(nameOf.apply(id)), pennies[id], Long::sum);
+                }
+            }
+            Map<String, Double> result = new LinkedHashMap<>();
+            categoryPennies.forEach((category, p) -> result.put(category, Money.toPounds(p)));
+            return result;
+        }
+
+        private ProductStat stat(int id) {
+            return new ProductStat(nameOf.apply(id), units[id], Money.toPounds(pennies[id]));
+        }
+    }
+
+    // Per-range partial totals, indexed by product id
+    private static class Partial {
+        final long[] units;
+        final long[] pennies;
+        long rows;
+
+        Partial(int products) {
+            units = new long[products];
+            pennies = new long[products];
+        }
+
+        Partial merge(Partial other) {
+            for (int i = 0; i < units.length; i++) {
+                units[i] += other.units[i];
+                pennies[i] += other.pennies[i];
+            }
+            rows += other.rows;
+            return this;
+        }
+    }
+
+    // Aggregates rows [from, to), splitting in half until ranges are small enough
+    private class ChunkTask extends RecursiveTask<Partial> {
+        private static final long serialVersionUID = 1L;
+
+        private final long from;
+        private final long to;
+        private final long fromMillis;
+        private final long toMillis;
+        private final int products;
+
+        ChunkTask(long from, long to, long fromMillis, long toMillis, int products) {
+            this.from = from;
+            this.to = to;
+            this.fromMillis = fromMillis;
+            this.toMillis = toMillis;
+            this.products = products;
+        }
+
+        @Override
+        protected Partial compute() {
+            if (to - from <= LEAF_ROWS) {
+                Partial partial = new Partial(products);
+                log.scan(from, to, (id, qty, amount, ts) -> {
+                    if (ts >= fromMillis && ts < toMillis && id < products) {
+                        partial.units[id] += qty;
+                        partial.pennies[id] += amount;
+                        partial.rows++;
+                    }
+                });
+                return partial;
+            }
+
+            long mid = from + (to - from) / 2;
+            ChunkTask left = new ChunkTask(from, mid, fromMillis, toMillis, products);
+            ChunkTask right = new ChunkTask(mid, to, fromMillis, toMillis, products);
+            left.fork();
+            Partial rightResult = right.compute();
+            return left.join().merge(rightResult);
+        }
+    }
+
+    private final BinarySalesLog log;
+    private final ForkJoinPool pool;
+    private final Function<String, String> categoryOf;
+
+    /**
+     * @param log        the sales log to analyse
+     * @param pool       the pool the chunk tasks run on
+     * @param categoryOf maps a product name to its category
+     */
+    public SalesAnalytics(BinarySalesLog log, ForkJoinPool pool, Function<String, String> categoryOf) {
+        this.log = log;
+        this.pool = pool;
+        this.categoryOf = categoryOf;
+    }
+
+    /**
+     * Analyses every sale in the log, including those without a timestamp.
+     */
+    public Result analyseAll() {
+        return analyse(Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * Analyses sales made in [fromMillis, toMillis).
+     * Sales logged before timestamps were recorded have time 0 and only
+     * match ranges that include it.
+     *
+     * @param fromMillis start of the range, epoch millis (inclusive)
+     * @param toMillis   end of the range, epoch millis (exclusive)
+     * @return the merged totals
+     */
+    public Result analyse(long fromMillis, long toMillis) {
+        int products = log.getProductCount();
+        long rows = log.getRecordCount();
+
+        Partial total = pool.invoke(new ChunkTask(0, rows, fromMillis, toMillis, products));
+        return new Result(total.units, total.pennies, total.rows, log::nameOf, categoryOf);
+    }
+}
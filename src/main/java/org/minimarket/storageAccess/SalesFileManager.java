@@ -1,116 +1,405 @@
 package org.minimarket.storageAccess;
 
+import org.minimarket.catalogue.Product;
 import org.minimarket.catalogue.SaleRecord;
+
 import java.io.*;
-import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * SalesFileManager handles all file-based persistence for sales data.
  *
  * It is responsible for:
- *  - Saving and loading the total amount of all sales made.
- *  - Appending individual sale records to a CSV sales log.
+ *  - Keeping materialized totals (grand total, per product, per category)
+ *    that are updated as each batch of sales is committed. They are saved at
+ *    most every 30 seconds and at exit; sales committed after the last save
+ *    are folded back in from the log on the next start.
+ *  - Appending individual sale records to a fixed-width binary sales log
+ *    ({@link BinarySalesLog}) in group commits, through one shared
+ *    {@link BatchedSalesWriter}.
  *  - Loading previously stored sale records for reporting.
+ *  - Running ad-hoc analyses over the whole log ({@link SalesAnalytics}).
+ *
+ * The old CSV sales log is converted to the binary format the first time the
+ * binary log is created; after that the CSV file is no longer written.
  *
  * This class acts as the **data access layer**, keeping file I/O logic separate
  * from the UI and business logic (following MVC and separation-of-concerns principles).
  */
-public class SalesFileManager {
+public class SalesFileManager implements SalesRepository {
+
+    /** Legacy CSV sales log, converted into the binary log on first use. */
+    private static final String LEGACY_SALES_LOG_FILE = "src/main/resources/data/sales_log.csv";
+
+    /** Binary file storing detailed sale records. */
+    private static final String SALES_LOG_FILE = "src/main/resources/data/sales_log.bin";
+
+    /** Product name dictionary used by the binary sales log. */
+    private static final String SALES_DICTIONARY_FILE = "src/main/resources/data/sales_products.csv";
+
+    /** Compact file storing the materialized sales totals. */
+    private static final String AGGREGATES_FILE = "src/main/resources/data/sales_aggregates.csv";
 
-    /** CSV file storing detailed sale records. */
-    private static final String SALES_LOG_FILE = "src/main/resources/data/sales_log.csv";
+    /** Shortest time between two saves of the aggregates file. */
+    private static final long AGGREGATES_SAVE_INTERVAL_MILLIS = 30_000;
 
-    /** Text file storing a single total sales value. */
-    private static final String SALES_FILE = "src/main/resources/data/total_sales.txt";
+    /** Category used for products that are no longer in the catalogue. */
+    private static final String UNKNOWN_CATEGORY = "Uncategorised";
+
+    /** Largest number of records written in one group commit. */
+    private static final int MAX_BATCH_SIZE = 256;
+
+    /** How long the writer waits for more checkouts before writing a batch. */
+    private static final long MAX_BATCH_DELAY_MILLIS = 5;
 
     /**
-     * Loads the total sales figure from the text file.
-     * If the file does not exist, the system starts with total = 0.
+     * Set the system property {@code minimarket.sales.fsync=batch} to force
+     * every batch to disk before it counts as committed.
+     */
+    private static final String FSYNC_PROPERTY = "minimarket.sales.fsync";
+
+    /** The binary sales log shared by every SalesFileManager. */
+    private static BinarySalesLog log;
+
+    /** Shared by every SalesFileManager so the log has a single writer. */
+    private static BatchedSalesWriter writer;
+
+    /** Running totals over the sales log; guarded by the SalesFileManager class lock. */
+    private static SalesAggregates aggregates;
+
+    /** When the aggregates were last saved, and whether they changed since; guarded by the class lock. */
+    private static long aggregatesSavedAt;
+    private static boolean aggregatesDirty;
+
+    /** Category of each product sold, captured when the sale is submitted. */
+    private static final Map<String, String> soldCategories = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the total value of all sales made, in pennies.
      *
-     * @return the total sales value stored in the file
+     * @return the total sales value
      */
-    public double loadTotalSales() {
-        double total = 0;
+    @Override
+    public long loadTotalSalesPennies() {
+        flush();
+        synchronized (SalesFileManager.class) {
+            SalesAggregates totals = aggregates();
+            return totals != null ? totals.getGrandTotalPennies() : 0L;
+        }
+    }
 
-        try (BufferedReader br = new BufferedReader(new FileReader(SALES_FILE))) {
-            String line = br.readLine();
-            if (line != null) total = Double.parseDouble(line);
-        } catch (IOException e) {
-            System.out.println("Total sales file not found, starting at 0.");
+    /**
+     * Returns a copy of the materialized totals (grand total, per product
+     * and per category), including every sale submitted so far.
+     *
+     * @return a snapshot of the sales totals
+     */
+    public SalesAggregates loadAggregates() {
+        flush();
+        synchronized (SalesFileManager.class) {
+            SalesAggregates totals = aggregates();
+            return totals != null ? totals.copy() : new SalesAggregates();
         }
+    }
 
-        return total;
+    /**
+     * Returns a copy of the hourly and daily sales rollups, including every
+     * sale submitted so far. Time-range totals are read from these buckets.
+     *
+     * @return a snapshot of the sales rollups
+     */
+    @Override
+    public SalesRollups loadRollups() {
+        return loadAggregates().getRollups();
     }
 
     /**
-     * Saves the total sales value to the text file.
-     * This overwrites any previous value.
+     * Total units and revenue for sales made in [from, to), read from the
+     * rollups rather than the raw log (rounded out to whole hours).
      *
-     * @param totalSales the updated total sales amount
+     * @param from start of the range (inclusive)
+     * @param to   end of the range (exclusive)
+     * @return the units and revenue in the range
      */
-    public void saveTotalSales(double totalSales) {
-        try (PrintWriter pw = new PrintWriter(new FileWriter(SALES_FILE))) {
-            pw.println(totalSales);
-        } catch (IOException e) {
-            System.err.println("Error saving total sales: " + e.getMessage());
+    @Override
+    public SalesRollups.Bucket loadSalesBetween(LocalDateTime from, LocalDateTime to) {
+        flush();
+        synchronized (SalesFileManager.class) {
+            SalesAggregates totals = aggregates();
+            return totals != null ? totals.getRollups().totalBetween(from, to) : new SalesRollups.Bucket();
+        }
+    }
+
+    /**
+     * Analyses every sale made in [from, to) with a parallel scan of the log.
+     * Unlike the rollups this reads the raw rows, so the range is exact, and
+     * it runs on the common ForkJoinPool; call it off the FX thread.
+     *
+     * @param from start of the range (inclusive), or null for no lower bound
+     * @param to   end of the range (exclusive), or null for no upper bound
+     * @return the analysis, or null if the sales log could not be opened
+     */
+    @Override
+    public SalesAnalytics.Result analyseSales(LocalDateTime from, LocalDateTime to) {
+        flush();
+        BinarySalesLog salesLog = log();
+        if (salesLog == null) {
+            return null;
         }
+
+        ZoneId zone = ZoneId.systemDefault();
+        long fromMillis = from != null ? from.atZone(zone).toInstant().toEpochMilli() : Long.MIN_VALUE;
+        long toMillis = to != null ? to.atZone(zone).toInstant().toEpochMilli() : Long.MAX_VALUE;
+
+        SalesAnalytics analytics = new SalesAnalytics(salesLog, ForkJoinPool.commonPool(), SalesFileManager::categoryOf);
+        return analytics.analyse(fromMillis, toMillis);
     }
 
     /**
-     * Appends new sale records to the CSV sales log.
-     * Each sale record is written on a new line in the format:
+     * Appends new sale records to the binary sales log.
+     * Each record becomes one fixed-width row (product id, quantity,
+     * amount in pennies, timestamp).
      *
-     *      productName,quantity,subtotal
+     * The records join the next group commit, and this method waits until that
+     * commit has written them.
      *
      * @param records list of SaleRecord objects to save
+     * @return true once the records are in the log, false if writing them failed
      */
-    public void saveSaleRecords(List<SaleRecord> records) {
-        try (BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(
-                new FileOutputStream(SALES_LOG_FILE, true), StandardCharsets.UTF_8))) {
-
-            for (SaleRecord record : records) {
-                bw.write(record.getProductName() + "," +
-                        record.getQuantity() + "," +
-                        record.getSubtotal());
-                bw.newLine();
+    @Override
+    public boolean saveSaleRecords(List<SaleRecord> records) {
+        if (records.isEmpty()) {
+            return true;
+        }
+
+        // Look categories up now, on the caller's thread, for the totals updated at commit
+        for (SaleRecord record : records) {
+            soldCategories.computeIfAbsent(record.getProductName(), SalesFileManager::categoryOf);
+        }
+
+        BatchedSalesWriter salesWriter = writer();
+        if (salesWriter != null) {
+            try {
+                salesWriter.submit(records).join();
+                return true;
+            } catch (CompletionException | CancellationException e) {
+                // The writer thread has already logged the cause
+                System.err.println("Sale not recorded: " + e.getMessage());
+                return false;
             }
+        }
 
+        BinarySalesLog salesLog = log();
+        if (salesLog == null) {
+            System.err.println("Sales log unavailable, sale not recorded.");
+            return false;
+        }
+        try {
+            salesLog.append(records);
         } catch (IOException e) {
             System.err.println("Error writing sales log: " + e.getMessage());
+            return false;
+        }
+        committed(records, BinarySalesLog.offsetOfRow(salesLog.getRecordCount()));
+        return true;
+    }
+
+    /**
+     * Blocks until every record passed to saveSaleRecords so far is in the log.
+     */
+    @Override
+    public void flush() {
+        BatchedSalesWriter salesWriter = writer();
+        if (salesWriter != null) {
+            salesWriter.flush();
         }
     }
 
     /**
-     * Loads all sale records from the CSV file into a list.
-     * This is used by the Sales Report screen to display a full history of sales.
+     * Returns the number of sale records in the log, including queued ones.
+     * The count comes from the log's size, so no rows are read.
      *
-     * @return a list of SaleRecord objects representing all logged sales
+     * @return the number of logged sales
      */
-    public List<SaleRecord> loadSaleRecords() {
-        List<SaleRecord> sales = new ArrayList<>();
-
-        try (BufferedReader br = new BufferedReader(new InputStreamReader(
-                new FileInputStream(SALES_LOG_FILE), StandardCharsets.UTF_8))) {
-
-            String line;
-            while ((line = br.readLine()) != null) {
-
-                String[] parts = line.split(",");
-                if (parts.length == 3) {
-                    sales.add(new SaleRecord(
-                            parts[0],
-                            Integer.parseInt(parts[1]),
-                            Double.parseDouble(parts[2])
-                    ));
+    @Override
+    public long getSaleRecordCount() {
+        flush();
+        BinarySalesLog salesLog = log();
+        return salesLog != null ? salesLog.getRecordCount() : 0;
+    }
+
+    /**
+     * Loads one page of sale records, starting at the given row.
+     * Used by the paged Sales Report table so only visible rows are read.
+     *
+     * @param fromRow the first row to load
+     * @param count   the maximum number of rows to load
+     * @return the records in that range (fewer if the log ends first)
+     */
+    @Override
+    public List<SaleRecord> loadSaleRecords(long fromRow, int count) {
+        BinarySalesLog salesLog = log();
+        return salesLog != null ? salesLog.read(fromRow, count) : new ArrayList<>();
+    }
+
+    // Opens the binary log on first use, converting the legacy CSV log if there is one
+    private static synchronized BinarySalesLog log() {
+        if (log == null) {
+            Path logFile = Paths.get(SALES_LOG_FILE);
+            Path legacyFile = Paths.get(LEGACY_SALES_LOG_FILE);
+            boolean convert = !Files.exists(logFile) && Files.exists(legacyFile);
+
+            try {
+                log = new BinarySalesLog(logFile, Paths.get(SALES_DICTIONARY_FILE));
+                if (convert) {
+                    long rows = log.convertFromCsv(legacyFile);
+                    System.out.println("Converted " + rows + " sales from " + LEGACY_SALES_LOG_FILE);
                 }
+            } catch (IOException e) {
+                System.err.println("Could not open sales log: " + e.getMessage());
+                log = null;
+            }
+        }
+        return log;
+    }
+
+    // Opens the shared writer on first use; returns null if the log cannot be opened
+    private static synchronized BatchedSalesWriter writer() {
+        if (writer == null) {
+            BinarySalesLog salesLog = log();
+            if (salesLog == null) {
+                return null;
+            }
+
+            // Bring the totals up to date with the log before anything new is appended
+            aggregates();
+
+            BatchedSalesWriter.FsyncPolicy policy = "batch".equalsIgnoreCase(System.getProperty(FSYNC_PROPERTY))
+                    ? BatchedSalesWriter.FsyncPolicy.EVERY_BATCH
+                    : BatchedSalesWriter.FsyncPolicy.NEVER;
+            try {
+                writer = new BatchedSalesWriter(salesLog.getFile(), salesLog::encode,
+                        MAX_BATCH_SIZE, MAX_BATCH_DELAY_MILLIS, policy);
+            } catch (IOException e) {
+                System.err.println("Batched sales writer unavailable: " + e.getMessage());
+                return null;
+            }
+            writer.setCommitListener(SalesFileManager::committed);
+
+            // Write out queued sales, then the totals, when the application exits
+            BatchedSalesWriter created = writer;
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    created.close();
+                } catch (IOException e) {
+                    System.err.println("Error closing sales log: " + e.getMessage());
+                }
+                saveAggregatesIfChanged();
+            }));
+        }
+        return writer;
+    }
+
+    // Folds a committed batch into the totals and moves the watermark; the file
+    // is rewritten only if the last save is older than the save interval
+    private static synchronized void committed(List<SaleRecord> batch, long logSize) {
+        SalesAggregates totals = aggregates();
+        if (totals == null) {
+            return;
+        }
+        for (SaleRecord record : batch) {
+            String category = soldCategories.getOrDefault(record.getProductName(), UNKNOWN_CATEGORY);
+            totals.add(record.getProductName(), category, record.getQuantity(),
+                    record.getSubtotalPennies(), record.getTimestamp());
+        }
+        totals.setLogOffset(logSize);
+        aggregatesDirty = true;
+        if (System.currentTimeMillis() - aggregatesSavedAt >= AGGREGATES_SAVE_INTERVAL_MILLIS) {
+            saveAggregates(totals);
+        }
+    }
+
+    private static synchronized void saveAggregatesIfChanged() {
+        if (aggregatesDirty && aggregates != null) {
+            saveAggregates(aggregates);
+        }
+    }
+
+    // Loads the totals on first use and folds in any sales written after they were saved
+    private static synchronized SalesAggregates aggregates() {
+        if (aggregates != null) {
+            return aggregates;
+        }
+        BinarySalesLog salesLog = log();
+        if (salesLog == null) {
+            return null;
+        }
+
+        long logSize = BinarySalesLog.offsetOfRow(salesLog.getRecordCount());
+
+        SalesAggregates loaded = SalesAggregates.load(Paths.get(AGGREGATES_FILE));
+        if (loaded == null || loaded.getLogOffset() > logSize) {
+            // Missing, unreadable or from a different log: rebuild from the start
+            loaded = new SalesAggregates();
+        }
+
+        if (loaded.getLogOffset() < logSize) {
+            foldLog(loaded, salesLog, BinarySalesLog.rowAtOffset(loaded.getLogOffset()));
+            loaded.setLogOffset(logSize);
+            saveAggregates(loaded);
+        }
+
+        aggregates = loaded;
+        return aggregates;
+    }
+
+    // Adds every row from the given row onwards, summing into arrays indexed by
+    // product id; each row's time goes straight into the hourly and daily buckets
+    private static void foldLog(SalesAggregates totals, BinarySalesLog salesLog, long fromRow) {
+        int productCount = salesLog.getProductCount();
+        long[] units = new long[productCount];
+        long[] pennies = new long[productCount];
+        SalesRollups rollups = totals.getRollups();
+
+        salesLog.scan(fromRow, Long.MAX_VALUE, (id, qty, amount, ts) -> {
+            units[id] += qty;
+            pennies[id] += amount;
+            rollups.add(ts, qty, amount);
+        });
+
+        for (int id = 0; id < productCount; id++) {
+            if (units[id] != 0 || pennies[id] != 0) {
+                String name = salesLog.nameOf(id);
+                totals.add(name, categoryOf(name), units[id], pennies[id]);
             }
+        }
+    }
 
+    // Called holding the class lock
+    private static void saveAggregates(SalesAggregates totals) {
+        try {
+            totals.save(Paths.get(AGGREGATES_FILE));
+            aggregatesSavedAt = System.currentTimeMillis();
+            aggregatesDirty = false;
         } catch (IOException e) {
-            System.out.println("Sales log file missing, no previous sales.");
+            System.err.println("Error saving sales aggregates: " + e.getMessage());
         }
-        return sales;
     }
-}
 
+    // Category of a product in the shared catalogue, if it is still there
+    static String categoryOf(String productName) {
+        Product product = ProductFileManager.getCatalogue().findByName(productName);
+        return product != null ? product.getCategory() : UNKNOWN_CATEGORY;
+    }
+}
@@ -0,0 +1,76 @@
+package org.minimarket.storageAccess;
+
+import org.minimarket.catalogue.SaleRecord;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Where sale records are stored, and the totals read from them.
+ *
+ * Rows are numbered from 0 in the order they were saved, which is the order
+ * the paged Sales Report shows them in.
+ */
+public interface SalesRepository {
+
+    /**
+     * Stores the records of one checkout. Either all of them are stored or,
+     * if the store fails, none are.
+     *
+     * Implementations may write the records together with other checkouts,
+     * but return only once they are stored.
+     *
+     * Only the sales are stored here. The stock taken for them is written
+     * separately through the product repository, in its own transaction, so
+     * a crash between the two can leave sales without their stock change
+     * (or the reverse), even when both repositories share one SQL database.
+     *
+     * @return true if the records were stored, false if the store failed
+     */
+    boolean saveSaleRecords(List<SaleRecord> records);
+
+    /**
+     * Blocks until every record passed to saveSaleRecords so far is stored.
+     */
+    void flush();
+
+    /**
+     * The total value of all sales, in pennies.
+     */
+    long loadTotalSalesPennies();
+
+    /**
+     * Number of stored sale records, including queued ones.
+     */
+    long getSaleRecordCount();
+
+    /**
+     * One page of sale records, starting at the given row.
+     *
+     * @param fromRow the first row to load
+     * @param count   the maximum number of rows to load
+     * @return the records in that range (fewer if the sales end first)
+     */
+    List<SaleRecord> loadSaleRecords(long fromRow, int count);
+
+    /**
+     * Total units and revenue for sales made in [from, to). Implementations
+     * may round the range out to whole hours.
+     */
+    SalesRollups.Bucket loadSalesBetween(LocalDateTime from, LocalDateTime to);
+
+    /**
+     * Hourly and daily totals over every sale.
+     */
+    SalesRollups loadRollups();
+
+    /**
+     * Per-product and per-category totals for sales made in [from, to).
+     * May read every sale; call it off the FX thread.
+     *
+     * @param from start of the range (inclusive), or null for no lower bound
+     * @param to   end of the range (exclusive), or null for no upper bound
+     * @return the analysis, or null if the sales could not be read
+     */
+    SalesAnalytics.Result analyseSales(LocalDateTime from, LocalDateTime to);
+}
@@ -0,0 +1,211 @@
+package org.minimarket.storageAccess;
+
+import org.minimarket.utility.Money;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * SalesRollups keeps pre-aggregated sales per hour and per day so that
+ * time-range questions ("revenue this morning", "sales per day this week")
+ * are answered from a few buckets instead of rescanning every sale.
+ *
+ * Hour buckets are keyed by the epoch hour; day buckets by the local date
+ * (system time zone) as an epoch day. Revenue is kept in pennies. Sales without
+ * a timestamp, i.e. those logged before timestamps were recorded, are not bucketed.
+ */
+public class SalesRollups {
+
+    private static final long HOUR_MILLIS = 3_600_000L;
+
+    /** Units and revenue for one time bucket. */
+    public static class Bucket {
+        private long units;
+        private long revenue;
+
+        public Bucket() {
+        }
+
+        Bucket(long units, long revenuePennies) {
+            this.units = units;
+            this.revenue = revenuePennies;
+        }
+
+        public long getUnits() { return units; }
+        public double getRevenue() { return Money.toPounds(revenue); }
+        public long getRevenuePennies() { return revenue; }
+    }
+
+    /** A bucket returned by a range query, labelled with its start time. */
+    public static class TimeBucket {
+        private final LocalDateTime start;
+        private final long units;
+        private final long revenue;
+
+        public TimeBucket(LocalDateTime start, long units, long revenuePennies) {
+            this.start = start;
+            this.units = units;
+            this.revenue = revenuePennies;
+        }
+
+        public LocalDateTime getStart() { return start; }
+        public long getUnits() { return units; }
+        public double getRevenue() { return Money.toPounds(revenue); }
+        public long getRevenuePennies() { return revenue; }
+    }
+
+    private final ZoneId zone;
+    private final TreeMap<Long, Bucket> hourly = new TreeMap<>();
+    private final TreeMap<Long, Bucket> daily = new TreeMap<>();
+
+    public SalesRollups() {
+        this(ZoneId.systemDefault());
+    }
+
+    public SalesRollups(ZoneId zone) {
+        this.zone = zone;
+    }
+
+    /**
+     * Adds one sale to its hour and day buckets.
+     *
+     * @param timestamp epoch milliseconds; 0 means unknown and is ignored
+     * @param quantity  units sold
+     * @param revenue   revenue from the sale, in pennies
+     */
+    public void add(long timestamp, long quantity, long revenue) {
+        if (timestamp <= 0) {
+            return;
+        }
+        addTo(hourly, Math.floorDiv(timestamp, HOUR_MILLIS), quantity, revenue);
+        addTo(daily, dayOf(timestamp), quantity, revenue);
+    }
+
+    /**
+     * Totals for sales in [from, to), read from the buckets.
+     * Whole local days in the middle of the range come from the day buckets
+     * and the partial days at either end from the hour buckets, so the range
+     * is effectively rounded out to whole hours.
+     *
+     * @param from start of the range (inclusive)
+     * @param to   end of the range (exclusive)
+     * @return units and revenue in the range
+     */
+    public Bucket totalBetween(LocalDateTime from, LocalDateTime to) {
+        Bucket total = new Bucket();
+        long fromMillis = toMillis(from);
+        long toMillis = toMillis(to);
+        if (toMillis <= fromMillis) {
+            return total;
+        }
+
+        LocalDate firstFullDay = from.toLocalTime().equals(LocalTime.MIDNIGHT)
+                ? from.toLocalDate() : from.toLocalDate().plusDays(1);
+        LocalDate endFullDays = to.toLocalDate();
+
+        if (firstFullDay.isBefore(endFullDays)) {
+            long firstFullMillis = toMillis(firstFullDay.atStartOfDay());
+            long endFullMillis = toMillis(endFullDays.atStartOfDay());
+
+            sumInto(total, hourly.subMap(hourFloor(fromMillis), true, hourFloor(firstFullMillis), false));
+            sumInto(total, daily.subMap(firstFullDay.toEpochDay(), true, endFullDays.toEpochDay(), false));
+            sumInto(total, hourly.subMap(hourFloor(endFullMillis), true, hourCeil(toMillis), false));
+        } else {
+            sumInto(total, hourly.subMap(hourFloor(fromMillis), true, hourCeil(toMillis), false));
+        }
+        return total;
+    }
+
+    /**
+     * Hour buckets with sales in [from, to), oldest first.
+     */
+    public List<TimeBucket> hourlyBuckets(LocalDateTime from, LocalDateTime to) {
+        List<TimeBucket> buckets = new ArrayList<>();
+        for (Map.Entry<Long, Bucket> e : hourly.subMap(
+                hourFloor(toMillis(from)), true, hourCeil(toMillis(to)), false).entrySet()) {
+            LocalDateTime start = LocalDateTime.ofInstant(Instant.ofEpochMilli(e.getKey() * HOUR_MILLIS), zone);
+            buckets.add(new TimeBucket(start, e.getValue().units, e.getValue().revenue));
+        }
+        return buckets;
+    }
+
+    /**
+     * Day buckets with sales from the date of {@code from} up to (but not
+     * including) the date of {@code to}, oldest first.
+     */
+    public List<TimeBucket> dailyBuckets(LocalDate from, LocalDate to) {
+        List<TimeBucket> buckets = new ArrayList<>();
+        for (Map.Entry<Long, Bucket> e : daily.subMap(from.toEpochDay(), true, to.toEpochDay(), false).entrySet()) {
+            LocalDateTime start = LocalDate.ofEpochDay(e.getKey()).atStartOfDay();
+            buckets.add(new TimeBucket(start, e.getValue().units, e.getValue().revenue));
+        }
+        return buckets;
+    }
+
+    /** Hour buckets keyed by epoch hour; used when saving. */
+    NavigableMap<Long, Bucket> getHourly() {
+        return hourly;
+    }
+
+    /** Day buckets keyed by epoch day; used when saving. */
+    NavigableMap<Long, Bucket> getDaily() {
+        return daily;
+    }
+
+    /** Restores a saved hour bucket. */
+    void putHour(long epochHour, long units, long revenue) {
+        addTo(hourly, epochHour, units, revenue);
+    }
+
+    /** Restores a saved day bucket. */
+    void putDay(long epochDay, long units, long revenue) {
+        addTo(daily, epochDay, units, revenue);
+    }
+
+    /**
+     * Returns an independent copy, safe to hand to another thread.
+     */
+    public SalesRollups copy() {
+        SalesRollups copy = new SalesRollups(zone);
+        hourly.forEach((k, b) -> copy.putHour(k, b.units, b.revenue));
+        daily.forEach((k, b) -> copy.putDay(k, b.units, b.revenue));
+        return copy;
+    }
+
+    private long dayOf(long timestamp) {
+        return LocalDate.ofInstant(Instant.ofEpochMilli(timestamp), zone).toEpochDay();
+    }
+
+    private long toMillis(LocalDateTime time) {
+        return time.atZone(zone).toInstant().toEpochMilli();
+    }
+
+    private static long hourFloor(long millis) {
+        return Math.floorDiv(millis, HOUR_MILLIS);
+    }
+
+    private static long hourCeil(long millis) {
+        return -Math.floorDiv(-millis, HOUR_MILLIS);
+    }
+
+    private static void addTo(TreeMap<Long, Bucket> buckets, long key, long units, long revenue) {
+        Bucket bucket = buckets.computeIfAbsent(key, k -> new Bucket());
+        bucket.units += units;
+        bucket.revenue += revenue;
+    }
+
+    private static void sumInto(Bucket total, Map<Long, Bucket> buckets) {
+        for (Bucket b : buckets.values()) {
+            total.units += b.units;
+            total.revenue += b.revenue;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package org.minimarket.storageAccess;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * SqlDatabase is the embedded, file-based SQL database used by the SQL
+ * repositories. It runs inside this process (H2); there is no server.
+ *
+ * One connection is shared by the repositories. JDBC transactions belong to
+ * a connection, so every use of it is synchronized on this object; a
+ * repository holds the lock for the whole of a transaction.
+ *
+ * Tables and indexes are created on open if they are missing:
+ *
+ *      products (name primary key, price_pennies, quantity, category, reorder_point)
+ *      sales    (row_no primary key, product_name, quantity, amount_pennies, sold_at)
+ *               indexed on sold_at and product_name
+ *      users    (username primary key, password, role)
+ *
+ * The primary key on products.name is its name index; it serves both lookups
+ * and the one-row updates of stock changes.
+ */
+public class SqlDatabase implements AutoCloseable {
+
+    private static final String[] SCHEMA = {
+            "CREATE TABLE IF NOT EXISTS products ("
+                    + "name VARCHAR(255) PRIMARY KEY, "
+                    + "price_pennies BIGINT NOT NULL, "
+                    + "quantity INT NOT NULL, "
+                    + "category VARCHAR(255) NOT NULL, "
+                    + "reorder_point INT NOT NULL)",
+            "CREATE TABLE IF NOT EXISTS sales ("
+                    + "row_no BIGINT PRIMARY KEY, "
+                    + "product_name VARCHAR(255) NOT NULL, "
+                    + "quantity INT NOT NULL, "
+                    + "amount_pennies BIGINT NOT NULL, "
+                    + "sold_at BIGINT NOT NULL)",
+            "CREATE INDEX IF NOT EXISTS sales_sold_at ON sales (sold_at)",
+            "CREATE INDEX IF NOT EXISTS sales_product_name ON sales (product_name)",
+            "CREATE TABLE IF NOT EXISTS users ("
+                    + "username VARCHAR(255) PRIMARY KEY, "
+                    + "password VARCHAR(255) NOT NULL, "
+                    + "role VARCHAR(64) NOT NULL)"
+    };
+
+    private final Connection connection;
+
+    /**
+     * Opens (or creates) a database and its tables.
+     *
+     * @param url a JDBC URL, e.g. "jdbc:h2:file:/path/to/minimarket"
+     * @throws SQLException if the database cannot be opened
+     */
+    public SqlDatabase(String url) throws SQLException {
+        connection = DriverManager.getConnection(url, "sa", "");
+        try (Statement statement = connection.createStatement()) {
+            for (String sql : SCHEMA) {
+                statement.execute(sql);
+            }
+        } catch (SQLException e) {
+            connection.close();
+            throw e;
+        }
+    }
+
+    /**
+     * The shared connection, in auto-commit mode. Synchronize on this
+     * database while using it.
+     */
+    public Connection getConnection() {
+        return connection;
+    }
+
+    /**
+     * Rolls back the current transaction; failures are reported, not thrown,
+     * so the original error is the one handled.
+     */
+    public void rollback() {
+        try {
+            connection.rollback();
+        } catch (SQLException e) {
+            System.err.println("Error rolling back: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Returns the connection to auto-commit mode after a transaction.
+     */
+    public void endTransaction() {
+        try {
+            connection.setAutoCommit(true);
+        } catch (SQLException e) {
+            System.err.println("Error ending transaction: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public synchronized void close() throws SQLException {
+        connection.close();
+    }
+}
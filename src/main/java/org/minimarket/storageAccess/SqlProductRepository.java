@@ -0,0 +1,169 @@
+package org.minimarket.storageAccess;
+
+import org.minimarket.catalogue.Product;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * SqlProductRepository keeps the catalogue in the products table of a
+ * {@link SqlDatabase}.
+ *
+ * Stock changes update one row by its name (the primary key) with
+ * {@code quantity = quantity + delta}, so the database adds concurrent
+ * changes up. Saving the whole catalogue is one transaction of batched
+ * statements.
+ */
+public class SqlProductRepository implements ProductRepository {
+
+    /** Statements sent to the database at a time. */
+    private static final int BATCH_SIZE = 500;
+
+    private static final String MERGE =
+            "MERGE INTO products (name, price_pennies, quantity, category, reorder_point) KEY (name) "
+                    + "VALUES (?, ?, ?, ?, ?)";
+
+    private final SqlDatabase database;
+
+    public SqlProductRepository(SqlDatabase database) {
+        this.database = database;
+    }
+
+    @Override
+    public List<Product> loadProducts() {
+        List<Product> loaded = new ArrayList<>();
+        synchronized (database) {
+            try (Statement statement = database.getConnection().createStatement();
+                 ResultSet rs = statement.executeQuery(
+                         "SELECT name, price_pennies, quantity, category, reorder_point FROM products")) {
+                while (rs.next()) {
+                    String name = rs.getString(1);
+                    Product product = new Product(name, 0, rs.getInt(3), rs.getString(4), "/images/" + name + ".png");
+                    product.setPricePennies(rs.getLong(2));
+                    product.setReorderPoint(rs.getInt(5));
+                    loaded.add(product);
+                }
+            } catch (SQLException e) {
+                System.err.println("Error loading products: " + e.getMessage());
+            }
+        }
+        return loaded;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        synchronized (database) {
+            try (Statement statement = database.getConnection().createStatement();
+                 ResultSet rs = statement.executeQuery("SELECT 1 FROM products LIMIT 1")) {
+                return !rs.next();
+            } catch (SQLException e) {
+                System.err.println("Error reading products: " + e.getMessage());
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Replaces every row in one transaction, sending the rows in batches.
+     */
+    @Override
+    public void saveProducts(List<Product> products) {
+        synchronized (database) {
+            Connection connection = database.getConnection();
+            try {
+                connection.setAutoCommit(false);
+                try (Statement statement = connection.createStatement();
+                     PreparedStatement merge = connection.prepareStatement(MERGE)) {
+                    statement.executeUpdate("DELETE FROM products");
+
+                    int pending = 0;
+                    for (Product p : products) {
+                        bind(merge, p);
+                        merge.addBatch();
+                        if (++pending == BATCH_SIZE) {
+                            merge.executeBatch();
+                            pending = 0;
+                        }
+                    }
+                    if (pending > 0) {
+                        merge.executeBatch();
+                    }
+                }
+                connection.commit();
+            } catch (SQLException e) {
+                database.rollback();
+                System.err.println("Error saving products: " + e.getMessage());
+            } finally {
+                database.endTransaction();
+            }
+        }
+    }
+
+    @Override
+    public void saveProduct(String oldName, Product product) {
+        synchronized (database) {
+            Connection connection = database.getConnection();
+            try {
+                connection.setAutoCommit(false);
+                if (oldName != null && !oldName.equals(product.getName())) {
+                    try (PreparedStatement delete = connection.prepareStatement("DELETE FROM products WHERE name = ?")) {
+                        delete.setString(1, oldName);
+                        delete.executeUpdate();
+                    }
+                }
+                try (PreparedStatement merge = connection.prepareStatement(MERGE)) {
+                    bind(merge, product);
+                    merge.executeUpdate();
+                }
+                connection.commit();
+            } catch (SQLException e) {
+                database.rollback();
+                System.err.println("Error saving product: " + e.getMessage());
+            } finally {
+                database.endTransaction();
+            }
+        }
+    }
+
+    @Override
+    public void removeProduct(Product product) {
+        synchronized (database) {
+            try (PreparedStatement delete = database.getConnection()
+                    .prepareStatement("DELETE FROM products WHERE name = ?")) {
+                delete.setString(1, product.getName());
+                delete.executeUpdate();
+            } catch (SQLException e) {
+                System.err.println("Error removing product: " + e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public void recordStockChange(Product product, int delta) {
+        synchronized (database) {
+            try (PreparedStatement update = database.getConnection()
+                    .prepareStatement("UPDATE products SET quantity = quantity + ? WHERE name = ?")) {
+                update.setInt(1, delta);
+                update.setString(2, product.getName());
+                if (update.executeUpdate() == 0) {
+                    saveProduct(null, product);
+                }
+            } catch (SQLException e) {
+                System.err.println("Error saving stock change: " + e.getMessage());
+            }
+        }
+    }
+
+    private static void bind(PreparedStatement merge, Product p) throws SQLException {
+        merge.setString(1, p.getName());
+        merge.setLong(2, p.getPricePennies());
+        merge.setInt(3, p.getQuantity());
+        merge.setString(4, p.getCategory());
+        merge.setInt(5, p.getReorderPoint());
+    }
+}
@@ -0,0 +1,282 @@
+package org.minimarket.storageAccess;
+
+import org.minimarket.catalogue.SaleRecord;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * SqlSalesRepository keeps sale records in the sales table of a
+ * {@link SqlDatabase}.
+ *
+ * A checkout's records are inserted as one batch in one transaction, so a
+ * cart is stored whole or not at all. Each row gets the next row number
+ * while the database lock is held, so pages of the report are key ranges
+ * on the primary key and the count needs no query. Time-range totals use
+ * the index on sold_at.
+ */
+public class SqlSalesRepository implements SalesRepository {
+
+    private static final long HOUR_MILLIS = 3_600_000L;
+
+    /** Rows read at a time when importing another repository's sales. */
+    private static final int IMPORT_PAGE = 4096;
+
+    private final SqlDatabase database;
+
+    /** Row number for the next sale; guarded by the database lock. */
+    private long nextRow;
+
+    /**
+     * @throws SQLException if the existing sales cannot be counted
+     */
+    public SqlSalesRepository(SqlDatabase database) throws SQLException {
+        this.database = database;
+        synchronized (database) {
+            try (Statement statement = database.getConnection().createStatement();
+                 ResultSet rs = statement.executeQuery("SELECT COALESCE(MAX(row_no) + 1, 0) FROM sales")) {
+                rs.next();
+                nextRow = rs.getLong(1);
+            }
+        }
+    }
+
+    /**
+     * Inserts the records as one batch in one transaction.
+     */
+    @Override
+    public boolean saveSaleRecords(List<SaleRecord> records) {
+        if (records.isEmpty()) {
+            return true;
+        }
+        synchronized (database) {
+            Connection connection = database.getConnection();
+            try {
+                connection.setAutoCommit(false);
+                long row = nextRow;
+                try (PreparedStatement insert = connection.prepareStatement(
+                        "INSERT INTO sales (row_no, product_name, quantity, amount_pennies, sold_at) "
+                                + "VALUES (?, ?, ?, ?, ?)")) {
+                    for (SaleRecord record : records) {
+                        insert.setLong(1, row++);
+                        insert.setString(2, record.getProductName());
+                        insert.setInt(3, record.getQuantity());
+                        insert.setLong(4, record.getSubtotalPennies());
+                        insert.setLong(5, record.getTimestamp());
+                        insert.addBatch();
+                    }
+                    insert.executeBatch();
+                }
+                connection.commit();
+                nextRow = row;
+                return true;
+            } catch (SQLException e) {
+                database.rollback();
+                System.err.println("Error writing sales: " + e.getMessage());
+                return false;
+            } finally {
+                database.endTransaction();
+            }
+        }
+    }
+
+    /**
+     * Records are written before saveSaleRecords returns, so there is nothing to wait for.
+     */
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public long loadTotalSalesPennies() {
+        synchronized (database) {
+            try (Statement statement = database.getConnection().createStatement();
+                 ResultSet rs = statement.executeQuery("SELECT COALESCE(SUM(amount_pennies), 0) FROM sales")) {
+                rs.next();
+                return rs.getLong(1);
+            } catch (SQLException e) {
+                System.err.println("Error reading sales total: " + e.getMessage());
+                return 0;
+            }
+        }
+    }
+
+    @Override
+    public long getSaleRecordCount() {
+        synchronized (database) {
+            return nextRow;
+        }
+    }
+
+    @Override
+    public List<SaleRecord> loadSaleRecords(long fromRow, int count) {
+        List<SaleRecord> records = new ArrayList<>(Math.max(0, count));
+        synchronized (database) {
+            try (PreparedStatement select = database.getConnection().prepareStatement(
+                    "SELECT product_name, quantity, amount_pennies, sold_at FROM sales "
+                            + "WHERE row_no >= ? AND row_no < ? ORDER BY row_no")) {
+                select.setLong(1, fromRow);
+                select.setLong(2, fromRow + count);
+                try (ResultSet rs = select.executeQuery()) {
+                    while (rs.next()) {
+                        records.add(SaleRecord.ofPennies(rs.getString(1), rs.getInt(2), rs.getLong(3), rs.getLong(4)));
+                    }
+                }
+            } catch (SQLException e) {
+                System.err.println("Error reading sales: " + e.getMessage());
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Exact totals for [from, to), read through the sold_at index.
+     */
+    @Override
+    public SalesRollups.Bucket loadSalesBetween(LocalDateTime from, LocalDateTime to) {
+        ZoneId zone = ZoneId.systemDefault();
+        synchronized (database) {
+            try (PreparedStatement select = database.getConnection().prepareStatement(
+                    "SELECT COALESCE(SUM(quantity), 0), COALESCE(SUM(amount_pennies), 0) FROM sales "
+                            + "WHERE sold_at >= ? AND sold_at < ?")) {
+                select.setLong(1, from.atZone(zone).toInstant().toEpochMilli());
+                select.setLong(2, to.atZone(zone).toInstant().toEpochMilli());
+                try (ResultSet rs = select.executeQuery()) {
+                    rs.next();
+                    return new SalesRollups.Bucket(rs.getLong(1), rs.getLong(2));
+                }
+            } catch (SQLException e) {
+                System.err.println("Error reading sales: " + e.getMessage());
+                return new SalesRollups.Bucket();
+            }
+        }
+    }
+
+    /**
+     * Sums sales per hour and per local day in the database. Day buckets are
+     * summed over the day's own start and end instants rather than built from
+     * hours, so they are right in zones whose offset is not a whole number of
+     * hours and across daylight-saving changes.
+     */
+    @Override
+    public SalesRollups loadRollups() {
+        return loadRollups(ZoneId.systemDefault());
+    }
+
+    SalesRollups loadRollups(ZoneId zone) {
+        SalesRollups rollups = new SalesRollups(zone);
+        synchronized (database) {
+            Connection connection = database.getConnection();
+            long firstHour = Long.MAX_VALUE;
+            long lastHour = Long.MIN_VALUE;
+            try (Statement statement = connection.createStatement();
+                 ResultSet rs = statement.executeQuery(
+                         "SELECT sold_at / " + HOUR_MILLIS + " AS epoch_hour, SUM(quantity), SUM(amount_pennies) "
+                                 + "FROM sales WHERE sold_at > 0 GROUP BY epoch_hour")) {
+                while (rs.next()) {
+                    long hour = rs.getLong(1);
+                    rollups.putHour(hour, rs.getLong(2), rs.getLong(3));
+                    firstHour = Math.min(firstHour, hour);
+                    lastHour = Math.max(lastHour, hour);
+                }
+            } catch (SQLException e) {
+                System.err.println("Error reading sales rollups: " + e.getMessage());
+                return rollups;
+            }
+            if (firstHour > lastHour) {
+                return rollups;
+            }
+
+            // One row per local day from the first sale to the last, joined to the sales it holds
+            LocalDate first = LocalDate.ofInstant(Instant.ofEpochMilli(firstHour * HOUR_MILLIS), zone);
+            LocalDate last = LocalDate.ofInstant(Instant.ofEpochMilli((lastHour + 1) * HOUR_MILLIS - 1), zone);
+            int days = (int) (last.toEpochDay() - first.toEpochDay() + 1);
+            Long[] epochDays = new Long[days];
+            Long[] starts = new Long[days];
+            Long[] ends = new Long[days];
+            for (int i = 0; i < days; i++) {
+                LocalDate day = first.plusDays(i);
+                epochDays[i] = day.toEpochDay();
+                starts[i] = day.atStartOfDay(zone).toInstant().toEpochMilli();
+                ends[i] = day.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli();
+            }
+            try (PreparedStatement select = connection.prepareStatement(
+                    "SELECT d.epoch_day, SUM(s.quantity), SUM(s.amount_pennies) "
+                            + "FROM UNNEST(?, ?, ?) AS d(epoch_day, day_start, day_end) "
+                            + "JOIN sales s ON s.sold_at >= d.day_start AND s.sold_at < d.day_end "
+                            + "GROUP BY d.epoch_day")) {
+                select.setArray(1, connection.createArrayOf("BIGINT", epochDays));
+                select.setArray(2, connection.createArrayOf("BIGINT", starts));
+                select.setArray(3, connection.createArrayOf("BIGINT", ends));
+                try (ResultSet rs = select.executeQuery()) {
+                    while (rs.next()) {
+                        rollups.putDay(rs.getLong(1), rs.getLong(2), rs.getLong(3));
+                    }
+                }
+            } catch (SQLException e) {
+                System.err.println("Error reading sales rollups: " + e.getMessage());
+            }
+        }
+        return rollups;
+    }
+
+    @Override
+    public SalesAnalytics.Result analyseSales(LocalDateTime from, LocalDateTime to) {
+        ZoneId zone = ZoneId.systemDefault();
+        long fromMillis = from != null ? from.atZone(zone).toInstant().toEpochMilli() : Long.MIN_VALUE;
+        long toMillis = to != null ? to.atZone(zone).toInstant().toEpochMilli() : Long.MAX_VALUE;
+
+        List<String> names = new ArrayList<>();
+        List<long[]> totals = new ArrayList<>();
+        long rows = 0;
+        synchronized (database) {
+            try (PreparedStatement select = database.getConnection().prepareStatement(
+                    "SELECT product_name, SUM(quantity), SUM(amount_pennies), COUNT(*) FROM sales "
+                            + "WHERE sold_at >= ? AND sold_at < ? GROUP BY product_name")) {
+                select.setLong(1, fromMillis);
+                select.setLong(2, toMillis);
+                try (ResultSet rs = select.executeQuery()) {
+                    while (rs.next()) {
+                        names.add(rs.getString(1));
+                        totals.add(new long[]{rs.getLong(2), rs.getLong(3)});
+                        rows += rs.getLong(4);
+                    }
+                }
+            } catch (SQLException e) {
+                System.err.println("Error analysing sales: " + e.getMessage());
+                return null;
+            }
+        }
+
+        long[] units = new long[names.size()];
+        long[] pennies = new long[names.size()];
+        for (int id = 0; id < names.size(); id++) {
+            units[id] = totals.get(id)[0];
+            pennies[id] = totals.get(id)[1];
+        }
+        return new SalesAnalytics.Result(units, pennies, rows, names::get, SalesFileManager::categoryOf);
+    }
+
+    /**
+     * Copies every sale from another repository, in pages, keeping their order.
+     *
+     * @return the number of sales copied
+     */
+    public long importFrom(SalesRepository source) {
+        source.flush();
+        long count = source.getSaleRecordCount();
+        for (long row = 0; row < count; row += IMPORT_PAGE) {
+            saveSaleRecords(source.loadSaleRecords(row, IMPORT_PAGE));
+        }
+        return count;
+    }
+}
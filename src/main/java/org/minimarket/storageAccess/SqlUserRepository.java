@@ -0,0 +1,68 @@
+package org.minimarket.storageAccess;
+
+import org.minimarket.auth.User;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * SqlUserRepository keeps user accounts in the users table of a
+ * {@link SqlDatabase}.
+ */
+public class SqlUserRepository implements UserRepository {
+
+    private final SqlDatabase database;
+
+    public SqlUserRepository(SqlDatabase database) {
+        this.database = database;
+    }
+
+    @Override
+    public List<User> loadUsers() {
+        List<User> users = new ArrayList<>();
+        synchronized (database) {
+            try (Statement statement = database.getConnection().createStatement();
+                 ResultSet rs = statement.executeQuery("SELECT username, password, role FROM users")) {
+                while (rs.next()) {
+                    users.add(new User(rs.getString(1), rs.getString(2), rs.getString(3)));
+                }
+            } catch (SQLException e) {
+                System.err.println("Could not load users: " + e.getMessage());
+            }
+        }
+        return users;
+    }
+
+    /**
+     * Adds or replaces the given users in one transaction.
+     */
+    public void saveUsers(List<User> users) {
+        synchronized (database) {
+            Connection connection = database.getConnection();
+            try {
+                connection.setAutoCommit(false);
+                try (PreparedStatement merge = connection.prepareStatement(
+                        "MERGE INTO users (username, password, role) KEY (username) VALUES (?, ?, ?)")) {
+                    for (User user : users) {
+                        merge.setString(1, user.getUsername());
+                        merge.setString(2, user.getPassword());
+                        merge.setString(3, user.getRole());
+                        merge.addBatch();
+                    }
+                    merge.executeBatch();
+                }
+                connection.commit();
+            } catch (SQLException e) {
+                database.rollback();
+                System.err.println("Could not save users: " + e.getMessage());
+            } finally {
+                database.endTransaction();
+            }
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package org.minimarket.storageAccess;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * StockJournal is an append-only write-ahead log of stock changes.
+ *
+ * Instead of rewriting products.csv every time one unit is sold, each change
+ * is appended as a single line:
+ *
+ *      sequence,productName,delta,timestampMillis
+ *
+ * Entries carry an increasing sequence number. The products.csv snapshot
+ * records the last sequence it already contains, so replay only applies newer
+ * entries, even if the process stopped between writing a snapshot and
+ * truncating the journal.
+ *
+ * A line that was only half written when the process died is dropped when
+ * the journal is reopened, so later appends always start on a clean line.
+ */
+public class StockJournal implements AutoCloseable {
+
+    /** A single replayed journal entry. */
+    public static class Entry {
+        private final long sequence;
+        private final String productName;
+        private final int delta;
+        private final long timestamp;
+
+        public Entry(long sequence, String productName, int delta, long timestamp) {
+            this.sequence = sequence;
+            this.productName = productName;
+            this.delta = delta;
+            this.timestamp = timestamp;
+        }
+
+        public long getSequence() { return sequence; }
+        public String getProductName() { return productName; }
+        public int getDelta() { return delta; }
+        public long getTimestamp() { return timestamp; }
+    }
+
+    /** Receives entries during replay. */
+    public interface EntryHandler {
+        void apply(Entry entry);
+    }
+
+    // Stands for a malformed line while reading
+    private static final Entry SKIPPED = new Entry(0, "", 0, 0);
+
+    private final Path file;
+    private final FileChannel channel;
+
+    /** Highest sequence number written or found in the journal. */
+    private long lastSequence;
+
+    /** Number of entries currently in the journal (since the last reset). */
+    private int entryCount;
+
+    /**
+     * Opens (or creates) a journal file and recovers its state.
+     * A torn final line is cut off before any new entry is appended.
+     *
+     * @param file the journal file
+     * @throws IOException if the file cannot be opened
+     */
+    public StockJournal(Path file) throws IOException {
+        this.file = file;
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        this.channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        recover();
+    }
+
+    /**
+     * Appends one stock change to the journal.
+     * The line is written with a single positional write at the end of the file.
+     *
+     * @param productName the product whose stock changed
+     * @param delta       the change in units (negative for a sale)
+     * @return the sequence number given to the entry
+     */
+    public synchronized long append(String productName, int delta) {
+        long sequence = lastSequence + 1;
+        String line = sequence + "," + productName + "," + delta + "," + System.currentTimeMillis() + "\n";
+        ByteBuffer buffer = ByteBuffer.wrap(line.getBytes(StandardCharsets.UTF_8));
+
+        try {
+            long position = channel.size();
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error appending to stock journal", e);
+        }
+
+        lastSequence = sequence;
+        entryCount++;
+        return sequence;
+    }
+
+    /**
+     * Replays every entry with a sequence number greater than afterSequence.
+     *
+     * @param afterSequence the last sequence already contained in the snapshot
+     * @param handler       receives each newer entry in order
+     * @return the number of entries replayed
+     */
+    public synchronized int replay(long afterSequence, EntryHandler handler) {
+        int replayed = 0;
+
+        try {
+            CsvReader row = CsvReader.open(file);
+            while (true) {
+                Entry entry = parse(row);
+                if (entry == null) {
+                    break;
+                }
+                if (entry != SKIPPED && entry.getSequence() > afterSequence) {
+                    handler.apply(entry);
+                    replayed++;
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error replaying stock journal: " + e.getMessage());
+        }
+
+        return replayed;
+    }
+
+    /**
+     * Empties the journal after its entries were folded into a snapshot.
+     * Sequence numbers keep counting up so older snapshots stay comparable.
+     */
+    public synchronized void reset() {
+        try {
+            channel.truncate(0);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error truncating stock journal", e);
+        }
+        entryCount = 0;
+    }
+
+    /**
+     * Makes sure later sequence numbers are greater than the given value.
+     * Used when a snapshot was written by a journal that no longer exists.
+     */
+    public synchronized void advanceTo(long sequence) {
+        lastSequence = Math.max(lastSequence, sequence);
+    }
+
+    public synchronized long getLastSequence() {
+        return lastSequence;
+    }
+
+    public synchronized int getEntryCount() {
+        return entryCount;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        channel.close();
+    }
+
+    // Reads the existing journal, counts entries and cuts off a torn last line.
+    // The journal is compacted regularly, so reading it whole here is cheap.
+    private void recover() throws IOException {
+        byte[] content = Files.readAllBytes(file);
+
+        // Everything after the final newline was cut short by a crash
+        int validLength = content.length;
+        while (validLength > 0 && content[validLength - 1] != '\n') {
+            validLength--;
+        }
+
+        CsvReader row = new CsvReader(ByteBuffer.wrap(content, 0, validLength));
+        while (true) {
+            Entry entry = parse(row);
+            if (entry == null) {
+                break;
+            }
+            if (entry != SKIPPED) {
+                lastSequence = Math.max(lastSequence, entry.getSequence());
+                entryCount++;
+            }
+        }
+
+        if (validLength < content.length) {
+            channel.truncate(validLength);
+        }
+    }
+
+    // Reads the next journal line: null at the end, SKIPPED for anything malformed
+    private static Entry parse(CsvReader row) {
+        try {
+            if (!row.next()) {
+                return null;
+            }
+            if (row.getFieldCount() != 4) {
+                return SKIPPED;
+            }
+            return new Entry(row.getLong(0), row.getString(1), row.getInt(2), row.getLong(3));
+        } catch (CsvFormatException e) {
+            return SKIPPED;
+        }
+    }
+}
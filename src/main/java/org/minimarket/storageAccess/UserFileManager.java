@@ -1,8 +1,7 @@
 package org.minimarket.storageAccess;
 
 import org.minimarket.auth.User;
-import java.io.BufferedReader;
-import java.io.FileReader;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -12,7 +11,7 @@ import java.util.List;
  * User objects which are then used by the LoginController to validate
  * login credentials.
  */
-public class UserFileManager {
+public class UserFileManager implements UserRepository {
 
     // Path to the CSV file that stores all usernames, passwords, and roles
     private static final String USER_FILE = "src/main/resources/data/users.csv";
@@ -21,27 +20,25 @@ public class UserFileManager {
      * Loads all user records from the users.csv file.
      * @return a list of User objects representing all registered users
      */
-    public static List<User> loadUsers() {
+    @Override
+    public List<User> loadUsers() {
         List<User> users = new ArrayList<>();
 
-        try (BufferedReader br = new BufferedReader(new FileReader(USER_FILE))) {
-
-            String line;
-            br.readLine();
-
-            // Read each remaining line and convert it into a User object
-            while ((line = br.readLine()) != null) {
-                String[] parts = line.split(",");
+        try {
+            CsvReader csv = CsvReader.open(Paths.get(USER_FILE));
+            csv.next(); // header
 
+            // Convert each remaining row into a User object
+            csv.forEachRow(USER_FILE, row -> {
                 // Ensure the CSV row has all required fields
-                if (parts.length >= 3) {
-                    String username = parts[0].trim();
-                    String password = parts[1].trim();
-                    String role = parts[2].trim();
+                if (row.getFieldCount() >= 3) {
+                    String username = row.getTrimmedString(0);
+                    String password = row.getTrimmedString(1);
+                    String role = row.getTrimmedString(2);
 
                     users.add(new User(username, password, role));
                 }
-            }
+            });
 
         } catch (Exception e) {
             // Display error in console if the file cannot be read
@@ -0,0 +1,18 @@
+package org.minimarket.storageAccess;
+
+import org.minimarket.auth.User;
+
+import java.util.List;
+
+/**
+ * Where user accounts are stored.
+ */
+public interface UserRepository {
+
+    /**
+     * Loads every registered user.
+     *
+     * @return the users, or an empty list if none could be read
+     */
+    List<User> loadUsers();
+}
@@ -0,0 +1,88 @@
+package org.minimarket.utility;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.ToLongFunction;
+
+/**
+ * BoundedLruCache is a least-recently-used cache limited by a total weight
+ * (for example an estimate of bytes) rather than by a number of entries.
+ *
+ * Each value is weighed once when it is added. When the total goes over the
+ * budget, the entries used longest ago are dropped until it fits again.
+ * A single value heavier than the whole budget is not kept at all.
+ *
+ * Not thread safe; callers use it from a single thread or lock around it.
+ */
+public class BoundedLruCache<K, V> {
+
+    private final long budget;
+    private final ToLongFunction<V> weigher;
+    private final LinkedHashMap<K, V> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long weight;
+    private long evictions;
+
+    /**
+     * @param budget  the largest total weight to keep
+     * @param weigher gives the weight of a value
+     */
+    public BoundedLruCache(long budget, ToLongFunction<V> weigher) {
+        this.budget = budget;
+        this.weigher = weigher;
+    }
+
+    /**
+     * Returns the cached value and marks it as recently used, or null.
+     */
+    public V get(K key) {
+        return entries.get(key);
+    }
+
+    /**
+     * Adds or replaces a value, then evicts old entries to stay in budget.
+     */
+    public void put(K key, V value) {
+        V old = entries.remove(key);
+        if (old != null) {
+            weight -= weigher.applyAsLong(old);
+        }
+
+        long w = weigher.applyAsLong(value);
+        if (w > budget) {
+            return;
+        }
+        entries.put(key, value);
+        weight += w;
+
+        Iterator<Map.Entry<K, V>> eldest = entries.entrySet().iterator();
+        while (weight > budget && eldest.hasNext()) {
+            weight -= weigher.applyAsLong(eldest.next().getValue());
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /** Total weight of the cached values. */
+    public long getWeight() {
+        return weight;
+    }
+
+    public long getBudget() {
+        return budget;
+    }
+
+    /** Number of entries dropped to stay within the budget. */
+    public long getEvictions() {
+        return evictions;
+    }
+
+    public void clear() {
+        entries.clear();
+        weight = 0;
+    }
+}
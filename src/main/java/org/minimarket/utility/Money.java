@@ -0,0 +1,176 @@
+package org.minimarket.utility;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Money amounts as a whole number of pennies held in a long.
+ *
+ * Prices, subtotals and totals are stored this way throughout the catalogue,
+ * the cart and the sales log, so sums are exact however many sales are added
+ * up, and adding two amounts is a plain long addition with no objects created.
+ * Doubles are only used at the edges, for the existing getters that return
+ * pounds.
+ *
+ * Formatting skips String.format: amounts are written digit by digit, and the
+ * strings for amounts up to {@link #CACHED_PENNIES} are cached once built,
+ * so prices shown again and again on screen are not re-rendered.
+ */
+public final class Money {
+
+    /** Amounts below this (in pennies) have their formatted text cached. */
+    public static final int CACHED_PENNIES = 100_000;
+
+    private static final String[] cache = new String[CACHED_PENNIES];
+
+    /** Returned by parsePlain for text it does not read itself; never a parsed amount. */
+    private static final long NOT_PLAIN = Long.MIN_VALUE;
+
+    /** The characters being parsed, by index: a String's chars or a buffer's bytes. */
+    private interface Chars {
+        int at(int index);
+    }
+
+    private Money() {
+    }
+
+    /**
+     * Converts pounds to pennies, rounding to the nearest penny.
+     */
+    public static long ofPounds(double pounds) {
+        return Math.round(pounds * 100);
+    }
+
+    /**
+     * Converts pennies to pounds, for code that still works in doubles.
+     */
+    public static double toPounds(long pennies) {
+        return pennies / 100.0;
+    }
+
+    /**
+     * Price of several units; fails rather than overflowing.
+     */
+    public static long times(long unitPennies, int quantity) {
+        return Math.multiplyExact(unitPennies, quantity);
+    }
+
+    /**
+     * Parses an amount in pounds such as "12", "12.5", "12.50" or "-0.99"
+     * exactly, without going through a double. Text that is not a plain
+     * decimal (e.g. "1.0E7", as older files may contain) is parsed as a double.
+     *
+     * @param text the amount in pounds
+     * @return the amount in pennies
+     * @throws NumberFormatException if the text is not a number
+     */
+    public static long parse(CharSequence text) {
+        long amount = parsePlain(text::charAt, 0, text.length());
+        return amount != NOT_PLAIN ? amount : ofPounds(Double.parseDouble(text.toString()));
+    }
+
+    /**
+     * Parses an amount held as ASCII bytes in {@code buffer[from, to)}, the
+     * same way as {@link #parse(CharSequence)}, without making a String
+     * unless the bytes are not a plain decimal.
+     *
+     * @throws NumberFormatException if the bytes are not a number
+     */
+    public static long parse(ByteBuffer buffer, int from, int to) {
+        long amount = parsePlain(buffer::get, from, to);
+        if (amount != NOT_PLAIN) {
+            return amount;
+        }
+        byte[] bytes = new byte[to - from];
+        buffer.get(from, bytes);
+        return ofPounds(Double.parseDouble(new String(bytes, StandardCharsets.UTF_8)));
+    }
+
+    // Reads [from, to) as an optional sign, digits and at most one point, rounding
+    // half up to the penny; NOT_PLAIN if it is anything else or has no digits
+    private static long parsePlain(Chars text, int from, int to) {
+        int i = from;
+        boolean negative = false;
+        if (i < to && (text.at(i) == '-' || text.at(i) == '+')) {
+            negative = text.at(i) == '-';
+            i++;
+        }
+
+        long pounds = 0;
+        long pennies = 0;
+        int decimals = 0;
+        boolean digits = false;
+        boolean point = false;
+        boolean roundUp = false;
+
+        for (; i < to; i++) {
+            int c = text.at(i);
+            if (c >= '0' && c <= '9') {
+                digits = true;
+                if (!point) {
+                    pounds = Math.addExact(Math.multiplyExact(pounds, 10), c - '0');
+                } else if (decimals < 2) {
+                    pennies = pennies * 10 + (c - '0');
+                    decimals++;
+                } else if (decimals == 2) {
+                    roundUp = c >= '5';
+                    decimals++;
+                }
+            } else if (c == '.' && !point) {
+                point = true;
+            } else {
+                return NOT_PLAIN;
+            }
+        }
+        if (!digits) {
+            return NOT_PLAIN;
+        }
+
+        if (decimals == 1) {
+            pennies *= 10;
+        }
+        long amount = Math.addExact(Math.multiplyExact(pounds, 100), pennies) + (roundUp ? 1 : 0);
+        return negative ? -amount : amount;
+    }
+
+    /**
+     * Formats an amount with a pound sign, e.g. "£12.50".
+     */
+    public static String format(long pennies) {
+        if (pennies >= 0 && pennies < CACHED_PENNIES) {
+            String cached = cache[(int) pennies];
+            if (cached == null) {
+                cached = appendTo(new StringBuilder(12).append('£'), pennies).toString();
+                cache[(int) pennies] = cached;
+            }
+            return cached;
+        }
+        return appendTo(new StringBuilder(24).append('£'), pennies).toString();
+    }
+
+    /**
+     * Formats an amount without a currency sign, e.g. "12.50", as stored in files.
+     */
+    public static String toPlainString(long pennies) {
+        return appendTo(new StringBuilder(24), pennies).toString();
+    }
+
+    /**
+     * Appends an amount with two decimal places (no currency sign).
+     *
+     * @return the builder, for chaining
+     */
+    public static StringBuilder appendTo(StringBuilder sb, long pennies) {
+        if (pennies < 0) {
+            sb.append('-');
+            // Long.MIN_VALUE has no positive counterpart; work on the unsigned remainder
+            long pounds = -(pennies / 100);
+            int fraction = (int) -(pennies % 100);
+            sb.append(pounds).append('.');
+            return fraction < 10 ? sb.append('0').append(fraction) : sb.append(fraction);
+        }
+        sb.append(pennies / 100).append('.');
+        int fraction = (int) (pennies % 100);
+        return fraction < 10 ? sb.append('0').append(fraction) : sb.append(fraction);
+    }
+}
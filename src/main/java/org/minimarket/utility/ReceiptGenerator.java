@@ -1,79 +1,89 @@
 package org.minimarket.utility;
 
-import java.io.File;
-import java.io.FileWriter;
+import org.minimarket.catalogue.CartItem;
+
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
 import java.util.List;
 
 /**
  * Utility class responsible for generating transaction receipts.
- * The receipt is created as a timestamped .txt file and stored inside
- * a dedicated "receipts" folder. This class is used by the BuyerController
- * after successful checkout.
+ * Receipts are rendered here and stored by the {@link ReceiptPipeline} in the
+ * segmented receipt archive inside the "receipts" folder.
+ *
+ * Receipts are rendered in one pass into a StringBuilder sized for the
+ * number of lines, with the columns padded by hand and amounts written by
+ * {@link Money} rather than through String.format.
  */
 public class ReceiptGenerator {
-    /**
-     * Creates a receipt file using item strings from the cart.
-     * Each item is formatted as: "Product Name - £Price"
-     *
-     * @param items A list of cart item strings representing purchased items.
-     * @param total The total cost of the transaction.
-     * @return The file path of the generated receipt.
-     */
-    public static String createReceiptFromStrings(List<String> items, double total) {
-        String filename = "";
 
-        try {
-            // Create receipts folder if it does not exist
-            File folder = new File("receipts");
-            if (!folder.exists()) {
-                folder.mkdir();
-            }
+    /** Default folder receipts are written to. */
+    public static final String RECEIPTS_FOLDER = "receipts";
 
-            // Create a timestamp for file naming (ensures unique receipts)
-            String timestamp = LocalDateTime.now()
-                    .format(DateTimeFormatter.ofPattern("yyyy-MM-dd_HH-mm-ss"));
+    private static final String HEADER = "========== MINI MARKET RECEIPT ==========\n";
+    private static final String RULE = "--------------------------------------------\n";
+    private static final String FOOTER = "============================================\n\n"
+            + "Thank you for shopping at Mini Market!\n";
 
-            // Full file path for the new receipt
-            filename = "receipts/receipt_" + timestamp + ".txt";
+    /** Rough size of the fixed parts of a receipt and of one item line. */
+    private static final int FIXED_CHARS = 320;
+    private static final int CHARS_PER_LINE = 40;
 
-            // Write receipt content to file
-            FileWriter writer = new FileWriter(filename);
-
-            writer.write("========== MINI MARKET RECEIPT ==========\n");
-            writer.write("Date: " + LocalDateTime.now() + "\n\n");
-            writer.write(String.format("%-20s %-5s %-10s\n", "Item", "Qty", "Subtotal (£)"));
-            writer.write("--------------------------------------------\n");
+    /**
+     * Renders a receipt as text.
+     *
+     * @param items the purchased lines
+     * @param totalPennies the total cost of the transaction, in pennies
+     * @param time  when the purchase was made
+     * @return the receipt text
+     */
+    public static String render(List<CartItem> items, long totalPennies, LocalDateTime time) {
+        StringBuilder sb = new StringBuilder(FIXED_CHARS + items.size() * CHARS_PER_LINE);
 
-            // Process each cart item
-            for (String entry : items) {
-                try {
-                    String name = entry.substring(0, entry.lastIndexOf(" - £"));
-                    double price = Double.parseDouble(entry.substring(entry.lastIndexOf("£") + 1));
-                    // Write one line per purchased item
-                    writer.write(String.format("%-20s %-5d %-10.2f\n", name, 1, price));
+        sb.append(HEADER);
+        sb.append("Date: ").append(time).append("\n\n");
+        pad(sb, "Item", 20).append(' ');
+        pad(sb, "Qty", 5).append(' ');
+        pad(sb, "Subtotal (£)", 10).append('\n');
+        sb.append(RULE);
 
-                } catch (Exception e) {
-                    // If formatting is invalid, note it but continue
-                    writer.write("INVALID ITEM FORMAT\n");
-                }
-            }
+        // One line per purchased item
+        for (CartItem item : items) {
+            pad(sb, item.getProductName(), 20).append(' ');
+            int start = sb.length();
+            sb.append(item.getQuantity());
+            padFrom(sb, start, 5).append(' ');
+            start = sb.length();
+            Money.appendTo(sb, item.getSubtotalPennies());
+            padFrom(sb, start, 10).append('\n');
+        }
 
-            writer.write("--------------------------------------------\n");
-            writer.write(String.format("TOTAL: £%.2f\n", total));
-            writer.write("============================================\n\n");
-            writer.write("Thank you for shopping at Mini Market!\n");
+        sb.append(RULE);
+        sb.append("TOTAL: £");
+        Money.appendTo(sb, totalPennies).append('\n');
+        sb.append(FOOTER);
+        return sb.toString();
+    }
 
-            writer.close();
+    /**
+     * Renders a receipt for the current time as UTF-8 bytes, ready to write.
+     */
+    static byte[] renderBytes(List<CartItem> items, long totalPennies) {
+        return render(items, totalPennies, LocalDateTime.now()).getBytes(StandardCharsets.UTF_8);
+    }
 
-            System.out.println("Receipt saved: " + filename);
+    // Appends text left-aligned in a column of the given width
+    private static StringBuilder pad(StringBuilder sb, String text, int width) {
+        int start = sb.length();
+        sb.append(text);
+        return padFrom(sb, start, width);
+    }
 
-        } catch (Exception e) {
-            System.err.println("Error generating receipt: " + e.getMessage());
+    // Pads what was appended since start out to the given width
+    private static StringBuilder padFrom(StringBuilder sb, int start, int width) {
+        for (int i = sb.length() - start; i < width; i++) {
+            sb.append(' ');
         }
-
-        return filename;
+        return sb;
     }
 }
-
@@ -0,0 +1,198 @@
+package org.minimarket.utility;
+
+import org.minimarket.catalogue.CartItem;
+import org.minimarket.storageAccess.ReceiptArchive;
+
+import java.awt.Desktop;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * ReceiptPipeline renders and writes receipts on a background thread so that
+ * checkout does not wait for the disk (or for a text editor to open).
+ *
+ * Receipts are handed to a small bounded executor. If its queue is full the
+ * receipt is produced on the calling thread instead (CallerRunsPolicy), which
+ * slows the caller down rather than dropping receipts or growing without limit.
+ *
+ * Receipts are appended to a {@link ReceiptArchive} in the receipts folder,
+ * opened on first use, rather than written as one file each. A receipt is
+ * only exported to a file of its own when it is to be opened; each receipt
+ * has one export in a temporary folder, reused when it is opened again and
+ * deleted when the application exits.
+ *
+ * Rendering and writing are timed separately, so receipt throughput can be
+ * read from {@link #getReceiptCount()}, {@link #getAverageRenderMicros()} and
+ * {@link #getAverageWriteMicros()}.
+ */
+public class ReceiptPipeline {
+
+    /** Threads writing receipts. */
+    private static final int THREADS = 1;
+
+    /** Receipts that may wait for a writer before callers write their own. */
+    private static final int QUEUE_CAPACITY = 64;
+
+    private static ReceiptPipeline shared;
+
+    private final Path folder;
+    private final ThreadPoolExecutor executor;
+    private ReceiptArchive archive;
+    private Path exportFolder;
+
+    private final LongAdder receipts = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder renderNanos = new LongAdder();
+    private final LongAdder writeNanos = new LongAdder();
+
+    /**
+     * @param folder        the folder holding the receipt archive
+     * @param threads       number of writer threads
+     * @param queueCapacity receipts that may be queued before callers write their own
+     */
+    public ReceiptPipeline(Path folder, int threads, int queueCapacity) {
+        this.folder = folder;
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), r -> {
+                    Thread t = new Thread(r, "receipt-writer");
+                    t.setDaemon(true);
+                    return t;
+                }, new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    /**
+     * The pipeline shared by the application, writing to the "receipts" folder.
+     */
+    public static synchronized ReceiptPipeline getDefault() {
+        if (shared == null) {
+            shared = new ReceiptPipeline(Paths.get(ReceiptGenerator.RECEIPTS_FOLDER), THREADS, QUEUE_CAPACITY);
+        }
+        return shared;
+    }
+
+    /**
+     * Queues a receipt to be rendered and archived.
+     *
+     * @param items the purchased lines
+     * @param totalPennies the total cost of the transaction, in pennies
+     * @return completes with the receipt's archive id once it is on disk
+     */
+    public CompletableFuture<Long> submit(List<CartItem> items, long totalPennies) {
+        List<CartItem> lines = List.copyOf(items);
+        return CompletableFuture.supplyAsync(() -> produce(lines, totalPennies), executor);
+    }
+
+    /**
+     * Queues a receipt and opens it in the desktop's text viewer once written.
+     * Nothing here runs on the calling thread unless the queue is full.
+     *
+     * @param items the purchased lines
+     * @param totalPennies the total cost of the transaction, in pennies
+     * @return completes with the receipt's archive id once it is on disk
+     */
+    public CompletableFuture<Long> submitAndOpen(List<CartItem> items, long totalPennies) {
+        CompletableFuture<Long> written = submit(items, totalPennies);
+        written.whenCompleteAsync((id, error) -> {
+            if (error != null) {
+                System.err.println("Error generating receipt: " + error.getMessage());
+                return;
+            }
+            System.out.println("Receipt saved: #" + id);
+            open(id);
+        }, executor);
+        return written;
+    }
+
+    /**
+     * Exports an archived receipt to a temporary file and opens it, e.g. to reprint it.
+     *
+     * @param id the receipt's archive id
+     */
+    public void open(long id) {
+        try {
+            Path file = archive().export(id, exportFile(id));
+            if (file != null && Desktop.isDesktopSupported()) {
+                Desktop.getDesktop().open(file.toFile());
+            }
+        } catch (Exception e) {
+            System.err.println("Could not open receipt file.");
+        }
+    }
+
+    /**
+     * The archive receipts are written to, opened on first use.
+     */
+    public synchronized ReceiptArchive archive() throws IOException {
+        if (archive == null) {
+            archive = new ReceiptArchive(folder);
+        }
+        return archive;
+    }
+
+    public long getReceiptCount() { return receipts.sum(); }
+    public long getFailureCount() { return failures.sum(); }
+
+    /** Average time spent rendering one receipt, in microseconds. */
+    public double getAverageRenderMicros() {
+        long count = receipts.sum();
+        return count == 0 ? 0.0 : renderNanos.sum() / 1000.0 / count;
+    }
+
+    /** Average time spent writing one receipt to disk, in microseconds. */
+    public double getAverageWriteMicros() {
+        long count = receipts.sum();
+        return count == 0 ? 0.0 : writeNanos.sum() / 1000.0 / count;
+    }
+
+    /**
+     * Waits for queued receipts to be written and stops the writer threads.
+     */
+    public void shutdown(long timeout, TimeUnit unit) throws InterruptedException, IOException {
+        executor.shutdown();
+        executor.awaitTermination(timeout, unit);
+        synchronized (this) {
+            if (archive != null) {
+                archive.close();
+            }
+        }
+    }
+
+    // Renders and writes one receipt, recording how long each step took
+    private long produce(List<CartItem> items, long totalPennies) {
+        try {
+            long start = System.nanoTime();
+            byte[] text = ReceiptGenerator.renderBytes(items, totalPennies);
+            long rendered = System.nanoTime();
+            long id = archive().append(System.currentTimeMillis(), text);
+            long written = System.nanoTime();
+
+            renderNanos.add(rendered - start);
+            writeNanos.add(written - rendered);
+            receipts.increment();
+            return id;
+        } catch (IOException e) {
+            failures.increment();
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // The export file for a receipt; the folder and files are deleted at exit
+    private synchronized Path exportFile(long id) throws IOException {
+        if (exportFolder == null) {
+            exportFolder = Files.createTempDirectory("receipts_");
+            exportFolder.toFile().deleteOnExit();
+        }
+        Path file = exportFolder.resolve("receipt_" + id + ".txt");
+        file.toFile().deleteOnExit();
+        return file;
+    }
+}
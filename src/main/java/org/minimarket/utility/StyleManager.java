@@ -1,5 +1,6 @@
 package org.minimarket.utility;
 
+import javafx.scene.Parent;
 import javafx.scene.Scene;
 
 /**
@@ -25,4 +26,16 @@ public class StyleManager {
         // Add the CSS file stored in the resources folder
         scene.getStylesheets().add("style.css");
     }
+
+    /**
+     * Applies the global stylesheet to a single node and its children.
+     * Used by reusable controls that bring their own style classes.
+     *
+     * @param node the node to apply the stylesheet to
+     */
+    public static void applyStyle(Parent node) {
+        if (!node.getStylesheets().contains("style.css")) {
+            node.getStylesheets().add("style.css");
+        }
+    }
 }
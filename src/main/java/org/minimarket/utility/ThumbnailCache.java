@@ -0,0 +1,139 @@
+package org.minimarket.utility;
+
+import javafx.beans.value.ChangeListener;
+import javafx.beans.value.ObservableValue;
+import javafx.scene.image.Image;
+import javafx.scene.image.ImageView;
+
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * ThumbnailCache keeps decoded product thumbnails so that the same picture
+ * is not read and scaled again every time a card shows it.
+ *
+ * Thumbnails are keyed by image path and size, and held in a
+ * {@link BoundedLruCache} limited by an estimate of their pixel memory
+ * (width x height x 4 bytes). Set the system property
+ * {@code minimarket.thumbnails.budgetMb} to change the budget (default 16 MB).
+ *
+ * Images are decoded in the background by JavaFX. Until a thumbnail is
+ * ready the view shows the default image as a placeholder, and it is
+ * swapped in afterwards if the view still wants it. A path with no image
+ * on the classpath falls back to the default image; that lookup happens
+ * here, on first use, rather than when the catalogue is loaded.
+ *
+ * Use from the JavaFX application thread.
+ */
+public class ThumbnailCache {
+
+    /** System property holding the memory budget in megabytes. */
+    public static final String BUDGET_PROPERTY = "minimarket.thumbnails.budgetMb";
+
+    private static final long DEFAULT_BUDGET_MB = 16;
+    private static final String DEFAULT_IMAGE = "/images/default.png";
+
+    // ImageView property recording the thumbnail the view is waiting for
+    private static final String WANTED_KEY = "minimarket.thumbnail";
+
+    private static ThumbnailCache shared;
+
+    private final BoundedLruCache<String, Image> thumbnails;
+    private final Map<Double, Image> placeholders = new HashMap<>();
+
+    /**
+     * @param budgetBytes the most estimated pixel memory to keep cached
+     */
+    public ThumbnailCache(long budgetBytes) {
+        this.thumbnails = new BoundedLruCache<>(budgetBytes, ThumbnailCache::estimateBytes);
+    }
+
+    /**
+     * The cache shared by the application, sized from {@link #BUDGET_PROPERTY}.
+     */
+    public static synchronized ThumbnailCache getDefault() {
+        if (shared == null) {
+            long megabytes = Long.getLong(BUDGET_PROPERTY, DEFAULT_BUDGET_MB);
+            shared = new ThumbnailCache(Math.max(1, megabytes) * 1024 * 1024);
+        }
+        return shared;
+    }
+
+    /**
+     * Shows a thumbnail in the given view, using the placeholder while it loads.
+     *
+     * @param view the view to fill
+     * @param path classpath path of the image, e.g. "/images/mouse.png"
+     * @param size width and height of the thumbnail box, in pixels
+     */
+    public void load(ImageView view, String path, double size) {
+        String key = key(path, size);
+        view.getProperties().put(WANTED_KEY, key);
+
+        Image image = get(path, size);
+        if (image.getProgress() >= 1) {
+            view.setImage(image.isError() ? placeholder(size) : image);
+            return;
+        }
+
+        view.setImage(placeholder(size));
+        image.progressProperty().addListener(new ChangeListener<>() {
+            @Override
+            public void changed(ObservableValue<? extends Number> obs, Number oldValue, Number progress) {
+                if (progress.doubleValue() < 1) {
+                    return;
+                }
+                obs.removeListener(this);
+                // The view may have been reused for another product meanwhile
+                if (key.equals(view.getProperties().get(WANTED_KEY)) && !image.isError()) {
+                    view.setImage(image);
+                }
+            }
+        });
+    }
+
+    /**
+     * Returns the cached thumbnail, starting a background load if it is not
+     * cached. The image may still be loading when it is returned.
+     */
+    public Image get(String path, double size) {
+        String key = key(path, size);
+        Image image = thumbnails.get(key);
+        if (image == null) {
+            image = new Image(resolve(path).toExternalForm(), size, size, true, true, true);
+            thumbnails.put(key, image);
+        }
+        return image;
+    }
+
+    /** Number of thumbnails currently cached. */
+    public int size() {
+        return thumbnails.size();
+    }
+
+    /** Estimated bytes held by the cached thumbnails. */
+    public long getCachedBytes() {
+        return thumbnails.getWeight();
+    }
+
+    // The default image at the given size, decoded once and never evicted
+    private Image placeholder(double size) {
+        return placeholders.computeIfAbsent(size,
+                s -> new Image(resolve(DEFAULT_IMAGE).toExternalForm(), s, s, true, true, false));
+    }
+
+    private static URL resolve(String path) {
+        URL url = path != null ? ThumbnailCache.class.getResource(path) : null;
+        return url != null ? url : ThumbnailCache.class.getResource(DEFAULT_IMAGE);
+    }
+
+    private static String key(String path, double size) {
+        return path + "@" + size;
+    }
+
+    // Weighed by the requested box so the estimate does not change once loaded
+    private static long estimateBytes(Image image) {
+        return (long) Math.ceil(image.getRequestedWidth()) * (long) Math.ceil(image.getRequestedHeight()) * 4;
+    }
+}
@@ -0,0 +1,44 @@
+package org.minimarket.catalogue;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+import org.minimarket.utility.Money;
+
+public class CartTest {
+
+    @Test
+    void testRepeatedProductsMergeIntoOneLine() {
+        Cart cart = new Cart();
+        cart.add("usb", 1, Money.ofPounds(20.0));
+        cart.add("camera", 1, Money.ofPounds(100.0));
+        cart.add("usb", 2, Money.ofPounds(20.0));
+
+        assertEquals(2, cart.getItems().size());
+        assertEquals(3, cart.getItems().get(0).getQuantity());
+        assertEquals(60.0, cart.getItems().get(0).getSubtotal());
+        assertEquals(160.0, cart.getTotal());
+    }
+
+    @Test
+    void testRemovingKeepsTotalAndPositionsInStep() {
+        Cart cart = new Cart();
+        cart.add("usb", 2, Money.ofPounds(20.0));
+        cart.add("camera", 1, Money.ofPounds(100.0));
+        cart.add("radio", 1, Money.ofPounds(15.5));
+
+        assertEquals(1, cart.remove("usb", 1));
+        assertEquals(135.5, cart.getTotal());
+
+        assertEquals(1, cart.removeLine(cart.getItems().get(0)));
+        assertEquals(2, cart.getItems().size());
+
+        // Lines after the removed one must still be found
+        cart.add("radio", 1, Money.ofPounds(15.5));
+        assertEquals(2, cart.getItems().get(1).getQuantity());
+        assertEquals(131.0, cart.getTotal());
+
+        assertEquals(0, cart.remove("missing", 1));
+        assertEquals(2, cart.toSaleRecords().size());
+    }
+}
@@ -13,5 +13,20 @@ public class ProductTest {
         assertEquals(50.0, product.getPrice());
         assertEquals(91, product.getQuantity());
     }
-}
 
+    @Test
+    void testPropertiesFollowChanges() {
+        Product product = new Product("radio", 50.0, 91, "electronics");
+        var quantity = product.quantityProperty();
+        var price = product.priceProperty();
+
+        product.addQuantity(-1);
+        product.setPrice(45.5);
+        product.setName("clock radio");
+
+        // Without a running JavaFX toolkit the quantity is copied straight away
+        assertEquals(90, quantity.get());
+        assertEquals(45.5, price.get());
+        assertEquals("clock radio", product.nameProperty().get());
+    }
+}
@@ -0,0 +1,100 @@
+package org.minimarket.catalogue.bench;
+
+import javafx.beans.value.ObservableValue;
+import javafx.scene.control.TableColumn;
+import javafx.scene.control.cell.PropertyValueFactory;
+import javafx.util.Callback;
+import org.minimarket.catalogue.Product;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures what the product table's cell value factories cost when every
+ * row of a large table is shown once, e.g. scrolling from top to bottom.
+ * This is the part of rendering a cell that the factories decide; layout
+ * and drawing need a display and are not included.
+ *
+ * Not run by the tests. Run with:
+ *
+ *      mvn -q test-compile dependency:build-classpath -Dmdep.outputFile=cp.txt
+ *      java -cp target/test-classes:target/classes:$(cat cp.txt) \
+ *          org.minimarket.catalogue.bench.ProductTableCellBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProductTableCellBenchmark {
+
+    @Param({"100000"})
+    int rows;
+
+    List<Product> products;
+
+    final Callback<TableColumn.CellDataFeatures<Product, String>, ObservableValue<String>> reflectiveName =
+            new PropertyValueFactory<>("name");
+    final Callback<TableColumn.CellDataFeatures<Product, Double>, ObservableValue<Double>> reflectivePrice =
+            new PropertyValueFactory<>("price");
+    final Callback<TableColumn.CellDataFeatures<Product, Integer>, ObservableValue<Integer>> reflectiveQuantity =
+            new PropertyValueFactory<>("quantity");
+
+    @Setup
+    public void setUp() {
+        products = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            products.add(new Product("product" + i, 1 + i % 50, i % 200, "Category " + i % 12));
+        }
+    }
+
+    final Callback<TableColumn.CellDataFeatures<Product, String>, ObservableValue<String>> directName =
+            cell -> cell.getValue().nameProperty();
+    final Callback<TableColumn.CellDataFeatures<Product, Number>, ObservableValue<Number>> directPrice =
+            cell -> cell.getValue().priceProperty();
+    final Callback<TableColumn.CellDataFeatures<Product, Number>, ObservableValue<Number>> directQuantity =
+            cell -> cell.getValue().quantityProperty();
+
+    /** The table as MarketController used to set it up. */
+    @Benchmark
+    public void propertyValueFactory(Blackhole bh) {
+        for (Product p : products) {
+            bh.consume(reflectiveName.call(new TableColumn.CellDataFeatures<>(null, null, p)).getValue());
+            bh.consume(reflectivePrice.call(new TableColumn.CellDataFeatures<>(null, null, p)).getValue());
+            bh.consume(reflectiveQuantity.call(new TableColumn.CellDataFeatures<>(null, null, p)).getValue());
+        }
+    }
+
+    /** The table as MarketController sets it up now. */
+    @Benchmark
+    public void lambdaFactory(Blackhole bh) {
+        for (Product p : products) {
+            bh.consume(directName.call(new TableColumn.CellDataFeatures<>(null, null, p)).getValue());
+            bh.consume(directPrice.call(new TableColumn.CellDataFeatures<>(null, null, p)).getValue());
+            bh.consume(directQuantity.call(new TableColumn.CellDataFeatures<>(null, null, p)).getValue());
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ProductTableCellBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
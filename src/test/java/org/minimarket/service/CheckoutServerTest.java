@@ -0,0 +1,197 @@
+package org.minimarket.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import javafx.collections.FXCollections;
+import org.junit.jupiter.api.Test;
+import org.minimarket.catalogue.Product;
+import org.minimarket.catalogue.SaleRecord;
+import org.minimarket.storageAccess.ProductCatalogue;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+public class CheckoutServerTest {
+
+    // Reserves from an in-memory catalogue without touching the data files
+    private static class MemoryGateway implements CheckoutGateway {
+        final ProductCatalogue catalogue;
+        final LongAdder sales = new LongAdder();
+
+        MemoryGateway(Product... products) {
+            catalogue = new ProductCatalogue(FXCollections.observableArrayList(products));
+        }
+
+        @Override
+        public CheckoutReply addToCart(String productName, int quantity) {
+            Product p = catalogue.findByName(productName);
+            if (p == null) return CheckoutReply.of(CheckoutReply.Status.NOT_FOUND);
+            if (!catalogue.reserve(p, quantity)) return CheckoutReply.of(CheckoutReply.Status.OUT_OF_STOCK);
+            return CheckoutReply.ok(p.getQuantity());
+        }
+
+        @Override
+        public CheckoutReply removeFromCart(String productName, int quantity) {
+            Product p = catalogue.findByName(productName);
+            catalogue.release(p, quantity);
+            return CheckoutReply.ok(p.getQuantity());
+        }
+
+        @Override
+        public CheckoutReply checkout(List<SaleRecord> records) {
+            long total = records.stream().mapToLong(SaleRecord::getSubtotalPennies).sum();
+            sales.add(total);
+            return CheckoutReply.ok(total);
+        }
+
+        @Override
+        public CheckoutReply totalSales() {
+            return CheckoutReply.ok(sales.sum());
+        }
+    }
+
+    @Test
+    void testTillsShareStockWithoutOverselling() throws Exception {
+        Product hot = new Product("Hot Item", 2.0, 500, "Hot");
+        MemoryGateway gateway = new MemoryGateway(hot);
+
+        try (CheckoutServer server = new CheckoutServer(0, gateway, gateway.catalogue, 16, 8)) {
+            int tills = 8;
+            AtomicInteger sold = new AtomicInteger();
+            ExecutorService pool = Executors.newFixedThreadPool(tills);
+
+            for (int t = 0; t < tills; t++) {
+                pool.execute(() -> {
+                    RemoteCheckoutGateway till = new RemoteCheckoutGateway("localhost", server.getPort(), null);
+                    while (true) {
+                        CheckoutReply reply = till.addToCart("hot item", 1);
+                        if (reply.getStatus() == CheckoutReply.Status.OUT_OF_STOCK) break;
+                        if (reply.isOk()) {
+                            sold.incrementAndGet();
+                            till.checkout(List.of(new SaleRecord("Hot Item", 1, 2.0)));
+                        }
+                    }
+                    till.close();
+                });
+            }
+            pool.shutdown();
+            assertTrue(pool.awaitTermination(30, TimeUnit.SECONDS));
+
+            assertEquals(500, sold.get());
+            assertEquals(0, hot.getQuantity());
+
+            RemoteCheckoutGateway reporter = new RemoteCheckoutGateway("localhost", server.getPort(), null);
+            assertEquals(100_000, reporter.totalSales().getValue());
+            assertEquals(CheckoutReply.Status.NOT_FOUND, reporter.addToCart("nothing", 1).getStatus());
+            reporter.close();
+
+            assertEquals(500, server.getCheckoutCount());
+            assertTrue(server.getRequestCount() >= 1000);
+        }
+    }
+
+    @Test
+    void testRefusesTillsBeyondSessionLimit() throws Exception {
+        MemoryGateway gateway = new MemoryGateway(new Product("Milk", 1.0, 10, "Dairy"));
+
+        try (CheckoutServer server = new CheckoutServer(0, gateway, gateway.catalogue, 1, 1)) {
+            RemoteCheckoutGateway first = new RemoteCheckoutGateway("localhost", server.getPort(), null);
+            assertTrue(first.addToCart("milk", 1).isOk());
+
+            RemoteCheckoutGateway second = new RemoteCheckoutGateway("localhost", server.getPort(), null);
+            assertEquals(CheckoutReply.Status.BUSY, second.addToCart("milk", 1).getStatus());
+            assertEquals(1, server.getBusyRejections());
+
+            first.close();
+            second.close();
+        }
+    }
+
+    @Test
+    void testTillsCanOnlyPutBackAndSellWhatTheyReserved() throws Exception {
+        Product milk = new Product("Milk", 1.0, 10, "Dairy");
+        MemoryGateway gateway = new MemoryGateway(milk);
+
+        try (CheckoutServer server = new CheckoutServer(0, gateway, gateway.catalogue, 4, 4)) {
+            RemoteCheckoutGateway till = new RemoteCheckoutGateway("localhost", server.getPort(), null);
+            assertEquals(CheckoutReply.Status.NOT_FOUND, till.removeFromCart("milk", 5).getStatus());
+            assertEquals(CheckoutReply.Status.UNAVAILABLE, till.removeFromCart("milk", -5).getStatus());
+            assertEquals(10, milk.getQuantity());
+
+            assertTrue(till.addToCart("milk", 2).isOk());
+            assertEquals(10, till.removeFromCart("milk", 5).getValue());
+            assertEquals(CheckoutReply.Status.OUT_OF_STOCK,
+                    till.checkout(List.of(new SaleRecord("Milk", 1, 1.0))).getStatus());
+
+            assertTrue(till.addToCart("milk", 1).isOk());
+            assertEquals(CheckoutReply.Status.NOT_FOUND,
+                    till.checkout(List.of(new SaleRecord("Cheese", 1, 1.0))).getStatus());
+            // The till's price is ignored
+            assertEquals(100, till.checkout(List.of(new SaleRecord("Milk", 1, 0.01))).getValue());
+            assertEquals(CheckoutReply.Status.NOT_FOUND, till.removeFromCart("milk", 1).getStatus());
+            assertEquals(9, milk.getQuantity());
+            till.close();
+        }
+    }
+
+    @Test
+    void testStockHeldByADisconnectedTillIsPutBack() throws Exception {
+        Product milk = new Product("Milk", 1.0, 10, "Dairy");
+        MemoryGateway gateway = new MemoryGateway(milk);
+
+        try (CheckoutServer server = new CheckoutServer(0, gateway, gateway.catalogue, 4, 4)) {
+            RemoteCheckoutGateway till = new RemoteCheckoutGateway("localhost", server.getPort(), null);
+            assertTrue(till.addToCart("milk", 3).isOk());
+            assertEquals(7, milk.getQuantity());
+            till.close();
+
+            // The session notices the closed socket on its own thread
+            long deadline = System.currentTimeMillis() + 5000;
+            while (milk.getQuantity() != 10 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(10, milk.getQuantity());
+        }
+    }
+
+    @Test
+    void testSentRequestIsNotRepeatedWhenTheReplyIsLost() throws Exception {
+        AtomicInteger received = new AtomicInteger();
+        try (ServerSocket hangUp = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+            // Reads each request and hangs up without answering
+            Thread server = new Thread(() -> {
+                while (true) {
+                    try (Socket socket = hangUp.accept();
+                         BufferedReader in = new BufferedReader(
+                                 new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8))) {
+                        if (in.readLine() != null) {
+                            received.incrementAndGet();
+                        }
+                    } catch (Exception e) {
+                        return;
+                    }
+                }
+            });
+            server.setDaemon(true);
+            server.start();
+
+            RemoteCheckoutGateway till = new RemoteCheckoutGateway("localhost", hangUp.getLocalPort(), null);
+            assertEquals(CheckoutReply.Status.UNAVAILABLE, till.addToCart("milk", 1).getStatus());
+            assertEquals(1, received.get());
+
+            assertEquals(CheckoutReply.Status.UNAVAILABLE, till.totalSales().getStatus());
+            assertEquals(3, received.get());
+            till.close();
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package org.minimarket.storageAccess;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.minimarket.catalogue.Product;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+public class BinaryProductStoreTest {
+
+    @TempDir
+    Path dir;
+
+    private static Map<String, Product> readAll(BinaryProductStore store) throws Exception {
+        Map<String, Product> products = new HashMap<>();
+        store.readAll((name, price, quantity, category, reorderPoint) -> {
+            Product p = new Product(name, 0, quantity, category);
+            p.setPricePennies(price);
+            p.setReorderPoint(reorderPoint);
+            products.put(name, p);
+        });
+        return products;
+    }
+
+    @Test
+    void testChangesRewriteOneRecordInPlace() throws Exception {
+        Path file = dir.resolve("products.bin");
+
+        try (BinaryProductStore store = new BinaryProductStore(file)) {
+            store.putAll(List.of(
+                    new Product("usb", 9.99, 10, "Accessories"),
+                    new Product("radio", 24.50, 3, "Audio")));
+            long size = Files.size(file);
+
+            assertEquals(7, store.addQuantity("usb", -3));
+            Product radio = new Product("radio", 19.99, 3, "Audio");
+            radio.setReorderPoint(2);
+            store.put(radio);
+
+            assertEquals(size, Files.size(file));
+            assertNull(store.addQuantity("missing", 1));
+        }
+
+        try (BinaryProductStore store = new BinaryProductStore(file)) {
+            Map<String, Product> products = readAll(store);
+            assertEquals(2, products.size());
+            assertEquals(7, products.get("usb").getQuantity());
+            assertEquals(1999, products.get("radio").getPricePennies());
+            assertEquals(2, products.get("radio").getReorderPoint());
+        }
+    }
+
+    @Test
+    void testRemovedSlotIsReused() throws Exception {
+        Path file = dir.resolve("products.bin");
+
+        try (BinaryProductStore store = new BinaryProductStore(file)) {
+            store.put(new Product("usb", 9.99, 10, "Accessories"));
+            store.put(new Product("radio", 24.50, 3, "Audio"));
+            long size = Files.size(file);
+
+            assertTrue(store.remove("usb"));
+            assertFalse(store.remove("usb"));
+            store.put(new Product("mouse", 12.00, 4, "Accessories"));
+
+            assertEquals(size, Files.size(file));
+            assertEquals(List.of("mouse", "radio"), new ArrayList<>(new TreeSet<>(readAll(store).keySet())));
+        }
+    }
+
+    @Test
+    void testTwoStoresOnOneFileSeeEachOthersChanges() throws Exception {
+        Path file = dir.resolve("products.bin");
+
+        try (BinaryProductStore first = new BinaryProductStore(file);
+             BinaryProductStore second = new BinaryProductStore(file)) {
+            first.put(new Product("usb", 9.99, 10, "Accessories"));
+
+            // The second store has not seen usb yet; it finds it by re-reading the file
+            assertEquals(8, second.addQuantity("usb", -2));
+            assertEquals(5, first.addQuantity("usb", -3));
+
+            second.put(new Product("radio", 24.50, 3, "Audio"));
+            first.remove("usb");
+            assertEquals(1, readAll(second).size());
+            assertEquals(4, first.addQuantity("radio", 1));
+        }
+    }
+
+    @Test
+    void testPriceEditKeepsAnotherStoresSale() throws Exception {
+        Path file = dir.resolve("products.bin");
+
+        try (BinaryProductStore first = new BinaryProductStore(file);
+             BinaryProductStore second = new BinaryProductStore(file)) {
+            Product usb = new Product("usb", 9.99, 10, "Accessories");
+            first.put(usb);
+
+            // The second till sells two; the first still holds 10 in memory when it reprices
+            assertEquals(8, second.addQuantity("usb", -2));
+            usb.setPrice(8.99);
+            first.put(usb);
+
+            Product stored = readAll(second).get("usb");
+            assertEquals(8, stored.getQuantity());
+            assertEquals(899, stored.getPricePennies());
+        }
+    }
+
+    @Test
+    void testRejectsNamesTooLongForARecord() throws Exception {
+        try (BinaryProductStore store = new BinaryProductStore(dir.resolve("products.bin"))) {
+            String name = "x".repeat(BinaryProductStore.MAX_NAME_BYTES + 1);
+            assertThrows(IllegalArgumentException.class, () -> store.put(new Product(name, 1, 1, "Misc")));
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package org.minimarket.storageAccess;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.minimarket.catalogue.SaleRecord;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+public class BinarySalesLogTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void testConvertCsvAndScan() throws Exception {
+        Path csv = dir.resolve("sales_log.csv");
+        Files.writeString(csv, "camera,1,100.0\nusb,2,40.0\nbroken line\nusb,1,20.0\n");
+
+        try (BinarySalesLog log = new BinarySalesLog(dir.resolve("sales.bin"), dir.resolve("dict.csv"))) {
+            assertEquals(3, log.convertFromCsv(csv));
+            assertEquals(3, log.getRecordCount());
+            assertEquals(16000, log.totalPennies());
+
+            List<SaleRecord> rows = log.read(1, 2);
+            assertEquals("usb", rows.get(0).getProductName());
+            assertEquals(2, rows.get(0).getQuantity());
+            assertEquals(20.0, rows.get(1).getSubtotal());
+        }
+    }
+
+    @Test
+    void testReopenKeepsRowsAndDictionary() throws Exception {
+        Path file = dir.resolve("sales.bin");
+        Path dictionary = dir.resolve("dict.csv");
+
+        try (BinarySalesLog log = new BinarySalesLog(file, dictionary)) {
+            log.append(List.of(new SaleRecord("radio", 1, 50.0)));
+        }
+
+        try (BinarySalesLog log = new BinarySalesLog(file, dictionary)) {
+            log.append(List.of(new SaleRecord("radio", 2, 100.0)));
+            assertEquals(2, log.getRecordCount());
+            assertEquals(1, log.getProductCount());
+            assertEquals(15000, log.totalPennies());
+        }
+    }
+
+    @Test
+    void testSubmissionsFailOnceTheWriterHasStopped() throws Exception {
+        try (BinarySalesLog log = new BinarySalesLog(dir.resolve("sales.bin"), dir.resolve("dict.csv"))) {
+            BatchedSalesWriter writer = new BatchedSalesWriter(log.getFile(), log::encode, 16, 1,
+                    BatchedSalesWriter.FsyncPolicy.NEVER);
+            writer.submit(List.of(new SaleRecord("usb", 1, 9.99))).get(5, TimeUnit.SECONDS);
+            writer.close();
+
+            CompletableFuture<Void> late = writer.submit(List.of(new SaleRecord("usb", 1, 9.99)));
+            CompletionException failure = assertThrows(CompletionException.class,
+                    () -> late.orTimeout(5, TimeUnit.SECONDS).join());
+            // Failed by the stopped writer, not by the timeout
+            assertInstanceOf(IOException.class, failure.getCause());
+            writer.flush();
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package org.minimarket.storageAccess;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import org.junit.jupiter.api.Test;
+import org.minimarket.catalogue.Product;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class CatalogueEventBusTest {
+
+    /** Deliveries wait here until the test runs them, like tasks waiting for the next pulse. */
+    private final List<Runnable> pulse = new ArrayList<>();
+    private final CatalogueEventBus bus = new CatalogueEventBus(pulse::add);
+    private final List<List<CatalogueEvent>> delivered = new ArrayList<>();
+
+    private final ObservableList<Product> products = FXCollections.observableArrayList();
+    private final ProductCatalogue catalogue = new ProductCatalogue(products, bus);
+
+    CatalogueEventBusTest() {
+        catalogue.addEventListener(delivered::add);
+    }
+
+    private void runPulse() {
+        List<Runnable> tasks = new ArrayList<>(pulse);
+        pulse.clear();
+        tasks.forEach(Runnable::run);
+    }
+
+    @Test
+    void stockChangesInOnePulseArriveAsOneDelta() {
+        Product apple = new Product("Apple", 0.5, 10, "Fruit");
+        products.add(apple);
+        runPulse();
+        delivered.clear();
+
+        catalogue.reserve(apple, 1);
+        catalogue.reserve(apple, 2);
+        apple.addQuantity(-1);
+        assertEquals(1, pulse.size());
+        runPulse();
+
+        assertEquals(1, delivered.size());
+        List<CatalogueEvent> events = delivered.get(0);
+        assertEquals(1, events.size());
+        CatalogueEvent.StockChanged stock = assertInstanceOf(CatalogueEvent.StockChanged.class, events.get(0));
+        assertSame(apple, stock.getProduct());
+        assertEquals(-4, stock.getDelta());
+    }
+
+    @Test
+    void changesThatCancelOutAreNotDelivered() {
+        Product apple = new Product("Apple", 0.5, 10, "Fruit");
+        products.add(apple);
+        runPulse();
+        delivered.clear();
+
+        apple.addQuantity(-2);
+        apple.addQuantity(2);
+        Product pear = new Product("Pear", 0.4, 3, "Fruit");
+        products.add(pear);
+        pear.addQuantity(-1);
+        products.remove(pear);
+        runPulse();
+
+        assertTrue(delivered.isEmpty());
+    }
+
+    @Test
+    void editsReportPriceAndMoveTheProduct() {
+        Product apple = new Product("Apple", 0.5, 10, "Fruit");
+        products.add(apple);
+        runPulse();
+        delivered.clear();
+
+        catalogue.updateProduct(apple, null, 0.6, null, null);
+        catalogue.updateProduct(apple, null, 0.7, null, null);
+        runPulse();
+
+        CatalogueEvent.PriceChanged price =
+                assertInstanceOf(CatalogueEvent.PriceChanged.class, delivered.get(0).get(0));
+        assertEquals(50, price.getOldPricePennies());
+        assertEquals(70, price.getNewPricePennies());
+
+        delivered.clear();
+        catalogue.updateProduct(apple, null, null, null, "Produce");
+        runPulse();
+        List<CatalogueEvent> events = delivered.get(0);
+        assertInstanceOf(CatalogueEvent.ProductRemoved.class, events.get(0));
+        assertInstanceOf(CatalogueEvent.ProductAdded.class, events.get(1));
+    }
+
+    @Test
+    void deliversStraightAwayWithoutJavaFx() {
+        CatalogueEventBus direct = new CatalogueEventBus();
+        List<CatalogueEvent> received = new ArrayList<>();
+        direct.addListener(received::addAll);
+        Product apple = new Product("Apple", 0.5, 10, "Fruit");
+
+        direct.stockChanged(apple, -1);
+
+        assertEquals(1, received.size());
+    }
+}
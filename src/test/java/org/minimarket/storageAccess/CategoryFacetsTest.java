@@ -0,0 +1,45 @@
+package org.minimarket.storageAccess;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import org.junit.jupiter.api.Test;
+import org.minimarket.catalogue.Product;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class CategoryFacetsTest {
+
+    @Test
+    void testCountsFollowCatalogueChanges() {
+        ObservableList<Product> products = FXCollections.observableArrayList();
+        ProductCatalogue catalogue = new ProductCatalogue(products);
+        AtomicInteger changes = new AtomicInteger();
+        catalogue.addFacetListener(changes::incrementAndGet);
+
+        Product usb = new Product("usb", 20.0, 1, "Electronics");
+        Product mouse = new Product("mouse", 35.0, 0, "Electronics");
+        Product radio = new Product("radio", 50.0, 4, "Radios");
+        products.addAll(usb, mouse, radio);
+
+        List<CategoryFacets.Facet> facets = catalogue.getCategoryFacets();
+        assertEquals(2, facets.size());
+        assertEquals("Electronics", facets.get(0).getCategory());
+        assertEquals(2, facets.get(0).getProductCount());
+        assertEquals(1, facets.get(0).getInStockCount());
+
+        catalogue.reserve(usb, 1);
+        assertEquals(0, catalogue.getCategoryFacets().get(0).getInStockCount());
+        assertEquals(1, catalogue.getTotalFacet("All").getInStockCount());
+
+        catalogue.updateProduct(radio, null, null, null, "Audio");
+        assertEquals("Audio", catalogue.getCategoryFacets().get(1).getCategory());
+
+        products.remove(radio);
+        assertEquals(1, catalogue.getCategoryFacets().size());
+        assertEquals(2, catalogue.getTotalFacet("All").getProductCount());
+        assertTrue(changes.get() > 0);
+    }
+}
@@ -0,0 +1,86 @@
+package org.minimarket.storageAccess;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+public class CsvReaderTest {
+
+    private static CsvReader reader(String text) {
+        return new CsvReader(ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    void testReadsPlainAndQuotedFields() {
+        CsvReader row = reader("usb,12.50,3,Accessories\r\n\n\"desk, oak\",\"say \"\"hi\"\"\",7,\"two\nlines\"\n");
+
+        assertTrue(row.next());
+        assertEquals(4, row.getFieldCount());
+        assertEquals("usb", row.getString(0));
+        assertEquals(1250, row.getPennies(1));
+        assertEquals(3, row.getInt(2));
+        assertEquals("Accessories", row.getString(3));
+
+        assertTrue(row.next());
+        assertEquals(3, row.getLineNumber());
+        assertEquals("desk, oak", row.getString(0));
+        assertEquals("say \"hi\"", row.getString(1));
+        assertEquals("two\nlines", row.getString(3));
+
+        assertFalse(row.next());
+    }
+
+    @Test
+    void testParsesPenniesLikeMoney() {
+        CsvReader row = reader(" 3 ,0.5,19.999,-2.005,1.0E2\n");
+        assertTrue(row.next());
+
+        assertEquals(300, row.getPennies(0));
+        assertEquals(50, row.getPennies(1));
+        assertEquals(2000, row.getPennies(2));
+        assertEquals(-201, row.getPennies(3));
+        assertEquals(10000, row.getPennies(4));
+    }
+
+    @Test
+    void testMalformedRowsAreReportedWithTheirLine() {
+        CsvReader csv = reader("a,1\nb,x\nc,\"3\"oops\nd,4\n");
+
+        List<String> names = new ArrayList<>();
+        int skipped = csv.forEachRow("test", row -> {
+            row.getInt(1);
+            names.add(row.getString(0));
+        });
+
+        assertEquals(2, skipped);
+        assertEquals(List.of("a", "d"), names);
+
+        CsvReader row = reader("a,1\nb,x\n");
+        row.next();
+        row.next();
+        CsvFormatException e = assertThrows(CsvFormatException.class, () -> row.getInt(1));
+        assertEquals(2, e.getLineNumber());
+    }
+
+    @Test
+    void testWriterOutputReadsBack() throws Exception {
+        StringWriter text = new StringWriter();
+        try (CsvWriter csv = new CsvWriter(text)) {
+            csv.field("plain").field("with, comma").field(" padded ").field(42).pennies(1999).endRow();
+        }
+        assertTrue(text.toString().startsWith("plain,\"with, comma\",\" padded \",42,19.99"));
+
+        CsvReader row = reader(text.toString());
+        assertTrue(row.next());
+        assertEquals("with, comma", row.getString(1));
+        assertEquals(" padded ", row.getString(2));
+        assertEquals(42, row.getLong(3));
+        assertEquals(1999, row.getPennies(4));
+    }
+}
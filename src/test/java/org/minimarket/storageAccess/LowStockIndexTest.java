@@ -0,0 +1,56 @@
+package org.minimarket.storageAccess;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import org.junit.jupiter.api.Test;
+import org.minimarket.catalogue.Product;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class LowStockIndexTest {
+
+    @Test
+    void testLowStockIsOrderedBySlack() {
+        ObservableList<Product> products = FXCollections.observableArrayList();
+        ProductCatalogue catalogue = new ProductCatalogue(products);
+
+        Product radio = new Product("radio", 50.0, 3, "Radios");
+        Product usb = new Product("usb", 20.0, 95, "Electronics");
+        Product mouse = new Product("mouse", 35.0, 8, "Electronics");
+        mouse.setReorderPoint(12);
+        products.addAll(radio, usb, mouse);
+
+        assertEquals(List.of(mouse, radio), catalogue.getLowStock(10));
+        assertEquals(List.of(mouse), catalogue.getLowStock(1));
+
+        catalogue.reserve(usb, 93);
+        assertEquals(List.of(mouse, usb, radio), catalogue.getLowStock(10));
+
+        products.remove(mouse);
+        assertEquals(List.of(usb, radio), catalogue.getLowStock(10));
+    }
+
+    @Test
+    void testRaisesEventWhenCrossingReorderPoint() {
+        ObservableList<Product> products = FXCollections.observableArrayList();
+        ProductCatalogue catalogue = new ProductCatalogue(products);
+        Product charger = new Product("charger", 15.0, 6, "Electronics");
+        products.add(charger);
+
+        List<String> events = new ArrayList<>();
+        catalogue.addReorderListener((p, low) -> events.add(p.getName() + (low ? " low" : " restocked")));
+
+        catalogue.reserve(charger, 1);
+        assertTrue(events.isEmpty());
+
+        catalogue.reserve(charger, 1);
+        catalogue.reserve(charger, 1);
+        catalogue.release(charger, 2);
+        catalogue.updateProduct(charger, null, null, 1, null);
+
+        assertEquals(List.of("charger low", "charger restocked", "charger low"), events);
+    }
+}
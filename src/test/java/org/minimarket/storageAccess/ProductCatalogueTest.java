@@ -0,0 +1,45 @@
+package org.minimarket.storageAccess;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import org.junit.jupiter.api.Test;
+import org.minimarket.catalogue.Product;
+
+public class ProductCatalogueTest {
+
+    @Test
+    void testLookupFollowsListChanges() {
+        ObservableList<Product> products = FXCollections.observableArrayList();
+        ProductCatalogue catalogue = new ProductCatalogue(products);
+
+        Product radio = new Product("radio", 50.0, 91, "Radios");
+        Product usb = new Product("usb", 20.0, 95, "Electronics");
+        products.addAll(radio, usb);
+
+        assertSame(radio, catalogue.findByName(" Radio "));
+        assertSame(usb, catalogue.getByCategory("Electronics").iterator().next());
+
+        products.remove(radio);
+
+        assertNull(catalogue.findByName("radio"));
+        assertFalse(catalogue.getCategories().contains("Radios"));
+    }
+
+    @Test
+    void testUpdateProductMovesBuckets() {
+        ObservableList<Product> products = FXCollections.observableArrayList();
+        ProductCatalogue catalogue = new ProductCatalogue(products);
+
+        Product charger = new Product("charger", 15.0, 30, "Electronics");
+        products.add(charger);
+
+        catalogue.updateProduct(charger, "fast charger", null, null, "Chargers");
+
+        assertNull(catalogue.findByName("charger"));
+        assertSame(charger, catalogue.findByName("fastcharger"));
+        assertTrue(catalogue.getByCategory("Electronics").isEmpty());
+        assertEquals(1, catalogue.getByCategory("Chargers").size());
+    }
+}
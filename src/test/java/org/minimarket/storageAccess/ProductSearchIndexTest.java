@@ -0,0 +1,85 @@
+package org.minimarket.storageAccess;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import org.junit.jupiter.api.Test;
+import org.minimarket.catalogue.Product;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class ProductSearchIndexTest {
+
+    @Test
+    void testRanksExactThenPrefixThenSubstringThenCategory() {
+        ObservableList<Product> products = FXCollections.observableArrayList();
+        ProductCatalogue catalogue = new ProductCatalogue(products);
+        Product usbHub = new Product("usbhub", 12.0, 5, "Electronics");
+        Product miniUsb = new Product("miniusb", 4.0, 5, "Cables");
+        Product usb = new Product("usb", 20.0, 95, "Electronics");
+        Product cable = new Product("cable", 3.0, 5, "USB Accessories");
+        products.addAll(usbHub, miniUsb, usb, cable);
+
+        assertEquals(List.of(usb, usbHub, miniUsb, cable), catalogue.search("USB", null, 10));
+        assertEquals(List.of(usb, usbHub), catalogue.search("usb", "Electronics", 10));
+        assertEquals(List.of(usb), catalogue.search("usb", null, 1));
+        assertTrue(catalogue.search("xyz", null, 10).isEmpty());
+    }
+
+    @Test
+    void testShortQueriesMatchPrefixes() {
+        ObservableList<Product> products = FXCollections.observableArrayList();
+        ProductCatalogue catalogue = new ProductCatalogue(products);
+        Product mouse = new Product("mouse", 10.0, 5, "Electronics");
+        Product camera = new Product("camera", 90.0, 5, "Cameras");
+        products.addAll(mouse, camera);
+
+        assertEquals(List.of(mouse), catalogue.search("m", null, 10));
+        assertEquals(List.of(camera), catalogue.search("ca", null, 10));
+        assertTrue(catalogue.search("us", null, 10).isEmpty());
+    }
+
+    @Test
+    void testFollowsCatalogueChanges() {
+        ObservableList<Product> products = FXCollections.observableArrayList();
+        ProductCatalogue catalogue = new ProductCatalogue(products);
+
+        Product radio = new Product("radio", 50.0, 91, "Audio");
+        products.add(radio);
+        assertEquals(List.of(radio), catalogue.search("adi", null, 10));
+
+        catalogue.updateProduct(radio, "walkman", null, null, null);
+        assertTrue(catalogue.search("adi", null, 10).isEmpty());
+        assertEquals(List.of(radio), catalogue.search("walk", null, 10));
+
+        List<Product> reloaded = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            reloaded.add(new Product("item" + i, 1.0, 1, "Misc"));
+        }
+        products.setAll(reloaded);
+        products.setAll(reloaded.subList(0, 10));
+
+        assertTrue(catalogue.search("walk", null, 10).isEmpty());
+        assertEquals(List.of(reloaded.get(7)), catalogue.search("item7", null, 10));
+    }
+
+    @Test
+    void testFindsProductsAddedAfterASearch() {
+        ObservableList<Product> products = FXCollections.observableArrayList();
+        ProductCatalogue catalogue = new ProductCatalogue(products);
+        for (int i = 0; i < 200; i++) {
+            products.add(new Product("mouse" + i, 1.0, 1, i % 2 == 0 ? "Electronics" : "Cables"));
+        }
+        assertEquals(6, catalogue.search("mouse10", "Electronics", 10).size());
+
+        // Ids past the end of the lists the first search walked
+        Product late = new Product("wirelessmouse10", 1.0, 1, "Electronics");
+        Product other = new Product("wirelessmouse10x", 1.0, 1, "Cables");
+        products.addAll(late, other);
+        assertTrue(catalogue.search("mouse10", "Electronics", 10).contains(late));
+        assertFalse(catalogue.search("mouse10", "Electronics", 10).contains(other));
+        assertEquals(List.of(late, other), catalogue.search("lessmouse10", null, 10));
+    }
+}
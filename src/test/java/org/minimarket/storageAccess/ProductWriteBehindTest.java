@@ -0,0 +1,210 @@
+package org.minimarket.storageAccess;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.minimarket.catalogue.Product;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class ProductWriteBehindTest {
+
+    /** Records each call as text instead of storing anything. */
+    private static class RecordingRepository implements ProductRepository {
+        final List<String> calls = Collections.synchronizedList(new ArrayList<>());
+
+        @Override
+        public List<Product> loadProducts() {
+            return new ArrayList<>();
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return true;
+        }
+
+        @Override
+        public void saveProducts(List<Product> products) {
+            calls.add("saveAll " + products.size());
+        }
+
+        @Override
+        public void saveProduct(String oldName, Product product) {
+            calls.add("save " + oldName + " " + product.getName());
+        }
+
+        @Override
+        public void removeProduct(Product product) {
+            calls.add("remove " + product.getName());
+        }
+
+        @Override
+        public void recordStockChange(Product product, int delta) {
+            calls.add("stock " + product.getName() + " " + delta);
+        }
+    }
+
+    private static Product product(String name) {
+        return new Product(name, 1.0, 100, "Food");
+    }
+
+    @Test
+    void stockChangesToOneProductAreWrittenAsOneDelta() {
+        RecordingRepository repository = new RecordingRepository();
+        ProductWriteBehind writeBehind = new ProductWriteBehind(repository, 60_000, 60_000);
+        Product apple = product("Apple");
+
+        for (int i = 0; i < 10; i++) {
+            writeBehind.recordStockChange(apple, -1);
+        }
+        assertEquals(10, writeBehind.getPendingMutations());
+        assertTrue(repository.calls.isEmpty());
+
+        writeBehind.flush();
+        assertEquals(List.of("stock Apple -10"), repository.calls);
+        assertEquals(0, writeBehind.getPendingMutations());
+        assertEquals(1, writeBehind.getFlushCount());
+        assertEquals(10, writeBehind.getMutationsFlushed());
+        writeBehind.close();
+    }
+
+    @Test
+    void savesAndRemovalsReplaceEarlierChanges() {
+        RecordingRepository repository = new RecordingRepository();
+        ProductWriteBehind writeBehind = new ProductWriteBehind(repository, 60_000, 60_000);
+        Product apple = product("Apple");
+        Product pear = product("Pear");
+
+        writeBehind.recordStockChange(apple, -2);
+        writeBehind.saveProduct("Apples", apple);
+        writeBehind.saveProduct("Apple", apple);
+        writeBehind.recordStockChange(apple, -1);
+        writeBehind.recordStockChange(pear, 3);
+        writeBehind.removeProduct(pear);
+        writeBehind.flush();
+
+        assertEquals(List.of("save Apples Apple", "remove Pear"), repository.calls);
+
+        // Without a rename the delta is kept: a shared store may not take the quantity from the save
+        repository.calls.clear();
+        writeBehind.recordStockChange(apple, -1);
+        writeBehind.saveProduct("Apple", apple);
+        writeBehind.flush();
+        assertEquals(List.of("stock Apple -1", "save Apple Apple"), repository.calls);
+
+        repository.calls.clear();
+        writeBehind.recordStockChange(apple, -1);
+        writeBehind.saveProducts(List.of(apple, pear));
+        writeBehind.saveProduct(null, pear);
+        writeBehind.flush();
+
+        assertEquals(List.of("saveAll 2"), repository.calls);
+        writeBehind.close();
+    }
+
+    @Test
+    void flushesOnItsOwnAfterTheDebounce() throws InterruptedException {
+        RecordingRepository repository = new RecordingRepository();
+        ProductWriteBehind writeBehind = new ProductWriteBehind(repository, 20, 200);
+
+        writeBehind.recordStockChange(product("Apple"), -1);
+        long deadline = System.currentTimeMillis() + 5000;
+        while (writeBehind.getFlushCount() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertEquals(List.of("stock Apple -1"), repository.calls);
+        assertTrue(writeBehind.getLastFlushMillis() >= 0);
+        writeBehind.close();
+    }
+
+    @Test
+    void closeWritesPendingChangesAndLaterOnesStraightAway() {
+        RecordingRepository repository = new RecordingRepository();
+        ProductWriteBehind writeBehind = new ProductWriteBehind(repository, 60_000, 60_000);
+        Product apple = product("Apple");
+
+        writeBehind.recordStockChange(apple, 4);
+        writeBehind.close();
+        assertEquals(List.of("stock Apple 4"), repository.calls);
+
+        writeBehind.recordStockChange(apple, 1);
+        assertEquals(List.of("stock Apple 4", "stock Apple 1"), repository.calls);
+    }
+
+    @Test
+    void saveAndStockChangeInOneBatchAreNotCountedTwice(@TempDir Path dir) {
+        List<Product> catalogue = new ArrayList<>();
+        Product apple = product("Apple");
+        Product bread = product("Bread");
+        catalogue.add(apple);
+        catalogue.add(bread);
+        CsvProductRepository csv = new CsvProductRepository(
+                dir.resolve("products.csv"), dir.resolve("journal.csv"));
+        csv.saveProducts(catalogue);
+
+        ProductWriteBehind writeBehind = new ProductWriteBehind(csv, 60_000, 60_000);
+        // One apple sold and bread repriced before a single flush
+        writeBehind.changeStock(apple, () -> {
+            apple.addQuantity(-1);
+            return -1;
+        });
+        bread.setPrice(2.0);
+        writeBehind.saveProduct(null, bread);
+        writeBehind.flush();
+        writeBehind.close();
+
+        List<Product> reloaded = new CsvProductRepository(
+                dir.resolve("products.csv"), dir.resolve("journal.csv")).loadProducts();
+        assertEquals(99, reloaded.get(0).getQuantity());
+        assertEquals(200, reloaded.get(1).getPricePennies());
+    }
+
+    @Test
+    void stockChangesDoNotWaitForASlowWrite() throws Exception {
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Integer> savedQuantities = Collections.synchronizedList(new ArrayList<>());
+        RecordingRepository slow = new RecordingRepository() {
+            @Override
+            public void saveProduct(String oldName, Product product) {
+                writing.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                savedQuantities.add(product.getQuantity());
+                super.saveProduct(oldName, product);
+            }
+        };
+        ProductWriteBehind writeBehind = new ProductWriteBehind(slow, 60_000, 60_000);
+        Product apple = product("Apple");
+        writeBehind.saveProduct(null, apple);
+
+        Thread flusher = new Thread(writeBehind::flush);
+        flusher.start();
+        assertTrue(writing.await(5, TimeUnit.SECONDS));
+
+        // Taken while the save is still being written; the save holds the quantity as it was
+        CompletableFuture<Integer> sale = CompletableFuture.supplyAsync(() -> writeBehind.changeStock(apple, () -> {
+            apple.addQuantity(-1);
+            return -1;
+        }));
+        assertEquals(-1, sale.get(5, TimeUnit.SECONDS));
+        release.countDown();
+        flusher.join();
+        writeBehind.flush();
+
+        assertEquals(List.of(100), savedQuantities);
+        assertEquals(List.of("save null Apple", "stock Apple -1"), slow.calls);
+        writeBehind.close();
+    }
+}
@@ -0,0 +1,46 @@
+package org.minimarket.storageAccess;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+public class ReceiptArchiveTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void testRollsSegmentsAndFindsReceiptsAfterReopen() throws Exception {
+        try (ReceiptArchive archive = new ReceiptArchive(dir, 100)) {
+            for (int i = 0; i < 10; i++) {
+                byte[] text = ("receipt number " + i + " padded out to make segments roll\n")
+                        .getBytes(StandardCharsets.UTF_8);
+                assertEquals(i + 1, archive.append(1000L * i, text));
+            }
+        }
+
+        try (ReceiptArchive archive = new ReceiptArchive(dir, 100)) {
+            assertEquals(10, archive.size());
+            assertTrue(archive.read(7).startsWith("receipt number 6 "));
+            assertNull(archive.read(11));
+
+            List<ReceiptArchive.Entry> range = archive.findBetween(2000, 5000);
+            assertEquals(3, range.size());
+            assertEquals(3, range.get(0).getId());
+
+            Path exported = archive.export(1, dir.resolve("one.txt"));
+            assertTrue(Files.readString(exported).startsWith("receipt number 0 "));
+            assertEquals(11, archive.append(9000, "next".getBytes(StandardCharsets.UTF_8)));
+        }
+
+        try (var files = Files.list(dir)) {
+            assertTrue(files.filter(f -> f.getFileName().toString().startsWith("segment-")).count() > 1);
+        }
+    }
+}
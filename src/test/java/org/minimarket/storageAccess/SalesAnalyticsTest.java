@@ -0,0 +1,57 @@
+package org.minimarket.storageAccess;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.minimarket.catalogue.SaleRecord;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+public class SalesAnalyticsTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void testParallelScanMatchesSequentialTotals() throws Exception {
+        String[] names = {"camera", "usb", "radio", "kettle"};
+
+        try (BinarySalesLog log = new BinarySalesLog(dir.resolve("sales.bin"), dir.resolve("dict.csv"))) {
+            // Enough rows that the scan is split across several tasks
+            List<SaleRecord> batch = new ArrayList<>();
+            for (int i = 0; i < 600_000; i++) {
+                batch.add(new SaleRecord(names[i % 4], 1, (i % 4 + 1) * 10.0, 1000L + i));
+                if (batch.size() == 10_000) {
+                    log.append(batch);
+                    batch.clear();
+                }
+            }
+
+            SalesAnalytics analytics = new SalesAnalytics(log, new ForkJoinPool(4),
+                    name -> name.equals("usb") || name.equals("camera") ? "Electronics" : "Home");
+
+            SalesAnalytics.Result all = analytics.analyseAll();
+            assertEquals(600_000, all.getRowsMatched());
+            assertEquals(log.totalPennies() / 100.0, all.getTotalRevenue());
+            assertEquals(150_000L, all.unitsByProduct().get("radio"));
+
+            List<SalesAnalytics.ProductStat> top = all.topProducts(2, true);
+            assertEquals("kettle", top.get(0).getProductName());
+            assertEquals("radio", top.get(1).getProductName());
+
+            Map<String, Double> categories = all.revenueByCategory();
+            assertEquals(150_000 * 30.0, categories.get("Electronics"));
+            assertEquals(150_000 * 70.0, categories.get("Home"));
+
+            // Timestamps 1000..1099 are the first 100 rows
+            SalesAnalytics.Result range = analytics.analyse(1000L, 1100L);
+            assertEquals(100, range.getRowsMatched());
+            assertEquals(100, range.getTotalUnits());
+        }
+    }
+}
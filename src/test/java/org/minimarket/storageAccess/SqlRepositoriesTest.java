@@ -0,0 +1,126 @@
+package org.minimarket.storageAccess;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.minimarket.auth.User;
+import org.minimarket.catalogue.Product;
+import org.minimarket.catalogue.SaleRecord;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+
+public class SqlRepositoriesTest {
+
+    @TempDir
+    Path dir;
+
+    private SqlDatabase database;
+
+    @BeforeEach
+    void openDatabase() throws Exception {
+        database = new SqlDatabase("jdbc:h2:file:" + dir.resolve("minimarket").toAbsolutePath());
+    }
+
+    @AfterEach
+    void closeDatabase() throws Exception {
+        database.close();
+    }
+
+    private static long millis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    @Test
+    void testProductsSurviveEditsAndStockChanges() {
+        SqlProductRepository repository = new SqlProductRepository(database);
+        assertTrue(repository.isEmpty());
+
+        Product usb = new Product("usb", 9.99, 10, "Accessories");
+        Product radio = new Product("radio", 24.50, 3, "Audio");
+        repository.saveProducts(List.of(usb, radio));
+
+        repository.recordStockChange(usb, -4);
+        radio.setName("dabradio");
+        radio.setReorderPoint(1);
+        repository.saveProduct("radio", radio);
+
+        List<Product> loaded = repository.loadProducts();
+        assertEquals(2, loaded.size());
+        Product storedUsb = loaded.stream().filter(p -> p.getName().equals("usb")).findFirst().orElseThrow();
+        Product storedRadio = loaded.stream().filter(p -> p.getName().equals("dabradio")).findFirst().orElseThrow();
+        assertEquals(6, storedUsb.getQuantity());
+        assertEquals(999, storedUsb.getPricePennies());
+        assertEquals(1, storedRadio.getReorderPoint());
+
+        repository.removeProduct(usb);
+        assertEquals(1, repository.loadProducts().size());
+    }
+
+    @Test
+    void testSalesArePagedAndTotalledByTime() throws Exception {
+        LocalDateTime morning = LocalDateTime.of(2024, 3, 1, 9, 15);
+        SqlSalesRepository repository = new SqlSalesRepository(database);
+
+        assertTrue(repository.saveSaleRecords(List.of(
+                SaleRecord.ofPennies("usb", 2, 1998, millis(morning)),
+                SaleRecord.ofPennies("radio", 1, 2450, millis(morning.plusHours(1))))));
+        assertTrue(repository.saveSaleRecords(List.of(
+                SaleRecord.ofPennies("usb", 1, 999, millis(morning.plusDays(1))))));
+
+        assertEquals(3, repository.getSaleRecordCount());
+        assertEquals(1998 + 2450 + 999, repository.loadTotalSalesPennies());
+
+        List<SaleRecord> page = repository.loadSaleRecords(1, 5);
+        assertEquals(2, page.size());
+        assertEquals("radio", page.get(0).getProductName());
+
+        SalesRollups.Bucket firstDay = repository.loadSalesBetween(
+                morning.toLocalDate().atStartOfDay(), morning.toLocalDate().plusDays(1).atStartOfDay());
+        assertEquals(3, firstDay.getUnits());
+        assertEquals(1998 + 2450, firstDay.getRevenuePennies());
+
+        assertEquals(2, repository.loadRollups().hourlyBuckets(
+                morning.toLocalDate().atStartOfDay(), morning.toLocalDate().plusDays(1).atStartOfDay()).size());
+
+        SalesAnalytics.Result result = repository.analyseSales(null, null);
+        assertEquals(3, result.getRowsMatched());
+        assertEquals("usb", result.topProducts(1, false).get(0).getProductName());
+        assertEquals(3, (long) result.unitsByProduct().get("usb"));
+
+        // Row numbers carry on after reopening
+        assertEquals(3, new SqlSalesRepository(database).getSaleRecordCount());
+    }
+
+    @Test
+    void testDayRollupsFollowLocalMidnightInHalfHourZones() throws Exception {
+        ZoneId india = ZoneId.of("Asia/Kolkata");
+        LocalDateTime midnight = LocalDateTime.of(2024, 3, 2, 0, 0);
+        SqlSalesRepository repository = new SqlSalesRepository(database);
+
+        // 23:45 and 00:15 local fall in the same UTC hour but on different days
+        assertTrue(repository.saveSaleRecords(List.of(
+                SaleRecord.ofPennies("usb", 2, 1998, midnight.minusMinutes(15).atZone(india).toInstant().toEpochMilli()),
+                SaleRecord.ofPennies("radio", 1, 2450, midnight.plusMinutes(15).atZone(india).toInstant().toEpochMilli()))));
+
+        List<SalesRollups.TimeBucket> days = repository.loadRollups(india).dailyBuckets(
+                midnight.toLocalDate().minusDays(1), midnight.toLocalDate().plusDays(1));
+        assertEquals(2, days.size());
+        assertEquals(1998, days.get(0).getRevenuePennies());
+        assertEquals(2450, days.get(1).getRevenuePennies());
+    }
+
+    @Test
+    void testUsersAreStored() {
+        SqlUserRepository repository = new SqlUserRepository(database);
+        repository.saveUsers(List.of(new User("ann", "pw", "worker"), new User("bob", "pw", "buyer")));
+
+        List<User> users = repository.loadUsers();
+        assertEquals(2, users.size());
+    }
+}
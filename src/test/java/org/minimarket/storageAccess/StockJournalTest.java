@@ -0,0 +1,59 @@
+package org.minimarket.storageAccess;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+public class StockJournalTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void testReplaySkipsEntriesInSnapshot() throws Exception {
+        Path file = dir.resolve("journal.csv");
+
+        try (StockJournal journal = new StockJournal(file)) {
+            journal.append("usb", -1);
+            journal.append("usb", -2);
+            journal.append("radio", -1);
+        }
+
+        try (StockJournal journal = new StockJournal(file)) {
+            assertEquals(3, journal.getLastSequence());
+
+            List<Integer> deltas = new ArrayList<>();
+            int replayed = journal.replay(1, entry -> deltas.add(entry.getDelta()));
+
+            assertEquals(2, replayed);
+            assertEquals(List.of(-2, -1), deltas);
+        }
+    }
+
+    @Test
+    void testTornLineIsDroppedOnReopen() throws Exception {
+        Path file = dir.resolve("journal.csv");
+
+        try (StockJournal journal = new StockJournal(file)) {
+            journal.append("usb", -1);
+        }
+        Files.write(file, "2,usb,-".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+        try (StockJournal journal = new StockJournal(file)) {
+            assertEquals(1, journal.getEntryCount());
+            journal.append("camera", -3);
+
+            List<String> names = new ArrayList<>();
+            journal.replay(0, entry -> names.add(entry.getProductName()));
+            assertEquals(List.of("usb", "camera"), names);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package org.minimarket.storageAccess;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import javafx.collections.FXCollections;
+import org.junit.jupiter.api.Test;
+import org.minimarket.catalogue.Product;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class StockReservationTest {
+
+    @Test
+    void testReserveAllIsAllOrNothing() {
+        Product milk = new Product("Milk", 1.0, 5, "Dairy");
+        Product eggs = new Product("Eggs", 2.0, 1, "Dairy");
+        ProductCatalogue catalogue = new ProductCatalogue(FXCollections.observableArrayList(milk, eggs));
+
+        Map<Product, Integer> basket = new LinkedHashMap<>();
+        basket.put(milk, 3);
+        basket.put(eggs, 2);
+
+        assertFalse(catalogue.reserveAll(basket));
+        assertEquals(5, milk.getQuantity());
+        assertEquals(1, eggs.getQuantity());
+
+        basket.put(eggs, 1);
+        assertTrue(catalogue.reserveAll(basket));
+        assertEquals(2, milk.getQuantity());
+        assertEquals(0, eggs.getQuantity());
+    }
+
+    @Test
+    void testHotProductsAreNeverOversold() throws Exception {
+        int stock = 10_000;
+        Product hotA = new Product("Hot A", 1.0, stock, "Hot");
+        Product hotB = new Product("Hot B", 1.0, stock, "Hot");
+        ProductCatalogue catalogue = new ProductCatalogue(FXCollections.observableArrayList(hotA, hotB));
+
+        int threads = 16;
+        AtomicInteger soldA = new AtomicInteger();
+        AtomicInteger soldB = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+
+        for (int t = 0; t < threads; t++) {
+            int seed = t;
+            pool.execute(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; ; i++) {
+                    int qty = 1 + (seed + i) % 3;
+                    boolean single = catalogue.reserve(hotA, qty);
+                    if (single) soldA.addAndGet(qty);
+
+                    Map<Product, Integer> basket = new LinkedHashMap<>();
+                    basket.put(hotB, qty);
+                    basket.put(hotA, 1);
+                    boolean both = catalogue.reserveAll(basket);
+                    if (both) {
+                        soldB.addAndGet(qty);
+                        soldA.incrementAndGet();
+                    }
+                    if (!single && !both && hotA.getQuantity() == 0) {
+                        return;
+                    }
+                }
+            });
+        }
+
+        start.countDown();
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(30, TimeUnit.SECONDS));
+
+        for (Product p : List.of(hotA, hotB)) {
+            assertTrue(p.getQuantity() >= 0, p.getName() + " went negative");
+        }
+        assertEquals(stock, soldA.get() + hotA.getQuantity());
+        assertEquals(stock, soldB.get() + hotB.getQuantity());
+        assertEquals(0, hotA.getQuantity());
+    }
+}
@@ -0,0 +1,130 @@
+package org.minimarket.storageAccess.bench;
+
+import org.minimarket.storageAccess.CsvReader;
+import org.minimarket.utility.Money;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares reading a products.csv file the way ProductFileManager used to
+ * (BufferedReader, split(","), replaceAll, Money.parse) with {@link CsvReader}.
+ *
+ * Not run by the tests. Run with:
+ *
+ *      mvn -q test-compile dependency:build-classpath -Dmdep.outputFile=cp.txt
+ *      java -cp target/test-classes:target/classes:$(cat cp.txt) \
+ *          org.minimarket.storageAccess.bench.CsvParseBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CsvParseBenchmark {
+
+    @Param({"1000", "100000"})
+    int rows;
+
+    byte[] file;
+
+    @Setup
+    public void setUp() {
+        StringBuilder text = new StringBuilder("#seq=42\n");
+        for (int i = 0; i < rows; i++) {
+            text.append("product").append(i).append(',')
+                    .append(i % 500).append('.').append(i % 10).append("9,")
+                    .append(i % 80).append(",Category ").append(i % 12);
+            if (i % 4 == 0) {
+                text.append(',').append(i % 20);
+            }
+            text.append('\n');
+        }
+        file = text.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public long splitLines(Blackhole bh) throws IOException {
+        long total = 0;
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(
+                new ByteArrayInputStream(file), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                if (line.startsWith("#seq=")) {
+                    continue;
+                }
+                String[] parts = line.split(",");
+                if (parts.length == 4 || parts.length == 5) {
+                    String name = parts[0].trim().toLowerCase().replaceAll("\\s+", "");
+                    long price = Money.parse(parts[1].trim());
+                    int quantity = Integer.parseInt(parts[2]);
+                    String category = parts[3].trim();
+                    int reorder = parts.length == 5 ? Integer.parseInt(parts[4].trim()) : 5;
+                    bh.consume(name);
+                    bh.consume(category);
+                    total += price + quantity + reorder;
+                }
+            }
+        }
+        return total;
+    }
+
+    @Benchmark
+    public long csvReader(Blackhole bh) {
+        long total = 0;
+        CsvReader row = new CsvReader(ByteBuffer.wrap(file));
+        while (row.next()) {
+            if (row.fieldStartsWith(0, "#seq=")) {
+                continue;
+            }
+            int fields = row.getFieldCount();
+            if (fields == 4 || fields == 5) {
+                bh.consume(row.getString(0));
+                bh.consume(row.getTrimmedString(3));
+                total += row.getPennies(1) + row.getInt(2) + (fields == 5 ? row.getInt(4) : 5);
+            }
+        }
+        return total;
+    }
+
+    /** Numbers only: what a reader that does not need the text pays. */
+    @Benchmark
+    public long csvReaderNumbersOnly() {
+        long total = 0;
+        CsvReader row = new CsvReader(ByteBuffer.wrap(file));
+        while (row.next()) {
+            if (row.getFieldCount() >= 4 && !row.fieldStartsWith(0, "#seq=")) {
+                total += row.getPennies(1) + row.getInt(2);
+            }
+        }
+        return total;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(CsvParseBenchmark.class.getSimpleName())
+                .addProfiler("gc")
+                .build()).run();
+    }
+}
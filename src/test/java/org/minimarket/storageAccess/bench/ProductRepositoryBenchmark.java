@@ -0,0 +1,128 @@
+package org.minimarket.storageAccess.bench;
+
+import org.minimarket.catalogue.Product;
+import org.minimarket.storageAccess.BinaryProductRepository;
+import org.minimarket.storageAccess.BinaryProductStore;
+import org.minimarket.storageAccess.CsvProductRepository;
+import org.minimarket.storageAccess.ProductRepository;
+import org.minimarket.storageAccess.SqlDatabase;
+import org.minimarket.storageAccess.SqlProductRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Runs the same product workload against each {@link ProductRepository}
+ * backend, in a temporary directory.
+ *
+ * Not run by the tests. Run with:
+ *
+ *      mvn -q test-compile dependency:build-classpath -Dmdep.outputFile=cp.txt
+ *      java -cp target/test-classes:target/classes:$(cat cp.txt) \
+ *          org.minimarket.storageAccess.bench.ProductRepositoryBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProductRepositoryBenchmark {
+
+    @Param({"csv", "binary", "sql"})
+    String backend;
+
+    @Param({"10000"})
+    int products;
+
+    Path dir;
+    List<Product> catalogue;
+    ProductRepository repository;
+    AutoCloseable closeable;
+    int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        dir = Files.createTempDirectory("minimarket-bench");
+        catalogue = new ArrayList<>();
+        for (int i = 0; i < products; i++) {
+            catalogue.add(new Product("product" + i, 1 + i % 50, 1_000_000, "Category " + i % 12));
+        }
+
+        switch (backend) {
+            case "csv" -> repository = new CsvProductRepository(
+                    dir.resolve("products.csv"), dir.resolve("journal.csv"));
+            case "binary" -> {
+                BinaryProductStore store = new BinaryProductStore(dir.resolve("products.bin"));
+                closeable = store;
+                repository = new BinaryProductRepository(store);
+            }
+            default -> {
+                SqlDatabase database = new SqlDatabase("jdbc:h2:file:" + dir.resolve("minimarket"));
+                closeable = database;
+                repository = new SqlProductRepository(database);
+            }
+        }
+        repository.saveProducts(catalogue);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        if (closeable != null) {
+            closeable.close();
+        }
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(p -> {
+                try {
+                    Files.delete(p);
+                } catch (IOException ignored) {
+                    // Left for the OS to clean up
+                }
+            });
+        }
+    }
+
+    /** One sale of one unit, as a till records it. */
+    @Benchmark
+    public void recordStockChange() {
+        Product product = catalogue.get(next++ % catalogue.size());
+        product.addQuantity(-1);
+        repository.recordStockChange(product, -1);
+    }
+
+    /** A price edit of one product. */
+    @Benchmark
+    public void saveProduct() {
+        Product product = catalogue.get(next++ % catalogue.size());
+        product.setPricePennies(product.getPricePennies() + 1);
+        repository.saveProduct(null, product);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ProductRepositoryBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,91 @@
+package org.minimarket.storageAccess.bench;
+
+import org.minimarket.catalogue.Product;
+import org.minimarket.storageAccess.ProductCatalogue;
+import org.minimarket.storageAccess.ProductSearchIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times {@link ProductSearchIndex} queries on a large synthetic catalogue,
+ * asking for as many results as the search boxes show.
+ *
+ * Names are two of a handful of word stems plus a serial number, so common
+ * trigrams have very long id lists, which is the worst case for the index.
+ *
+ * Not run by the tests. Run with:
+ *
+ *      mvn -q test-compile dependency:build-classpath -Dmdep.outputFile=cp.txt
+ *      java -Xmx2g -cp target/test-classes:target/classes:$(cat cp.txt) \
+ *          org.minimarket.storageAccess.bench.ProductSearchBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class ProductSearchBenchmark {
+
+    private static final String[] STEMS = {
+            "usb", "cable", "mouse", "radio", "camera", "charger", "keyboard", "headphones",
+            "airpods", "hub", "mini", "pro", "max", "lite", "wireless"
+    };
+    private static final String[] CATEGORIES = {"Electronics", "Cables", "Audio", "Cameras", "Computing"};
+
+    @Param({"u", "usb", "usbca", "elec", "wirelessm", "keyboardpro", "headph", "zz9"})
+    String query;
+
+    @Param({"1000000"})
+    int products;
+
+    @Param({"500"})
+    int limit;
+
+    ProductSearchIndex index;
+
+    @Setup
+    public void setUp() {
+        Map<String, List<Product>> byName = new HashMap<>();
+        index = new ProductSearchIndex(key -> byName.getOrDefault(key, Collections.emptyList()));
+        Random random = new Random(1);
+        for (int i = 0; i < products; i++) {
+            String name = STEMS[random.nextInt(STEMS.length)] + STEMS[random.nextInt(STEMS.length)]
+                    + Integer.toString(i, 36);
+            Product product = new Product(name, 1.0, 1, CATEGORIES[random.nextInt(CATEGORIES.length)]);
+            byName.computeIfAbsent(ProductCatalogue.normalize(name), k -> new ArrayList<>()).add(product);
+            index.add(product);
+        }
+    }
+
+    @Benchmark
+    public List<Product> search() {
+        return index.search(query, null, limit);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ProductSearchBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
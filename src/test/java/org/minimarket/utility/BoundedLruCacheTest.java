@@ -0,0 +1,35 @@
+package org.minimarket.utility;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+public class BoundedLruCacheTest {
+
+    @Test
+    void testEvictsLeastRecentlyUsedOverBudget() {
+        BoundedLruCache<String, String> cache = new BoundedLruCache<>(10, String::length);
+        cache.put("a", "aaaa");
+        cache.put("b", "bbbb");
+        cache.get("a");
+        cache.put("c", "cccc");
+
+        assertEquals("aaaa", cache.get("a"));
+        assertNull(cache.get("b"));
+        assertEquals("cccc", cache.get("c"));
+        assertEquals(8, cache.getWeight());
+        assertEquals(1, cache.getEvictions());
+    }
+
+    @Test
+    void testReplaceAndOversizedValues() {
+        BoundedLruCache<String, String> cache = new BoundedLruCache<>(10, String::length);
+        cache.put("a", "aaaa");
+        cache.put("a", "aa");
+        assertEquals(2, cache.getWeight());
+
+        cache.put("big", "bbbbbbbbbbbb");
+        assertNull(cache.get("big"));
+        assertEquals(1, cache.size());
+    }
+}
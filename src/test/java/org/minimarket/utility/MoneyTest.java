@@ -0,0 +1,51 @@
+package org.minimarket.utility;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+public class MoneyTest {
+
+    @Test
+    void testParseIsExact() {
+        assertEquals(1250, Money.parse("12.5"));
+        assertEquals(1250, Money.parse("12.50"));
+        assertEquals(1200, Money.parse("12"));
+        assertEquals(-99, Money.parse("-0.99"));
+        assertEquals(1001, Money.parse("10.005"));
+        assertEquals(1_000_000_000, Money.parse("1.0E7"));
+        assertThrows(NumberFormatException.class, () -> Money.parse("abc"));
+    }
+
+    @Test
+    void testParseBytesMatchesParseText() {
+        for (String text : new String[] {"12.5", "-0.99", "10.005", "+7", "1.0E7"}) {
+            ByteBuffer bytes = ByteBuffer.wrap((" " + text + ",").getBytes(StandardCharsets.US_ASCII));
+            assertEquals(Money.parse(text), Money.parse(bytes, 1, 1 + text.length()), text);
+        }
+        ByteBuffer dot = ByteBuffer.wrap(".".getBytes(StandardCharsets.US_ASCII));
+        assertThrows(NumberFormatException.class, () -> Money.parse(dot, 0, 1));
+    }
+
+    @Test
+    void testFormat() {
+        assertEquals("£0.00", Money.format(0));
+        assertEquals("£12.05", Money.format(1205));
+        assertSame(Money.format(1205), Money.format(1205));
+        assertEquals("£123456.78", Money.format(12_345_678));
+        assertEquals("-1.50", Money.toPlainString(-150));
+    }
+
+    @Test
+    void testSumsStayExact() {
+        long total = 0;
+        for (int i = 0; i < 1_000_000; i++) {
+            total += Money.times(Money.ofPounds(0.10), 3);
+        }
+        assertEquals(30_000_000, total);
+        assertEquals(300_000.0, Money.toPounds(total));
+    }
+}
@@ -0,0 +1,50 @@
+package org.minimarket.utility;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.minimarket.catalogue.CartItem;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+public class ReceiptPipelineTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void testRenderMatchesFormattedLayout() {
+        List<CartItem> items = List.of(new CartItem("Camera", 1, 100.0), new CartItem("USB Cable", 3, 7.5));
+        String receipt = ReceiptGenerator.render(items, 10750, LocalDateTime.of(2024, 1, 2, 3, 4));
+
+        String expectedLine = String.format("%-20s %-5d %-10.2f\n", "USB Cable", 3, 7.5);
+        assertTrue(receipt.contains(expectedLine));
+        assertTrue(receipt.contains(String.format("%-20s %-5s %-10s\n", "Item", "Qty", "Subtotal (£)")));
+        assertTrue(receipt.contains("TOTAL: £107.50\n"));
+    }
+
+    @Test
+    void testEachReceiptIsArchivedOnce() throws Exception {
+        ReceiptPipeline pipeline = new ReceiptPipeline(dir, 2, 4);
+
+        List<CompletableFuture<Long>> written = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            written.add(pipeline.submit(List.of(new CartItem("Item " + i, 1, i)), i));
+        }
+        for (int i = 0; i < 20; i++) {
+            long id = written.get(i).get(10, TimeUnit.SECONDS);
+            assertTrue(pipeline.archive().read(id).contains("Item " + i + " "));
+        }
+
+        assertEquals(20, pipeline.archive().size());
+        assertEquals(20, pipeline.getReceiptCount());
+        assertEquals(0, pipeline.getFailureCount());
+        pipeline.shutdown(10, TimeUnit.SECONDS);
+    }
+}